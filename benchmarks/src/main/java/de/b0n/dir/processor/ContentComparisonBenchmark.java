@@ -0,0 +1,66 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst den Inhaltsvergleich der nach Größe vorgruppierten Dateien eines
+ * synthetischen Baums sowie die gesamte Dublettensuche über den Baum.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContentComparisonBenchmark {
+
+	@Param({ "4096", "65536" })
+	public int blockSize;
+
+	private ScanEngine engine;
+
+	@Setup(Level.Trial)
+	public void createEngine() {
+		engine = new ScanEngine(new ScanSettings().setBlockSize(blockSize));
+	}
+
+	@TearDown(Level.Trial)
+	public void closeEngine() {
+		engine.close();
+	}
+
+	@Benchmark
+	public long compareContent(TreeState tree) {
+		LongAdder duplicates = new LongAdder();
+		DuplicateContentFinder.find(tree.candidates, new DuplicateContentFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicates.add(duplicateFiles.size());
+			}
+		}, engine, null);
+		return duplicates.sum();
+	}
+
+	@Benchmark
+	public int findDuplicates(TreeState tree) {
+		return engine.findDuplicates(tree.folder).size();
+	}
+}
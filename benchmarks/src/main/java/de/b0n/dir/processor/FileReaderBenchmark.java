@@ -0,0 +1,80 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst den Lesedurchsatz eines FileReader über eine Datei im Seitencache,
+ * blockweise über den Kanal oder über abgebildete Fenster.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileReaderBenchmark {
+
+	@Param({ "67108864" })
+	public long fileSize;
+
+	@Param({ "4096", "65536", "1048576" })
+	public int blockSize;
+
+	@Param({ "false", "true" })
+	public boolean mapped;
+
+	private Path root;
+	private File file;
+	private ScanSettings settings;
+	private FileReaderPool pool;
+
+	@Setup(Level.Trial)
+	public void createFile() throws IOException {
+		root = Files.createTempDirectory("dupfinder-bench");
+		new SyntheticTree().files(1).distribution(SyntheticTree.SizeDistribution.FIXED).meanSize(fileSize)
+				.create(root);
+		try (Stream<Path> files = Files.walk(root)) {
+			file = files.filter(Files::isRegularFile).findFirst().get().toFile();
+		}
+		settings = new ScanSettings().setMappedThreshold(mapped ? 0 : Long.MAX_VALUE);
+		pool = new FileReaderPool(1);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteFile() throws IOException {
+		SyntheticTree.delete(root);
+	}
+
+	@Benchmark
+	public long readBlocks() {
+		FileReader reader = FileReader.pack(Collections.singletonList(file), settings, pool).get(0);
+		long bytes = 0;
+		int length;
+		while ((length = reader.readBlock(blockSize)) > 0) {
+			bytes += reader.getBlock().get(length - 1);
+			bytes += length;
+		}
+		reader.clear();
+		return bytes;
+	}
+}
@@ -0,0 +1,139 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Führt eine einzelne Dublettensuche wie die Konsolenanwendung aus und misst
+ * dabei den eigenen Prozess. Wird von der ScaleSuite in einer eigenen JVM
+ * gestartet, damit der Speicherbedarf jeder Suche getrennt erfasst wird. Die
+ * Messwerte stammen aus /proc und sind außerhalb von Linux -1.
+ */
+public class ScaleRun {
+
+	/**
+	 * Kennzeichnet die Ergebniszeile in der Ausgabe
+	 */
+	static final String RESULT_PREFIX = "RESULT,";
+	/**
+	 * Spalten der Ergebniszeile hinter dem Kennzeichen
+	 */
+	static final String COLUMNS = "wall_ms,peak_rss_kib,open_files_max,read_chars,storage_read_bytes,"
+			+ "duplicate_groups,duplicate_files,unreadable_folders";
+
+	private static final Path PROC_SELF = Paths.get("/proc/self");
+	private static final long SAMPLE_INTERVAL_MILLIS = 5;
+
+	/**
+	 * Durchsucht das übergebene Verzeichnis und gibt die Messwerte als eine
+	 * Zeile aus.
+	 *
+	 * @param args
+	 *            zu durchsuchendes Verzeichnis
+	 * @throws InterruptedException
+	 *             falls die Messung unterbrochen wird
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length != 1) {
+			System.err.println("Benutzung: ScaleRun <Verzeichnis>");
+			System.exit(2);
+		}
+		File folder = new File(args[0]);
+
+		long baseFiles = openFiles();
+		AtomicLong maxFiles = new AtomicLong(baseFiles);
+		Thread sampler = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				maxFiles.accumulateAndGet(openFiles(), Math::max);
+				try {
+					Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}, "open-file-sampler");
+		sampler.setDaemon(true);
+		sampler.start();
+
+		AtomicLong groups = new AtomicLong();
+		AtomicLong duplicates = new AtomicLong();
+		AtomicLong unreadable = new AtomicLong();
+		long readChars = procValue("io", "rchar:");
+		long storageBytes = procValue("io", "read_bytes:");
+		long start = System.nanoTime();
+		try (ScanEngine engine = new ScanEngine(new ScanSettings())) {
+			engine.findDuplicates(folder, new DuplicateFinderCallback() {
+
+				@Override
+				public void unreadableFolder(File folder) {
+					unreadable.incrementAndGet();
+				}
+
+				@Override
+				public void duplicateGroup(List<File> duplicateFiles) {
+					groups.incrementAndGet();
+					duplicates.addAndGet(duplicateFiles.size());
+				}
+			});
+		}
+		long wallMillis = (System.nanoTime() - start) / 1000000;
+		sampler.interrupt();
+		sampler.join();
+
+		System.out.println(RESULT_PREFIX + wallMillis + "," + procValue("status", "VmHWM:") + ","
+				+ (baseFiles < 0 ? -1 : maxFiles.get() - baseFiles) + "," + delta(readChars, procValue("io", "rchar:"))
+				+ "," + delta(storageBytes, procValue("io", "read_bytes:")) + "," + groups + "," + duplicates + ","
+				+ unreadable);
+	}
+
+	private static long delta(long before, long after) {
+		return before < 0 || after < 0 ? -1 : after - before;
+	}
+
+	/**
+	 * Zählt die geöffneten Dateideskriptoren des Prozesses.
+	 *
+	 * @return Anzahl der Deskriptoren oder -1
+	 */
+	private static long openFiles() {
+		long count = 0;
+		try (DirectoryStream<Path> descriptors = Files.newDirectoryStream(PROC_SELF.resolve("fd"))) {
+			for (@SuppressWarnings("unused")
+			Path descriptor : descriptors) {
+				count++;
+			}
+			// Der Deskriptor des Verzeichnisses selbst zählt nicht mit
+			return count - 1;
+		} catch (IOException | SecurityException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Liest eine Zahl aus einer Datei unter /proc/self.
+	 *
+	 * @param file
+	 *            Name der Datei
+	 * @param key
+	 *            Bezeichnung am Anfang der gesuchten Zeile
+	 * @return erste Zahl der Zeile oder -1
+	 */
+	private static long procValue(String file, String key) {
+		try {
+			for (String line : Files.readAllLines(PROC_SELF.resolve(file))) {
+				if (line.startsWith(key)) {
+					return Long.parseLong(line.substring(key.length()).trim().split("\\s+")[0]);
+				}
+			}
+		} catch (IOException | SecurityException | NumberFormatException e) {
+			// Nicht unter Linux
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,233 @@
+package de.b0n.dir.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import de.b0n.dir.processor.SyntheticTree.SizeDistribution;
+
+/**
+ * Misst vollständige Dublettensuchen über generierte Bäume steigender Größe.
+ * Jeder Baum wird erzeugt, in einer eigenen JVM über ScaleRun durchsucht und
+ * wieder gelöscht. Die Ergebnisse werden als CSV an die Ergebnisdatei
+ * angehängt, sodass Messreihen verschiedener Versionen verglichen werden
+ * können. Die Suche läuft mit warmem Seitencache, da der Baum unmittelbar
+ * zuvor geschrieben wurde.
+ */
+public class ScaleSuite {
+
+	/**
+	 * Aufbau der gemessenen Bäume
+	 */
+	enum Scenario {
+		/**
+		 * Gleichverteilte Größen mit einem Zehntel Dubletten
+		 */
+		FLAT {
+			@Override
+			SyntheticTree tree(int files) {
+				return new SyntheticTree().files(files);
+			}
+		},
+		/**
+		 * Wenige Dateien je Verzeichnis unter jeweils 32 Ebenen
+		 */
+		DEEP {
+			@Override
+			SyntheticTree tree(int files) {
+				return new SyntheticTree().files(files).filesPerFolder(10).nestingDepth(32);
+			}
+		},
+		/**
+		 * Große Gruppen gleich großer Dateien mit gemeinsamem Anfang, aber
+		 * unterschiedlichem Inhalt
+		 */
+		CLUSTERS {
+			@Override
+			SyntheticTree tree(int files) {
+				return new SyntheticTree().files(files).duplicateRatio(0.05).sameSizeRatio(0.6)
+						.prefixCollisionDepth(8192);
+			}
+		},
+		/**
+		 * Viele Kopien, welche erst im letzten Byte abweichen
+		 */
+		LATE_DIFFERING {
+			@Override
+			SyntheticTree tree(int files) {
+				return new SyntheticTree().files(files).distribution(SizeDistribution.LOG_NORMAL).meanSize(256 * 1024)
+						.duplicateRatio(0.05).lateDifferingRatio(0.4);
+			}
+		},
+		/**
+		 * Harte Verknüpfungen neben echten Dubletten
+		 */
+		HARD_LINKS {
+			@Override
+			SyntheticTree tree(int files) {
+				return new SyntheticTree().files(files).hardLinkRatio(0.3);
+			}
+		},
+		/**
+		 * Schleifen aus symbolischen Verknüpfungen und unlesbare Verzeichnisse
+		 */
+		HOSTILE {
+			@Override
+			SyntheticTree tree(int files) {
+				return new SyntheticTree().files(files).symlinkLoops(true).unreadableFolders(16);
+			}
+		};
+
+		abstract SyntheticTree tree(int files);
+	}
+
+	private static final String USAGE = "Benutzung: ScaleSuite [--dir <Verzeichnis>] [--files <Anzahl,...>]"
+			+ " [--results <Datei>] [Szenario ...]";
+	private static final String HEADER = "date,version,java,scenario,files,tree_bytes," + ScaleRun.COLUMNS;
+
+	/**
+	 * Führt die Messreihe aus.
+	 *
+	 * @param args
+	 *            Optionen, gefolgt von den Namen der Szenarien, standardmäßig
+	 *            alle
+	 * @throws IOException
+	 *             falls ein Baum oder die Ergebnisdatei nicht geschrieben
+	 *             werden kann
+	 * @throws InterruptedException
+	 *             falls auf eine Suche nicht gewartet werden kann
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Path directory = Paths.get(System.getProperty("java.io.tmpdir"));
+		Path results = Paths.get("scale-results.csv");
+		List<Integer> fileCounts = new ArrayList<>();
+		List<Scenario> scenarios = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if ("--dir".equals(args[i])) {
+					directory = Paths.get(args[++i]);
+				} else if ("--results".equals(args[i])) {
+					results = Paths.get(args[++i]);
+				} else if ("--files".equals(args[i])) {
+					for (String count : args[++i].split(",")) {
+						fileCounts.add(Integer.valueOf(count.trim()));
+					}
+				} else {
+					scenarios.add(Scenario.valueOf(args[i]));
+				}
+			}
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		if (fileCounts.isEmpty()) {
+			fileCounts.add(10000);
+			fileCounts.add(100000);
+			fileCounts.add(1000000);
+		}
+		if (scenarios.isEmpty()) {
+			for (Scenario scenario : Scenario.values()) {
+				scenarios.add(scenario);
+			}
+		}
+
+		boolean header = !Files.exists(results) || Files.size(results) == 0;
+		try (Writer writer = Files.newBufferedWriter(results, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND); PrintWriter output = new PrintWriter(writer)) {
+			if (header) {
+				output.println(HEADER);
+			}
+			for (Scenario scenario : scenarios) {
+				for (int files : fileCounts) {
+					String row = measure(scenario, files, directory);
+					System.out.println(row);
+					output.println(row);
+					output.flush();
+				}
+			}
+		}
+	}
+
+	private static String measure(Scenario scenario, int files, Path directory)
+			throws IOException, InterruptedException {
+		Path root = Files.createTempDirectory(directory, "dupfinder-scale");
+		try {
+			long treeBytes = scenario.tree(files).create(root);
+			String result = scan(root);
+			return Instant.now() + "," + version() + "," + System.getProperty("java.version") + "," + scenario + ","
+					+ files + "," + treeBytes + "," + result;
+		} finally {
+			SyntheticTree.delete(root);
+		}
+	}
+
+	/**
+	 * Durchsucht den Baum in einer neuen JVM mit denselben Einstellungen wie
+	 * diese JVM.
+	 *
+	 * @param root
+	 *            Wurzel des Baums
+	 * @return Messwerte der Suche in der Reihenfolge von ScaleRun.COLUMNS
+	 * @throws IOException
+	 *             falls die JVM nicht gestartet werden kann
+	 * @throws InterruptedException
+	 *             falls auf die JVM nicht gewartet werden kann
+	 */
+	private static String scan(Path root) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ScaleRun.class.getName());
+		command.add(root.toString());
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+		String result = null;
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(ScaleRun.RESULT_PREFIX)) {
+					result = line.substring(ScaleRun.RESULT_PREFIX.length());
+				}
+			}
+		}
+		if (process.waitFor() != 0 || result == null) {
+			throw new IllegalStateException("Scan of " + root + " failed with exit code " + process.exitValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Liefert die Version der gemessenen DupFinder-Bibliothek.
+	 *
+	 * @return Version laut Maven-Metadaten oder unknown
+	 */
+	private static String version() {
+		try (InputStream input = ScaleSuite.class
+				.getResourceAsStream("/META-INF/maven/de.b0n/DupFinder/pom.properties")) {
+			if (input != null) {
+				Properties properties = new Properties();
+				properties.load(input);
+				return properties.getProperty("version", "unknown");
+			}
+		} catch (IOException e) {
+			// Version bleibt unbekannt
+		}
+		return "unknown";
+	}
+}
@@ -0,0 +1,84 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Vergleicht das Gruppieren nach Dateigröße im SizeIndex mit einer
+ * HashMap aus geboxten Größen und Listen, ohne das Dateisystem zu berühren.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx4g" })
+public class SizeGroupingBenchmark {
+
+	@Param({ "1000000" })
+	public int files;
+
+	/**
+	 * Anzahl unterschiedlicher Größen, aus denen die Dateigrößen gezogen werden
+	 */
+	@Param({ "1000", "1000000" })
+	public int distinctSizes;
+
+	private long[] sizes;
+	private File[] paths;
+
+	@Setup(Level.Trial)
+	public void createInput() {
+		Random random = new Random(42);
+		sizes = new long[files];
+		paths = new File[files];
+		for (int i = 0; i < files; i++) {
+			sizes[i] = random.nextInt(distinctSizes) * 512L;
+			paths[i] = new File("/bench/d" + i / 100 + "/f" + i + ".bin");
+		}
+	}
+
+	@Benchmark
+	public int sizeIndex() {
+		SizeIndex index = new SizeIndex();
+		for (int i = 0; i < files; i++) {
+			index.add(sizes[i], paths[i]);
+		}
+		int[] candidates = new int[1];
+		index.forEachGroup(2, (size, group) -> candidates[0] += group.size());
+		return candidates[0];
+	}
+
+	@Benchmark
+	public int hashMap() {
+		Map<Long, List<File>> index = new HashMap<>();
+		for (int i = 0; i < files; i++) {
+			index.computeIfAbsent(sizes[i], k -> new ArrayList<>()).add(paths[i]);
+		}
+		int candidates = 0;
+		for (List<File> group : index.values()) {
+			if (group.size() > 1) {
+				candidates += group.size();
+			}
+		}
+		return candidates;
+	}
+}
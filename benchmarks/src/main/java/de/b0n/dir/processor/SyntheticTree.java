@@ -0,0 +1,409 @@
+package de.b0n.dir.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Erzeugt reproduzierbare Verzeichnisbäume für Benchmarks. Anzahl und Größe
+ * der Dateien, der Anteil an Dubletten sowie die Länge des gemeinsamen
+ * Anfangs gleich großer, aber unterschiedlicher Dateien sind einstellbar.
+ * Zusätzlich lassen sich tief verschachtelte Verzeichnisse, Gruppen gleich
+ * großer Dateien mit unterschiedlichem Inhalt, erst im letzten Byte
+ * abweichende Dateien, harte Verknüpfungen, Schleifen aus symbolischen
+ * Verknüpfungen und unlesbare Verzeichnisse erzeugen. Gleiche Einstellungen und
+ * gleicher Startwert ergeben stets denselben Baum.
+ */
+public class SyntheticTree {
+
+	/**
+	 * Verteilung der Dateigrößen
+	 */
+	public enum SizeDistribution {
+		/**
+		 * Alle Dateien haben die mittlere Größe und bilden eine einzige Gruppe
+		 */
+		FIXED,
+		/**
+		 * Gleichverteilt zwischen 0 und der doppelten mittleren Größe
+		 */
+		UNIFORM,
+		/**
+		 * Viele kleine und wenige sehr große Dateien, wie in gewachsenen
+		 * Dateisammlungen
+		 */
+		LOG_NORMAL
+	}
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final String UNREADABLE_PREFIX = "unreadable";
+
+	private int files = 1000;
+	private SizeDistribution distribution = SizeDistribution.UNIFORM;
+	private long meanSize = 16 * 1024;
+	private double duplicateRatio = 0.1;
+	private long prefixCollisionDepth;
+	private int filesPerFolder = 100;
+	private int nestingDepth;
+	private double sameSizeRatio;
+	private double lateDifferingRatio;
+	private double hardLinkRatio;
+	private boolean symlinkLoops;
+	private int unreadableFolders;
+	private long seed = 42;
+
+	/**
+	 * @param files
+	 *            Anzahl der zu erzeugenden Dateien
+	 * @return dieser Generator
+	 */
+	public SyntheticTree files(int files) {
+		if (files < 0) {
+			throw new IllegalArgumentException("files may not be negative.");
+		}
+		this.files = files;
+		return this;
+	}
+
+	/**
+	 * @param distribution
+	 *            Verteilung der Dateigrößen
+	 * @return dieser Generator
+	 */
+	public SyntheticTree distribution(SizeDistribution distribution) {
+		if (distribution == null) {
+			throw new IllegalArgumentException("distribution may not be null.");
+		}
+		this.distribution = distribution;
+		return this;
+	}
+
+	/**
+	 * @param meanSize
+	 *            mittlere Dateigröße in Bytes
+	 * @return dieser Generator
+	 */
+	public SyntheticTree meanSize(long meanSize) {
+		if (meanSize < 0) {
+			throw new IllegalArgumentException("meanSize may not be negative.");
+		}
+		this.meanSize = meanSize;
+		return this;
+	}
+
+	/**
+	 * @param duplicateRatio
+	 *            Anteil der Dateien, welche eine frühere Datei kopieren,
+	 *            zwischen 0 und 1
+	 * @return dieser Generator
+	 */
+	public SyntheticTree duplicateRatio(double duplicateRatio) {
+		this.duplicateRatio = checkRatio(duplicateRatio, "duplicateRatio");
+		return this;
+	}
+
+	private static double checkRatio(double ratio, String name) {
+		if (ratio < 0 || ratio > 1) {
+			throw new IllegalArgumentException(name + " must be between 0 and 1.");
+		}
+		return ratio;
+	}
+
+	/**
+	 * @param prefixCollisionDepth
+	 *            Anzahl Bytes, welche alle gleich großen Dateien am Anfang
+	 *            gemeinsam haben, bevor sie sich unterscheiden
+	 * @return dieser Generator
+	 */
+	public SyntheticTree prefixCollisionDepth(long prefixCollisionDepth) {
+		if (prefixCollisionDepth < 0) {
+			throw new IllegalArgumentException("prefixCollisionDepth may not be negative.");
+		}
+		this.prefixCollisionDepth = prefixCollisionDepth;
+		return this;
+	}
+
+	/**
+	 * @param filesPerFolder
+	 *            Anzahl der Dateien je Verzeichnis
+	 * @return dieser Generator
+	 */
+	public SyntheticTree filesPerFolder(int filesPerFolder) {
+		if (filesPerFolder < 1) {
+			throw new IllegalArgumentException("filesPerFolder must be positive.");
+		}
+		this.filesPerFolder = filesPerFolder;
+		return this;
+	}
+
+	/**
+	 * @param nestingDepth
+	 *            Anzahl zusätzlich ineinander verschachtelter Verzeichnisse
+	 *            oberhalb der Dateien jedes Verzeichnisses
+	 * @return dieser Generator
+	 */
+	public SyntheticTree nestingDepth(int nestingDepth) {
+		if (nestingDepth < 0) {
+			throw new IllegalArgumentException("nestingDepth may not be negative.");
+		}
+		this.nestingDepth = nestingDepth;
+		return this;
+	}
+
+	/**
+	 * @param sameSizeRatio
+	 *            Anteil der Dateien, welche die Größe einer früheren Datei mit
+	 *            eigenem Inhalt übernehmen, zwischen 0 und 1
+	 * @return dieser Generator
+	 */
+	public SyntheticTree sameSizeRatio(double sameSizeRatio) {
+		this.sameSizeRatio = checkRatio(sameSizeRatio, "sameSizeRatio");
+		return this;
+	}
+
+	/**
+	 * @param lateDifferingRatio
+	 *            Anteil der Dateien, welche eine frühere Datei bis auf das letzte
+	 *            Byte kopieren, zwischen 0 und 1
+	 * @return dieser Generator
+	 */
+	public SyntheticTree lateDifferingRatio(double lateDifferingRatio) {
+		this.lateDifferingRatio = checkRatio(lateDifferingRatio, "lateDifferingRatio");
+		return this;
+	}
+
+	/**
+	 * @param hardLinkRatio
+	 *            Anteil der Dateien, welche als harte Verknüpfung auf eine
+	 *            frühere Datei angelegt werden, zwischen 0 und 1
+	 * @return dieser Generator
+	 */
+	public SyntheticTree hardLinkRatio(double hardLinkRatio) {
+		this.hardLinkRatio = checkRatio(hardLinkRatio, "hardLinkRatio");
+		return this;
+	}
+
+	/**
+	 * @param symlinkLoops
+	 *            true, um in jedem Verzeichnis der obersten Ebene eine
+	 *            symbolische Verknüpfung auf die Wurzel anzulegen
+	 * @return dieser Generator
+	 */
+	public SyntheticTree symlinkLoops(boolean symlinkLoops) {
+		this.symlinkLoops = symlinkLoops;
+		return this;
+	}
+
+	/**
+	 * @param unreadableFolders
+	 *            Anzahl zusätzlicher Verzeichnisse mit je einer Datei, deren
+	 *            Rechte das Lesen verbieten
+	 * @return dieser Generator
+	 */
+	public SyntheticTree unreadableFolders(int unreadableFolders) {
+		if (unreadableFolders < 0) {
+			throw new IllegalArgumentException("unreadableFolders may not be negative.");
+		}
+		this.unreadableFolders = unreadableFolders;
+		return this;
+	}
+
+	/**
+	 * @param seed
+	 *            Startwert, aus dem Größen und Inhalte abgeleitet werden
+	 * @return dieser Generator
+	 */
+	public SyntheticTree seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Legt den Baum im übergebenen Verzeichnis an.
+	 *
+	 * @param root
+	 *            bestehendes, leeres Verzeichnis
+	 * @return Anzahl geschriebener Bytes ohne harte Verknüpfungen
+	 * @throws IOException
+	 *             falls der Baum nicht geschrieben werden kann
+	 * @throws IllegalStateException
+	 *             falls die Anteile zusammen 1 übersteigen
+	 */
+	public long create(Path root) throws IOException {
+		if (duplicateRatio + sameSizeRatio + lateDifferingRatio + hardLinkRatio > 1) {
+			throw new IllegalStateException("Ratios may not exceed 1 in total.");
+		}
+
+		Random random = new Random(seed);
+		List<long[]> originals = new ArrayList<>();
+		byte[] chunk = new byte[CHUNK_SIZE];
+		long bytes = 0;
+		for (int i = 0; i < files; i++) {
+			Path file = file(root, i);
+			Files.createDirectories(file.getParent());
+			double kind = originals.isEmpty() ? 1 : random.nextDouble();
+			if (kind < duplicateRatio) {
+				long[] original = originals.get(random.nextInt(originals.size()));
+				bytes += write(file, original[0], original[1], 0, chunk);
+			} else if ((kind -= duplicateRatio) < sameSizeRatio) {
+				long size = originals.get(random.nextInt(originals.size()))[0];
+				long contentSeed = random.nextLong();
+				originals.add(new long[] { size, contentSeed });
+				bytes += write(file, size, contentSeed, 0, chunk);
+			} else if ((kind -= sameSizeRatio) < lateDifferingRatio) {
+				long[] original = originals.get(random.nextInt(originals.size()));
+				bytes += write(file, original[0], original[1], 1 + random.nextInt(255), chunk);
+			} else if (kind - lateDifferingRatio < hardLinkRatio) {
+				Files.createLink(file, file(root, random.nextInt(i)));
+			} else {
+				long size = nextSize(random);
+				long contentSeed = random.nextLong();
+				originals.add(new long[] { size, contentSeed });
+				bytes += write(file, size, contentSeed, 0, chunk);
+			}
+		}
+
+		if (symlinkLoops) {
+			try (DirectoryStream<Path> folders = Files.newDirectoryStream(root)) {
+				for (Path folder : folders) {
+					Files.createSymbolicLink(folder.resolve("loop"), root);
+				}
+			}
+		}
+		for (int i = 0; i < unreadableFolders; i++) {
+			Path folder = Files.createDirectory(root.resolve(UNREADABLE_PREFIX + i));
+			bytes += write(folder.resolve("f.bin"), i + 1, i, 0, chunk);
+			setReadable(folder, false);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Bestimmt den Pfad der Datei mit der übergebenen Nummer.
+	 *
+	 * @param root
+	 *            Wurzelverzeichnis des Baums
+	 * @param i
+	 *            laufende Nummer der Datei
+	 * @return Pfad der Datei
+	 */
+	private Path file(Path root, int i) {
+		int folder = i / filesPerFolder;
+		Path directory = root.resolve("d" + folder / 256).resolve("d" + folder % 256);
+		for (int level = 0; level < nestingDepth; level++) {
+			directory = directory.resolve("n" + level);
+		}
+		return directory.resolve("f" + i + ".bin");
+	}
+
+	private static void setReadable(Path folder, boolean readable) throws IOException {
+		try {
+			Files.setPosixFilePermissions(folder, readable ? PosixFilePermissions.fromString("rwx------")
+					: Collections.<PosixFilePermission>emptySet());
+		} catch (UnsupportedOperationException e) {
+			folder.toFile().setReadable(readable);
+			folder.toFile().setExecutable(readable);
+		}
+	}
+
+	private long nextSize(Random random) {
+		switch (distribution) {
+		case FIXED:
+			return meanSize;
+		case LOG_NORMAL:
+			// Median bei der Hälfte der mittleren Größe, Streuung über mehrere Größenordnungen
+			double median = Math.max(1, meanSize / 2.0);
+			return Math.min(Math.round(median * Math.exp(1.2 * random.nextGaussian())), 64 * meanSize);
+		case UNIFORM:
+		default:
+			return (long) (random.nextDouble() * (2 * meanSize + 1));
+		}
+	}
+
+	/**
+	 * Schreibt eine Datei, deren erste prefixCollisionDepth Bytes nur von der
+	 * Größe abhängen und deren Rest vom Startwert des Inhalts bestimmt wird.
+	 * Das letzte Byte kann danach noch verändert werden.
+	 *
+	 * @param file
+	 *            zu schreibende Datei
+	 * @param size
+	 *            Größe der Datei
+	 * @param contentSeed
+	 *            Startwert des Inhalts
+	 * @param lastByteFlip
+	 *            Bits, welche im letzten Byte umgekehrt werden, oder 0
+	 * @param chunk
+	 *            Puffer zum Schreiben
+	 * @return Größe der Datei
+	 * @throws IOException
+	 *             falls die Datei nicht geschrieben werden kann
+	 */
+	private long write(Path file, long size, long contentSeed, int lastByteFlip, byte[] chunk) throws IOException {
+		Random prefix = new Random(size);
+		Random content = new Random(contentSeed);
+		try (OutputStream output = Files.newOutputStream(file)) {
+			for (long position = 0; position < size; position += chunk.length) {
+				int length = (int) Math.min(chunk.length, size - position);
+				prefix.nextBytes(chunk);
+				if (position + length > prefixCollisionDepth) {
+					int start = (int) Math.max(0, prefixCollisionDepth - position);
+					byte[] unique = new byte[length - start];
+					content.nextBytes(unique);
+					System.arraycopy(unique, 0, chunk, start, unique.length);
+				}
+				if (position + length == size) {
+					chunk[length - 1] ^= lastByteFlip;
+				}
+				output.write(chunk, 0, length);
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Löscht den Baum samt Wurzelverzeichnis. Unlesbare Verzeichnisse werden
+	 * dazu zuvor wieder lesbar gemacht, symbolische Verknüpfungen werden nicht
+	 * verfolgt.
+	 *
+	 * @param root
+	 *            Wurzelverzeichnis des Baums
+	 * @throws IOException
+	 *             falls der Baum nicht gelöscht werden kann
+	 */
+	public static void delete(Path root) throws IOException {
+		if (!Files.exists(root)) {
+			return;
+		}
+		try (DirectoryStream<Path> folders = Files.newDirectoryStream(root, UNREADABLE_PREFIX + "*")) {
+			for (Path folder : folders) {
+				setReadable(folder, true);
+			}
+		}
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+				Files.delete(directory);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,43 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst das Durchsuchen der Verzeichnisse durch den DuplicateLengthFinder
+ * ohne Auswertung der gefundenen Dateien.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TraversalBenchmark {
+
+	@Benchmark
+	public long traverse(TreeState tree) {
+		LongAdder bytes = new LongAdder();
+		DuplicateLengthFinder.getResult(tree.folder, new DuplicateLengthFinderCallback() {
+
+			@Override
+			public void addGroupedElement(long size, File file) {
+				bytes.add(size);
+			}
+		});
+		return bytes.sum();
+	}
+
+	@Benchmark
+	public int traverseAndGroup(TreeState tree) {
+		return DuplicateLengthFinder.getResult(tree.folder).size();
+	}
+}
@@ -0,0 +1,72 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.b0n.dir.processor.SyntheticTree.SizeDistribution;
+
+/**
+ * Synthetischer Verzeichnisbaum, welcher einmal je Benchmark-Lauf erzeugt und
+ * danach wieder gelöscht wird. Der Baum wird im über die Systemeigenschaft
+ * dupfinder.bench.dir angegebenen Verzeichnis angelegt, sonst im temporären
+ * Verzeichnis, etwa um auf tmpfs oder einem Netzlaufwerk zu messen.
+ */
+@State(Scope.Benchmark)
+public class TreeState {
+
+	@Param({ "10000" })
+	public int files;
+
+	@Param({ "UNIFORM", "FIXED" })
+	public SizeDistribution distribution;
+
+	@Param({ "16384" })
+	public long meanSize;
+
+	@Param({ "0.1" })
+	public double duplicateRatio;
+
+	@Param({ "0", "65536" })
+	public long prefixCollisionDepth;
+
+	Path root;
+	File folder;
+	/**
+	 * Gruppen gleich großer Dateien mit mindestens zwei Dateien
+	 */
+	List<List<File>> candidates;
+
+	@Setup(Level.Trial)
+	public void createTree() throws IOException {
+		String directory = System.getProperty("dupfinder.bench.dir");
+		root = directory == null ? Files.createTempDirectory("dupfinder-bench")
+				: Files.createTempDirectory(Paths.get(directory), "dupfinder-bench");
+		new SyntheticTree().files(files).distribution(distribution).meanSize(meanSize)
+				.duplicateRatio(duplicateRatio).prefixCollisionDepth(prefixCollisionDepth).create(root);
+		folder = root.toFile();
+
+		candidates = new ArrayList<>();
+		for (List<File> group : DuplicateLengthFinder.getResult(folder).values()) {
+			if (group.size() > 1) {
+				candidates.add(group);
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteTree() throws IOException {
+		SyntheticTree.delete(root);
+	}
+}
@@ -1,16 +1,31 @@
 package de.b0n.dir;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
-import de.b0n.dir.processor.DuplicateContentFinder;
-import de.b0n.dir.processor.DuplicateLengthFinder;
+import de.b0n.dir.processor.ContentDigest;
+import de.b0n.dir.processor.DuplicateFinderCallback;
+import de.b0n.dir.processor.HashIndex;
+import de.b0n.dir.processor.ScanBudget;
+import de.b0n.dir.processor.ScanEngine;
+import de.b0n.dir.processor.ScanFilter;
+import de.b0n.dir.processor.ScanMetrics;
+import de.b0n.dir.processor.ScanProgress;
+import de.b0n.dir.processor.ScanSettings;
 
 /**
  * Einfache Konsolenanwendung zur Ausgabe der gefundenen Dubletten in einem übergebenen Verzeichnis.
@@ -20,57 +35,381 @@ import de.b0n.dir.processor.DuplicateLengthFinder;
 class DupFinderConsole {
 
 	private static final String ERROR = "FEHLER: ";
-	private static final String USAGE = "\r\n Benutzung: DupFinder <Verzeichnis>\r\n<Verzeichnis> = Verzeichnis in dem rekursiv nach Duplikaten gesucht wird";
+	private static final String USAGE = "\r\n Benutzung: DupFinder [Optionen] <Verzeichnis> [<Verzeichnis> ...]\r\n<Verzeichnis> = Verzeichnis in dem rekursiv nach Duplikaten gesucht wird, mehrere werden gemeinsam durchsucht"
+			+ "\r\nOptionen:"
+			+ "\r\n --index <Datei> = Pruefsummen unveraenderter Dateien aus dem Index uebernehmen und ihn fortschreiben"
+			+ "\r\n --compact-index <Datei> = Veraltete Eintraege aus dem Index entfernen, ohne zu suchen"
+			+ "\r\n --invalidate-index <Pfad> = Eintraege unterhalb des Pfades aus dem Index von --index entfernen, ohne zu suchen"
+			+ "\r\n --metrics <Sekunden> = Kennzahlen der Suche im angegebenen Abstand und am Ende ausgeben"
+			+ "\r\n --progress <Sekunden> = Fortschritt und Restzeit des Vergleichs im angegebenen Abstand ausgeben"
+			+ "\r\n --format <text|jsonl|csv|nul> = Format der Ausgabe, Standard ist text"
+			+ "\r\n --min-size <Bytes> = Nur Dateien ab dieser Groesse vergleichen, auch mit K, M oder G"
+			+ "\r\n --max-size <Bytes> = Nur Dateien bis zu dieser Groesse vergleichen, auch mit K, M oder G"
+			+ "\r\n --include <Muster> = Nur Dateien vergleichen, deren Name oder Pfad einem der Muster entspricht"
+			+ "\r\n --exclude <Muster> = Dateien nicht vergleichen, deren Name oder Pfad dem Muster entspricht"
+			+ "\r\n --prune <Muster> = Verzeichnisse nicht durchsuchen, deren Name oder Pfad dem Muster entspricht"
+			+ "\r\n --skip-hidden = Versteckte Dateien und Verzeichnisse ueberspringen"
+			+ "\r\n --digest <Algorithmus> = Jede Datei einmal lesen und nach Pruefsumme gruppieren, etwa murmur3-128 oder sha-256"
+			+ "\r\n --verify = Ueber Pruefsummen gefundene Dubletten byteweise bestaetigen"
+			+ "\r\n --time-limit <Sekunden> = Suche nach dieser Zeit beenden und offene Gruppen als unaufgeloest melden"
+			+ "\r\n --max-bytes <Bytes> = Suche nach so vielen gelesenen Bytes beenden, auch mit K, M oder G";
 	private static final String NO_PARAM = "Parameter <Verzeichnis> fehlt.";
 	private static final String INVALID_DIRECTORY = "Parameter <Verzeichnis> ist kein Verzeichnis.";
 	private static final String UREADABLE_DIRECTORY = "Parameter <Verzeichnis> kann nicht gelesen werden.";
+	private static final String MISSING_OPTION_VALUE = "Option erwartet einen Wert: ";
+	private static final String INDEX_FAILED = "Index kann nicht verarbeitet werden: ";
+	private static final String MISSING_INDEX = "Option erwartet zusaetzlich --index: ";
+	private static final String INVALID_INTERVAL = "Option erwartet eine positive Anzahl Sekunden: ";
+	private static final String INVALID_FORMAT = "Unbekanntes Format: ";
+	private static final String OUTPUT_FAILED = "Ausgabe fehlgeschlagen: ";
+	private static final String INVALID_SIZE = "Option erwartet eine Groesse in Bytes: ";
+	private static final String INVALID_PATTERN = "Ungueltiges Muster: ";
+	private static final String INVALID_DIGEST = "Unbekannter Pruefsummenalgorithmus: ";
 
+	private static final String OPTION_INDEX = "--index";
+	private static final String OPTION_COMPACT_INDEX = "--compact-index";
+	private static final String OPTION_INVALIDATE_INDEX = "--invalidate-index";
+	private static final String OPTION_METRICS = "--metrics";
+	private static final String OPTION_PROGRESS = "--progress";
+	private static final String OPTION_FORMAT = "--format";
+	private static final String OPTION_MIN_SIZE = "--min-size";
+	private static final String OPTION_MAX_SIZE = "--max-size";
+	private static final String OPTION_INCLUDE = "--include";
+	private static final String OPTION_EXCLUDE = "--exclude";
+	private static final String OPTION_PRUNE = "--prune";
+	private static final String OPTION_SKIP_HIDDEN = "--skip-hidden";
+	private static final String OPTION_DIGEST = "--digest";
+	private static final String OPTION_VERIFY = "--verify";
+	private static final String OPTION_TIME_LIMIT = "--time-limit";
+	private static final String OPTION_MAX_BYTES = "--max-bytes";
+	private static final List<String> VALUE_OPTIONS = Arrays.asList(OPTION_INDEX, OPTION_COMPACT_INDEX,
+			OPTION_INVALIDATE_INDEX, OPTION_METRICS, OPTION_PROGRESS, OPTION_FORMAT, OPTION_MIN_SIZE, OPTION_MAX_SIZE, OPTION_INCLUDE,
+			OPTION_EXCLUDE, OPTION_PRUNE, OPTION_DIGEST, OPTION_TIME_LIMIT, OPTION_MAX_BYTES);
 	/**
-	 * Sucht im übergebenen Verzeichnis nach Dubletten.
-	 * @param args Erster Parameter muss ein gültiges Verzeichnis sein
+	 * Höchste Wartezeit nach einem Abbruch, etwa über Strg+C, bis zu der die
+	 * bestätigten Dubletten noch ausgegeben werden
+	 */
+	private static final long SHUTDOWN_GRACE_MILLIS = 10_000;
+
+	/**
+	 * Sucht in den übergebenen Verzeichnissen gemeinsam nach Dubletten. Wird die Suche über Zeitlimit, Obergrenze
+	 * gelesener Bytes oder Strg+C vorzeitig beendet, so werden die bis dahin bestätigten Dubletten ausgegeben und
+	 * die offenen Gruppen auf der Fehlerausgabe gemeldet.
+	 * @param args Optionen, gefolgt von mindestens einem gültigen Verzeichnis
 	 */
 	public static void main(String[] args) {
-		if (args.length != 1) {
-			System.err.println(ERROR + NO_PARAM + USAGE);
+		List<File> directories = new ArrayList<>();
+		String indexName = null;
+		String compactIndexName = null;
+		List<String> invalidatedPaths = new ArrayList<>();
+		long metricsInterval = 0;
+		long progressInterval = 0;
+		long timeLimit = 0;
+		GroupWriter.Format format = GroupWriter.Format.TEXT;
+		ScanFilter filter = null;
+		ContentDigest contentDigest = null;
+		boolean verifyContent = false;
+		ScanBudget budget = new ScanBudget();
+		for (int i = 0; i < args.length; i++) {
+			String argument = args[i];
+			if (OPTION_SKIP_HIDDEN.equals(argument)) {
+				filter = (filter == null ? new ScanFilter() : filter).setSkipHidden(true);
+			} else if (OPTION_VERIFY.equals(argument)) {
+				verifyContent = true;
+			} else if (VALUE_OPTIONS.contains(argument)) {
+				if (++i >= args.length) {
+					System.err.println(ERROR + MISSING_OPTION_VALUE + argument + USAGE);
+					return;
+				}
+				if (OPTION_INDEX.equals(argument)) {
+					indexName = args[i];
+				} else if (OPTION_COMPACT_INDEX.equals(argument)) {
+					compactIndexName = args[i];
+				} else if (OPTION_INVALIDATE_INDEX.equals(argument)) {
+					invalidatedPaths.add(args[i]);
+				} else if (OPTION_FORMAT.equals(argument)) {
+					format = GroupWriter.Format.of(args[i]);
+					if (format == null) {
+						System.err.println(ERROR + INVALID_FORMAT + args[i] + USAGE);
+						return;
+					}
+				} else if (OPTION_DIGEST.equals(argument)) {
+					try {
+						contentDigest = ContentDigest.of(args[i]);
+					} catch (IllegalArgumentException e) {
+						System.err.println(ERROR + INVALID_DIGEST + args[i] + USAGE);
+						return;
+					}
+				} else if (OPTION_MIN_SIZE.equals(argument) || OPTION_MAX_SIZE.equals(argument)
+						|| OPTION_MAX_BYTES.equals(argument)) {
+					long size = parseSize(args[i]);
+					if (size < 0) {
+						System.err.println(ERROR + INVALID_SIZE + args[i] + USAGE);
+						return;
+					}
+					if (OPTION_MAX_BYTES.equals(argument)) {
+						budget.setMaxBytes(size);
+					} else if (OPTION_MIN_SIZE.equals(argument)) {
+						filter = (filter == null ? new ScanFilter() : filter).setMinSize(size);
+					} else {
+						filter = (filter == null ? new ScanFilter() : filter).setMaxSize(size);
+					}
+				} else if (OPTION_INCLUDE.equals(argument) || OPTION_EXCLUDE.equals(argument)
+						|| OPTION_PRUNE.equals(argument)) {
+					filter = filter == null ? new ScanFilter() : filter;
+					try {
+						if (OPTION_INCLUDE.equals(argument)) {
+							filter.include(args[i]);
+						} else if (OPTION_EXCLUDE.equals(argument)) {
+							filter.exclude(args[i]);
+						} else {
+							filter.prune(args[i]);
+						}
+					} catch (IllegalArgumentException e) {
+						System.err.println(ERROR + INVALID_PATTERN + args[i] + USAGE);
+						return;
+					}
+				} else {
+					long interval = parseInterval(args[i]);
+					if (interval <= 0) {
+						System.err.println(ERROR + INVALID_INTERVAL + args[i] + USAGE);
+						return;
+					}
+					if (OPTION_METRICS.equals(argument)) {
+						metricsInterval = interval;
+					} else if (OPTION_PROGRESS.equals(argument)) {
+						progressInterval = interval;
+					} else {
+						timeLimit = interval;
+					}
+				}
+			} else {
+				directories.add(new File(argument + File.separator));
+			}
+		}
+
+		if (compactIndexName != null) {
+			compactIndex(compactIndexName);
 			return;
 		}
-		
-		File directory = new File(args[0] + File.separator);
-		
-		if (!directory.isDirectory()) {
-			System.err.println(ERROR + INVALID_DIRECTORY + USAGE);
+
+		if (!invalidatedPaths.isEmpty()) {
+			if (indexName == null) {
+				System.err.println(ERROR + MISSING_INDEX + OPTION_INVALIDATE_INDEX + USAGE);
+				return;
+			}
+			invalidateIndex(indexName, invalidatedPaths);
 			return;
 		}
-		
-		if (!directory.canRead()) {
-			System.err.println(ERROR + UREADABLE_DIRECTORY + USAGE);
+
+		if (directories.isEmpty()) {
+			System.err.println(ERROR + NO_PARAM + USAGE);
 			return;
 		}
+		
+		for (File directory : directories) {
+			if (!directory.isDirectory()) {
+				System.err.println(ERROR + INVALID_DIRECTORY + USAGE);
+				return;
+			}
+
+			if (!directory.canRead()) {
+				System.err.println(ERROR + UREADABLE_DIRECTORY + USAGE);
+				return;
+			}
+		}
+
+		ScanSettings settings = new ScanSettings().setFilter(filter).setContentDigest(contentDigest)
+				.setVerifyContent(verifyContent).setBudget(budget);
+		if (indexName != null) {
+			try {
+				settings.setHashIndex(HashIndex.load(Paths.get(indexName)));
+			} catch (IOException e) {
+				System.err.println(ERROR + INDEX_FAILED + e.getMessage());
+				return;
+			}
+		}
+
+		// Kennzahlen werden immer erfasst, damit die Bilanz der Stichproben ausgegeben werden kann
+		ScanMetrics metrics = new ScanMetrics();
+		settings.setMetrics(metrics);
+		ScheduledExecutorService reporter = null;
+		if (metricsInterval > 0) {
+			reporter = startReporter(reporter, "Metrics: ", metrics::summary, metricsInterval);
+		}
+		ScanProgress progress = null;
+		if (progressInterval > 0) {
+			progress = new ScanProgress();
+			settings.setProgress(progress);
+			reporter = startReporter(reporter, "Progress: ", progress::summary, progressInterval);
+		}
 
+		// Maschinenlesbare Formate erhalten auf der Standardausgabe nur die Gruppen
+		PrintStream log = format == GroupWriter.Format.TEXT ? System.out : System.err;
 		DateFormat timeInstance = SimpleDateFormat.getTimeInstance();
-		System.out.println("Begin finding lengths: " + timeInstance.format(new Date()));
-		Map<Long, List<File>> cluster = DuplicateLengthFinder.getResult(directory);
-		
-		System.out.println("Begin finding duplicates: " + timeInstance.format(new Date()));
-		cluster.values().parallelStream().map(DuplicateContentFinder::getResult).forEach(DupFinderConsole::printQueues);
-		System.out.println("Program end: " + timeInstance.format(new Date()));
+		log.println("Begin finding duplicates: " + timeInstance.format(new Date()));
+		System.out.flush();
+		if (timeLimit > 0) {
+			budget.setTimeLimit(timeLimit, TimeUnit.SECONDS);
+		}
+		Thread shutdownHook = cancelOnShutdown(budget);
+		AtomicInteger unresolvedGroups = new AtomicInteger();
+		AtomicInteger skippedFolders = new AtomicInteger();
+		try (ScanEngine engine = new ScanEngine(settings); GroupWriter output = new GroupWriter(System.out, format)) {
+			engine.findDuplicates(directories, new DuplicateFinderCallback() {
+
+				@Override
+				public void duplicateGroup(List<File> duplicateFiles) {
+					output.write(duplicateFiles);
+				}
+
+				@Override
+				public void linkedGroup(List<File> linkedFiles) {
+					output.writeLinked(linkedFiles);
+				}
+
+				@Override
+				public void unresolvedGroup(List<File> unresolvedFiles) {
+					unresolvedGroups.incrementAndGet();
+					System.err.println("Unresolved group: " + unresolvedFiles);
+				}
+
+				@Override
+				public void skippedFolder(File folder) {
+					skippedFolders.incrementAndGet();
+				}
+			});
+		} catch (IOException e) {
+			System.err.println(ERROR + OUTPUT_FAILED + e.getMessage());
+		} finally {
+			if (reporter != null) {
+				reporter.shutdownNow();
+			}
+		}
+		log.println("Files eliminated by sampling: " + metrics.getEliminated(ScanMetrics.Stage.SAMPLE));
+		if (budget.getReason() != null) {
+			System.err.println("Scan stopped early (" + budget.getReason() + "): " + unresolvedGroups.get()
+					+ " unresolved groups, " + skippedFolders.get() + " skipped folders");
+		}
+		if (progress != null) {
+			System.err.println("Progress: " + progress.summary());
+		}
+		if (metricsInterval > 0) {
+			System.err.println("Metrics: " + metrics.summary());
+		}
+
+		if (settings.getHashIndex() != null) {
+			try {
+				settings.getHashIndex().save();
+			} catch (IOException e) {
+				System.err.println(ERROR + INDEX_FAILED + e.getMessage());
+			}
+		}
+		log.println("Program end: " + timeInstance.format(new Date()));
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// Die JVM wird bereits beendet, der Hook wartet auf diesen Thread
+		}
 	}
-    
-	private static void printQueues(Queue<List<File>> queues) {
-		for (Collection<File> files : queues) {
-			printFiles(files);
-			System.out.println();
+
+	/**
+	 * Bricht die Suche ab, sobald die JVM beendet wird, etwa über Strg+C, und
+	 * wartet begrenzt, bis die bestätigten Dubletten ausgegeben sind.
+	 * @param budget Budget der Suche
+	 * @return registrierter Hook
+	 */
+	private static Thread cancelOnShutdown(ScanBudget budget) {
+		Thread main = Thread.currentThread();
+		Thread hook = new Thread(() -> {
+			budget.cancel();
+			try {
+				main.join(SHUTDOWN_GRACE_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "dupfinder-shutdown");
+		Runtime.getRuntime().addShutdownHook(hook);
+		return hook;
+	}
+
+	private static long parseInterval(String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return 0;
 		}
 	}
-    
-	private static void printFiles(Collection<File> files) {
-		for (File file : files) {
-			printFile(file);
+
+	/**
+	 * Liest eine Größe in Bytes, optional mit der Einheit K, M oder G zur Basis
+	 * 1024.
+	 * @param value Größe, etwa 1M
+	 * @return Größe in Bytes oder -1, falls sie nicht gelesen werden kann
+	 */
+	private static long parseSize(String value) {
+		int shift = 0;
+		String number = value;
+		if (!value.isEmpty()) {
+			int unit = "KMG".indexOf(Character.toUpperCase(value.charAt(value.length() - 1)));
+			if (unit >= 0) {
+				shift = (unit + 1) * 10;
+				number = value.substring(0, value.length() - 1);
+			}
+		}
+		try {
+			long size = Long.parseLong(number);
+			return size < 0 || size > Long.MAX_VALUE >> shift ? -1 : size << shift;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Gibt eine Zusammenfassung regelmäßig auf der Fehlerausgabe aus, damit sie
+	 * nicht mit den gefundenen Dubletten vermischt wird.
+	 * @param reporter bereits laufender Dienst der Ausgabe oder null
+	 * @param label Präfix jeder Ausgabe
+	 * @param summary Lieferant der auszugebenden Zusammenfassung
+	 * @param seconds Abstand der Ausgaben in Sekunden
+	 * @return zu beendender Dienst der Ausgabe
+	 */
+	private static ScheduledExecutorService startReporter(ScheduledExecutorService reporter, String label,
+			Supplier<String> summary, long seconds) {
+		if (reporter == null) {
+			reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "dupfinder-report");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		reporter.scheduleAtFixedRate(() -> System.err.println(label + summary.get()), seconds, seconds,
+				TimeUnit.SECONDS);
+		return reporter;
+	}
+
+	private static void compactIndex(String indexName) {
+		try {
+			HashIndex index = HashIndex.load(Paths.get(indexName));
+			int removed = index.compact();
+			index.save();
+			System.out.println("Removed stale index entries: " + removed + ", remaining: " + index.size());
+		} catch (IOException e) {
+			System.err.println(ERROR + INDEX_FAILED + e.getMessage());
 		}
-		System.out.println();
 	}
 
-	private static void printFile(File file) {
-		System.out.println(file.getAbsolutePath());
+	private static void invalidateIndex(String indexName, List<String> paths) {
+		try {
+			HashIndex index = HashIndex.load(Paths.get(indexName));
+			int removed = 0;
+			for (String path : paths) {
+				removed += index.invalidate(Paths.get(path));
+			}
+			index.save();
+			System.out.println("Removed invalidated index entries: " + removed + ", remaining: " + index.size());
+		} catch (IOException | InvalidPathException e) {
+			System.err.println(ERROR + INDEX_FAILED + e.getMessage());
+		}
 	}
 }
@@ -0,0 +1,279 @@
+package de.b0n.dir;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Schreibt gefundene Dublettengruppen über einen eigenen Thread gepuffert in
+ * einen Ausgabestrom. Die Suche übergibt die Gruppen aus beliebigen Threads
+ * nur an eine Warteschlange, sodass Gruppen nie ineinander geschrieben werden
+ * und die Suche nicht auf die Ausgabe wartet, solange die Warteschlange
+ * nicht voll ist. Gruppen harter Verknüpfungen belegen keinen zusätzlichen
+ * Speicher und werden daher mit 0 verschwendeten Bytes geschrieben.
+ */
+class GroupWriter implements AutoCloseable {
+
+	/**
+	 * Formate der Ausgabe
+	 */
+	enum Format {
+		/**
+		 * Pfade zeilenweise, Gruppen durch Leerzeilen getrennt
+		 */
+		TEXT,
+		/**
+		 * Ein JSON-Objekt je Gruppe und Zeile mit Größe, Anzahl, verschwendeten
+		 * Bytes und Pfaden, Gruppen harter Verknüpfungen zusätzlich mit
+		 * "linked":true
+		 */
+		JSONL,
+		/**
+		 * Eine Zeile je Datei mit Gruppe, Größe, verschwendeten Bytes und Pfad
+		 * nach RFC 4180
+		 */
+		CSV,
+		/**
+		 * Ein durch NUL abgeschlossener Eintrag je Datei mit Gruppe, Größe und
+		 * verschwendeten Bytes durch Tabulatoren getrennt, gefolgt vom Pfad
+		 */
+		NUL;
+
+		/**
+		 * Liefert das Format zum Namen einer Konsolenoption.
+		 *
+		 * @param name
+		 *            Name des Formats ohne Beachtung der Groß- und Kleinschreibung
+		 * @return Format oder null, falls es keines dieses Namens gibt
+		 */
+		static Format of(String name) {
+			for (Format format : values()) {
+				if (format.name().equalsIgnoreCase(name)) {
+					return format;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final int QUEUE_CAPACITY = 1024;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final Group END = new Group(new ArrayList<>(), false);
+
+	private final Format format;
+	private final Writer writer;
+	private final BlockingQueue<Group> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private final Thread thread;
+	private long groups;
+	private volatile IOException failure;
+
+	/**
+	 * Startet den Thread, welcher die Gruppen in den Ausgabestrom schreibt. Der
+	 * Ausgabestrom wird beim Schließen nur geleert, nicht geschlossen.
+	 *
+	 * @param out
+	 *            Ausgabestrom der Gruppen
+	 * @param format
+	 *            Format der Ausgabe
+	 */
+	GroupWriter(OutputStream out, Format format) {
+		if (out == null) {
+			throw new IllegalArgumentException("out may not be null.");
+		}
+		if (format == null) {
+			throw new IllegalArgumentException("format may not be null.");
+		}
+		this.format = format;
+		Charset charset = format == Format.TEXT ? Charset.defaultCharset() : StandardCharsets.UTF_8;
+		this.writer = new BufferedWriter(new OutputStreamWriter(out, charset), BUFFER_SIZE);
+		this.thread = new Thread(this::run, "dupfinder-output");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Gruppe in der Warteschlange
+	 */
+	private static final class Group {
+		private final List<File> files;
+		private final boolean linked;
+
+		Group(List<File> files, boolean linked) {
+			this.files = files;
+			this.linked = linked;
+		}
+	}
+
+	/**
+	 * Übergibt eine Gruppe an den schreibenden Thread. Blockiert nur, solange
+	 * die Warteschlange voll ist.
+	 *
+	 * @param files
+	 *            Dateien gleichen Inhalts
+	 */
+	void write(List<File> files) {
+		write(files, false);
+	}
+
+	/**
+	 * Übergibt eine Gruppe harter Verknüpfungen an den schreibenden Thread.
+	 * Blockiert nur, solange die Warteschlange voll ist.
+	 *
+	 * @param files
+	 *            Dateien mit demselben Dateischlüssel
+	 */
+	void writeLinked(List<File> files) {
+		write(files, true);
+	}
+
+	private void write(List<File> files, boolean linked) {
+		if (files.isEmpty()) {
+			return;
+		}
+		try {
+			queue.put(new Group(files, linked));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Group could not be queued", e);
+		}
+	}
+
+	private void run() {
+		if (format == Format.CSV) {
+			try {
+				writer.write("group,size,wasted,path\n");
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		try {
+			Group group;
+			while ((group = queue.take()) != END) {
+				if (failure == null) {
+					try {
+						writeGroup(group.files, group.linked);
+					} catch (IOException e) {
+						failure = e;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeGroup(List<File> files, boolean linked) throws IOException {
+		long size = files.get(0).length();
+		long wasted = linked ? 0 : size * (files.size() - 1);
+		long group = ++groups;
+		switch (format) {
+		case TEXT:
+			for (File file : files) {
+				writer.write(file.getAbsolutePath());
+				writer.write(System.lineSeparator());
+			}
+			writer.write(System.lineSeparator());
+			writer.write(System.lineSeparator());
+			break;
+		case JSONL:
+			writer.write(String.format(Locale.ROOT, "{\"size\":%d,\"count\":%d,\"wasted\":%d,%s\"files\":[", size,
+					files.size(), wasted, linked ? "\"linked\":true," : ""));
+			for (int i = 0; i < files.size(); i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writeJson(files.get(i).getAbsolutePath());
+			}
+			writer.write("]}\n");
+			break;
+		case CSV:
+			for (File file : files) {
+				writer.write(group + "," + size + "," + wasted + ",");
+				writeCsv(file.getAbsolutePath());
+				writer.write('\n');
+			}
+			break;
+		case NUL:
+			for (File file : files) {
+				writer.write(group + "\t" + size + "\t" + wasted + "\t");
+				writer.write(file.getAbsolutePath());
+				writer.write('\0');
+			}
+			break;
+		}
+	}
+
+	private void writeJson(String value) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				writer.write("\\\"");
+				break;
+			case '\\':
+				writer.write("\\\\");
+				break;
+			case '\n':
+				writer.write("\\n");
+				break;
+			case '\r':
+				writer.write("\\r");
+				break;
+			case '\t':
+				writer.write("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					writer.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+				} else {
+					writer.write(c);
+				}
+			}
+		}
+		writer.write('"');
+	}
+
+	private void writeCsv(String value) throws IOException {
+		if (value.indexOf('"') < 0 && value.indexOf(',') < 0 && value.indexOf('\n') < 0
+				&& value.indexOf('\r') < 0) {
+			writer.write(value);
+			return;
+		}
+		writer.write('"');
+		writer.write(value.replace("\"", "\"\""));
+		writer.write('"');
+	}
+
+	/**
+	 * Wartet, bis alle übergebenen Gruppen geschrieben sind, und leert den
+	 * Puffer in den Ausgabestrom.
+	 *
+	 * @throws IOException
+	 *             falls eine Gruppe nicht geschrieben werden konnte
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			queue.put(END);
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Output was interrupted", e);
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		writer.flush();
+	}
+}
@@ -0,0 +1,128 @@
+package de.b0n.dir.processor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Hält direkte Lesepuffer zur Wiederverwendung vor. Die Puffer werden in
+ * Größenklassen zu Zweierpotenzen verwaltet und von allen Readern einer
+ * ScanEngine geteilt, sodass ein Vergleich im eingeschwungenen Zustand keine
+ * neuen Puffer anlegt. Direkte Puffer ersparen zudem das Umkopieren, welches
+ * beim Lesen in Puffer auf dem Heap anfällt. Zurückgegebene Puffer werden nur
+ * bis zu einer Obergrenze aufbewahrt, darüber hinaus gibt der Garbage
+ * Collector sie frei.
+ */
+class BufferPool {
+	/**
+	 * Standardobergrenze aufbewahrter Puffer: 64 MiB
+	 */
+	static final long DEFAULT_MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+	/**
+	 * Kleinste Größenklasse: 4 KiB
+	 */
+	private static final int MIN_CAPACITY = 4 * 1024;
+
+	private final long maxRetainedBytes;
+	/**
+	 * Freie Puffer je Größenklasse, der Index entspricht dem Exponenten der
+	 * Zweierpotenz
+	 */
+	private final ArrayDeque<ByteBuffer>[] free;
+	private long retainedBytes;
+	private long allocatedBuffers;
+
+	/**
+	 * Erzeugt einen Pool mit der Standardobergrenze.
+	 */
+	BufferPool() {
+		this(DEFAULT_MAX_RETAINED_BYTES);
+	}
+
+	/**
+	 * Erzeugt einen Pool mit der übergebenen Obergrenze.
+	 *
+	 * @param maxRetainedBytes
+	 *            Obergrenze der aufbewahrten freien Puffer in Bytes, nicht
+	 *            negativ
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	BufferPool(long maxRetainedBytes) {
+		if (maxRetainedBytes < 0) {
+			throw new IllegalArgumentException("maxRetainedBytes may not be negative.");
+		}
+		this.maxRetainedBytes = maxRetainedBytes;
+		this.free = new ArrayDeque[Integer.SIZE];
+		for (int sizeClass = 0; sizeClass < free.length; sizeClass++) {
+			free[sizeClass] = new ArrayDeque<>();
+		}
+	}
+
+	/**
+	 * Liefert einen freien Puffer mit mindestens der angeforderten Größe. Das
+	 * Limit des Puffers entspricht der angeforderten Größe.
+	 *
+	 * @param size
+	 *            benötigte Größe in Bytes, mindestens 0
+	 * @return direkter Puffer, der über release() zurückgegeben werden soll
+	 */
+	ByteBuffer acquire(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("size may not be negative.");
+		}
+		int sizeClass = sizeClass(size);
+		ByteBuffer buffer;
+		synchronized (this) {
+			buffer = free[sizeClass].pollLast();
+			if (buffer != null) {
+				retainedBytes -= buffer.capacity();
+			} else {
+				allocatedBuffers++;
+			}
+		}
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(1 << sizeClass);
+		}
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+
+	/**
+	 * Gibt einen Puffer zur Wiederverwendung zurück. Der Puffer darf danach
+	 * nicht mehr genutzt werden, auch nicht über Ausschnitte.
+	 *
+	 * @param buffer
+	 *            über acquire() erhaltener Puffer
+	 */
+	void release(ByteBuffer buffer) {
+		int capacity = buffer.capacity();
+		if (!buffer.isDirect() || Integer.bitCount(capacity) != 1 || capacity < MIN_CAPACITY) {
+			return;
+		}
+		synchronized (this) {
+			if (retainedBytes + capacity <= maxRetainedBytes) {
+				retainedBytes += capacity;
+				free[Integer.numberOfTrailingZeros(capacity)].addLast(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Liefert die Anzahl bisher neu angelegter Puffer.
+	 *
+	 * @return Anzahl angelegter Puffer
+	 */
+	synchronized long getAllocatedBuffers() {
+		return allocatedBuffers;
+	}
+
+	private static int sizeClass(int size) {
+		if (size <= MIN_CAPACITY) {
+			return Integer.numberOfTrailingZeros(MIN_CAPACITY);
+		}
+		if (size > 1 << 30) {
+			throw new IllegalArgumentException("size may not exceed 1 GiB.");
+		}
+		return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+	}
+}
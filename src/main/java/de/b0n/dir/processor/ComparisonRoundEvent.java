@@ -0,0 +1,104 @@
+package de.b0n.dir.processor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ereignis für eine Vergleichsrunde einer Gruppe im DuplicateContentFinder.
+ * Nur erzeugen, wenn ScanEvents.ENABLED gesetzt ist.
+ */
+@Name("de.b0n.dupfinder.ComparisonRound")
+@Label("Comparison Round")
+@Category("DupFinder")
+@Description("One block-wise comparison round of a group of equally sized files")
+@StackTrace(false)
+final class ComparisonRoundEvent extends jdk.jfr.Event {
+
+	@Label("First File")
+	String firstFile;
+
+	@Label("Candidates")
+	@Description("Number of files in the group at the start of the round")
+	int candidates;
+
+	@Label("Block Size")
+	@DataAmount
+	int blockSize;
+
+	@Label("Bytes Read")
+	@DataAmount
+	long bytesRead;
+
+	@Label("Failed Files")
+	int failedFiles;
+
+	@Label("Unique Files")
+	int uniqueFiles;
+
+	@Label("Duplicate Files")
+	@Description("Number of completely read files reported as duplicates in this round")
+	int duplicateFiles;
+
+	@Label("Subgroups")
+	@Description("Number of groups compared in further rounds")
+	int subgroups;
+
+	/**
+	 * Beginnt die Zeitmessung einer Runde.
+	 *
+	 * @return gestartetes Ereignis
+	 */
+	static ComparisonRoundEvent start() {
+		ComparisonRoundEvent event = new ComparisonRoundEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Prüft, ob das Ereignis aufgezeichnet würde, bevor dessen Werte ermittelt
+	 * werden.
+	 *
+	 * @return true, falls end() aufgerufen werden soll
+	 */
+	boolean isRecorded() {
+		end();
+		return shouldCommit();
+	}
+
+	/**
+	 * Zeichnet das Ereignis mit den Werten der Runde auf.
+	 *
+	 * @param firstFile
+	 *            erste Datei der Gruppe
+	 * @param candidates
+	 *            Anzahl der Dateien zu Beginn der Runde
+	 * @param blockSize
+	 *            Blockgröße der Runde
+	 * @param bytesRead
+	 *            in der Runde gelesene Bytes
+	 * @param failedFiles
+	 *            Anzahl nicht lesbarer Dateien
+	 * @param uniqueFiles
+	 *            Anzahl als einzigartig erkannter Dateien
+	 * @param duplicateFiles
+	 *            Anzahl als Dubletten gemeldeter Dateien
+	 * @param subgroups
+	 *            Anzahl weiter zu vergleichender Gruppen
+	 */
+	void record(String firstFile, int candidates, int blockSize, long bytesRead, int failedFiles, int uniqueFiles,
+			int duplicateFiles, int subgroups) {
+		this.firstFile = firstFile;
+		this.candidates = candidates;
+		this.blockSize = blockSize;
+		this.bytesRead = bytesRead;
+		this.failedFiles = failedFiles;
+		this.uniqueFiles = uniqueFiles;
+		this.duplicateFiles = duplicateFiles;
+		this.subgroups = subgroups;
+		commit();
+	}
+}
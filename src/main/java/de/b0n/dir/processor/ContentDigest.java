@@ -0,0 +1,93 @@
+package de.b0n.dir.processor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Algorithmus einer Prüfsumme über den Inhalt einer Datei. Im Vergleich über
+ * Prüfsummen wird jede Datei genau einmal gelesen und nach ihrer Prüfsumme
+ * gruppiert, statt alle Dateien einer Gruppe gleichzeitig blockweise zu
+ * lesen.
+ * <p>
+ * Algorithmen werden über den ServiceLoader gefunden. Mitgeliefert sind
+ * {@code murmur3-128}, eine schnelle nicht kryptografische 128-Bit-Prüfsumme,
+ * und {@code sha-256}. Weitere Algorithmen werden unter
+ * {@code META-INF/services/de.b0n.dir.processor.ContentDigest} eingetragen und
+ * benötigen einen öffentlichen Konstruktor ohne Parameter.
+ */
+public interface ContentDigest {
+
+	/**
+	 * Berechnet die Prüfsumme eines einzelnen Inhalts. Ein Hasher wird nur von
+	 * einem Thread zur Zeit genutzt.
+	 */
+	interface Hasher {
+
+		/**
+		 * Nimmt den verbleibenden Inhalt des Blocks in die Prüfsumme auf. Die
+		 * Position des Blocks wird dabei nicht verändert.
+		 *
+		 * @param block
+		 *            nächster Abschnitt des Inhalts
+		 */
+		void update(ByteBuffer block);
+
+		/**
+		 * Schließt die Berechnung ab.
+		 *
+		 * @return Prüfsumme des gesamten Inhalts
+		 */
+		byte[] digest();
+	}
+
+	/**
+	 * Liefert den Namen, unter dem der Algorithmus gefunden wird.
+	 *
+	 * @return Name in Kleinbuchstaben, etwa murmur3-128
+	 */
+	String getName();
+
+	/**
+	 * Beginnt die Berechnung einer neuen Prüfsumme.
+	 *
+	 * @return neuer Hasher
+	 */
+	Hasher newHasher();
+
+	/**
+	 * Sucht einen Algorithmus anhand seines Namens ohne Beachtung der
+	 * Groß-/Kleinschreibung.
+	 *
+	 * @param name
+	 *            Name des Algorithmus
+	 * @return gefundener Algorithmus
+	 * @throws IllegalArgumentException
+	 *             falls kein Algorithmus dieses Namens bereitgestellt wird
+	 */
+	static ContentDigest of(String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("name may not be null.");
+		}
+		for (ContentDigest digest : ServiceLoader.load(ContentDigest.class)) {
+			if (digest.getName().equalsIgnoreCase(name)) {
+				return digest;
+			}
+		}
+		throw new IllegalArgumentException("Unknown content digest: " + name);
+	}
+
+	/**
+	 * Liefert die Namen aller bereitgestellten Algorithmen.
+	 *
+	 * @return Namen in der Reihenfolge des ServiceLoaders
+	 */
+	static List<String> names() {
+		List<String> names = new ArrayList<>();
+		for (ContentDigest digest : ServiceLoader.load(ContentDigest.class)) {
+			names.add(digest.getName());
+		}
+		return names;
+	}
+}
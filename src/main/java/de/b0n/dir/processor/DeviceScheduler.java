@@ -0,0 +1,278 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Ordnet Dateien dem Gerät ihres Dateisystems zu und begrenzt die
+ * gleichzeitigen Lesezugriffe je Gerät. Rotierende Festplatten verlieren bei
+ * verschränkten Zugriffen einen Großteil ihres Durchsatzes und werden daher
+ * nur mit wenigen gleichzeitigen Zugriffen gelesen, SSDs mit vielen. Die
+ * Begrenzung gilt für alle Suchen einer ScanEngine gemeinsam.
+ */
+class DeviceScheduler {
+
+	private static final Path SYS_BLOCK = Paths.get("/sys/class/block");
+	private static final Comparator<FileReader> BY_PATH = Comparator.comparing(DeviceScheduler::pathOf);
+
+	/**
+	 * Gerät mit eigener Begrenzung gleichzeitiger Lesezugriffe
+	 */
+	static final class Device {
+		private final String name;
+		private final boolean rotational;
+		private final int maxReads;
+		private final Semaphore reads;
+
+		Device(String name, boolean rotational, int maxReads) {
+			this.name = name;
+			this.rotational = rotational;
+			this.maxReads = maxReads;
+			this.reads = new Semaphore(maxReads, true);
+		}
+
+		String getName() {
+			return name;
+		}
+
+		boolean isRotational() {
+			return rotational;
+		}
+
+		int getMaxReads() {
+			return maxReads;
+		}
+
+		private void read(FileReader reader, Consumer<FileReader> action) {
+			read(() -> {
+				action.accept(reader);
+				return null;
+			});
+		}
+
+		private <T> T read(Supplier<T> action) {
+			try {
+				reads.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Thread was stopped while waiting for device " + name, e);
+			}
+			try {
+				return action.get();
+			} finally {
+				reads.release();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return name + (rotational ? " (rotational, " : " (") + maxReads + " reads)";
+		}
+	}
+
+	private final int maxReads;
+	private final int maxRotationalReads;
+	private final Device unknown;
+	/**
+	 * Geräte je Verzeichnis, damit das Gerät nur einmal je Verzeichnis und nicht
+	 * je Datei ermittelt wird
+	 */
+	private final Map<Path, Device> devicesByFolder = new ConcurrentHashMap<>();
+	private final Map<FileStore, Device> devicesByStore = new ConcurrentHashMap<>();
+
+	/**
+	 * Erzeugt die Zuordnung mit den Begrenzungen je Geräteart.
+	 *
+	 * @param maxReads
+	 *            gleichzeitige Lesezugriffe auf nicht rotierende oder unbekannte
+	 *            Geräte, mindestens 1
+	 * @param maxRotationalReads
+	 *            gleichzeitige Lesezugriffe auf rotierende Festplatten,
+	 *            mindestens 1
+	 */
+	DeviceScheduler(int maxReads, int maxRotationalReads) {
+		if (maxReads < 1) {
+			throw new IllegalArgumentException("maxReads must be positive.");
+		}
+		if (maxRotationalReads < 1) {
+			throw new IllegalArgumentException("maxRotationalReads must be positive.");
+		}
+		this.maxReads = maxReads;
+		this.maxRotationalReads = maxRotationalReads;
+		this.unknown = new Device("unknown", false, maxReads);
+	}
+
+	/**
+	 * Liefert das Gerät, auf dem die Datei liegt. Das Gerät wird je Reader nur
+	 * einmal ermittelt.
+	 *
+	 * @param reader
+	 *            Reader der Datei
+	 * @return Gerät der Datei, ein gemeinsames für nicht ermittelbare Geräte
+	 */
+	Device deviceOf(FileReader reader) {
+		Device device = reader.getDevice();
+		if (device == null) {
+			device = deviceOf(reader.getFile());
+			reader.setDevice(device);
+		}
+		return device;
+	}
+
+	private Device deviceOf(File file) {
+		Path folder;
+		try {
+			folder = file.getAbsoluteFile().toPath().getParent();
+		} catch (RuntimeException e) {
+			// Fehler beim Zugriff auf die Datei zeigen sich erst beim Lesen
+			return unknown;
+		}
+		if (folder == null) {
+			return unknown;
+		}
+		return devicesByFolder.computeIfAbsent(folder, this::lookup);
+	}
+
+	private static String pathOf(FileReader reader) {
+		try {
+			return reader.getFile().getPath();
+		} catch (RuntimeException e) {
+			return "";
+		}
+	}
+
+	private Device lookup(Path folder) {
+		try {
+			return devicesByStore.computeIfAbsent(Files.getFileStore(folder), store -> {
+				boolean rotational = isRotational(store);
+				return new Device(store.name(), rotational, rotational ? maxRotationalReads : maxReads);
+			});
+		} catch (IOException | SecurityException e) {
+			return unknown;
+		}
+	}
+
+	/**
+	 * Wendet die Aktion auf einen Reader an, sobald dessen Gerät einen weiteren
+	 * Lesezugriff erlaubt.
+	 *
+	 * @param reader
+	 *            zu bearbeitender Reader
+	 * @param action
+	 *            Lesevorgang des Readers
+	 */
+	void read(FileReader reader, Consumer<FileReader> action) {
+		deviceOf(reader).read(reader, action);
+	}
+
+	/**
+	 * Führt einen Lesevorgang auf einer Datei ohne Reader aus, sobald deren
+	 * Gerät einen weiteren Lesezugriff erlaubt.
+	 *
+	 * @param file
+	 *            zu lesende Datei
+	 * @param action
+	 *            Lesevorgang der Datei
+	 * @param <T>
+	 *            Typ des Ergebnisses
+	 * @return Ergebnis des Lesevorgangs
+	 */
+	<T> T read(File file, Supplier<T> action) {
+		return deviceOf(file).read(action);
+	}
+
+	/**
+	 * Wendet die Aktion auf alle Reader an. Die Geräte werden auf dem Executor
+	 * parallel bedient, je Gerät laufen höchstens so viele Aktionen
+	 * gleichzeitig, wie es Lesezugriffe erlaubt. Ein Gerät mit nur einem
+	 * Lesezugriff wird in der Reihenfolge der Pfade gelesen, sodass benachbarte
+	 * Dateien aufeinander folgen. Liegen alle Reader auf demselben Gerät, so
+	 * werden sie ohne Zwischenstrukturen bearbeitet.
+	 *
+	 * @param readers
+	 *            zu bearbeitende Reader
+	 * @param executor
+	 *            Executor, auf dessen Thread-Pool die Reader gelesen werden
+	 * @param action
+	 *            Lesevorgang je Reader
+	 */
+	void forEach(Collection<FileReader> readers, Executor executor, Consumer<FileReader> action) {
+		Device single = null;
+		for (FileReader reader : readers) {
+			Device device = deviceOf(reader);
+			if (single != null && single != device) {
+				single = null;
+				break;
+			}
+			single = device;
+		}
+		if (single != null) {
+			forEach(single, readers, executor, action);
+			return;
+		}
+
+		Map<Device, List<FileReader>> byDevice = new HashMap<>();
+		for (FileReader reader : readers) {
+			byDevice.computeIfAbsent(deviceOf(reader), device -> new ArrayList<>()).add(reader);
+		}
+		executor.forEach(byDevice.entrySet(), byDevice.size(),
+				entry -> forEach(entry.getKey(), entry.getValue(), executor, action));
+	}
+
+	private static void forEach(Device device, Collection<FileReader> deviceReaders, Executor executor,
+			Consumer<FileReader> action) {
+		if (deviceReaders.size() == 1) {
+			device.read(deviceReaders.iterator().next(), action);
+		} else if (device.getMaxReads() == 1) {
+			List<FileReader> ordered = new ArrayList<>(deviceReaders);
+			ordered.sort(BY_PATH);
+			ordered.forEach(reader -> device.read(reader, action));
+		} else {
+			executor.forEach(deviceReaders, device.getMaxReads(), reader -> device.read(reader, action));
+		}
+	}
+
+	/**
+	 * Prüft unter Linux anhand von /sys, ob das Gerät des Dateisystems eine
+	 * rotierende Festplatte ist. Partitionen erben den Wert ihres Geräts.
+	 *
+	 * @param store
+	 *            zu prüfendes Dateisystem
+	 * @return true, falls das Gerät bekanntermaßen rotiert
+	 */
+	static boolean isRotational(FileStore store) {
+		String name = store.name();
+		if (!name.startsWith("/dev/") || !Files.isDirectory(SYS_BLOCK)) {
+			return false;
+		}
+		try {
+			String blockName = Paths.get(name).toRealPath().getFileName().toString();
+			Path block = SYS_BLOCK.resolve(blockName).toRealPath();
+			for (Path folder : new Path[] { block, block.getParent() }) {
+				Path rotational = folder == null ? null : folder.resolve("queue").resolve("rotational");
+				if (rotational != null && Files.isReadable(rotational)) {
+					return "1".equals(new String(Files.readAllBytes(rotational), StandardCharsets.US_ASCII).trim());
+				}
+			}
+		} catch (IOException | InvalidPathException | SecurityException e) {
+			// Unbekannte Geräte gelten als nicht rotierend
+		}
+		return false;
+	}
+}
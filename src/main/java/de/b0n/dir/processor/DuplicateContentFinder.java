@@ -1,65 +1,167 @@
 package de.b0n.dir.processor;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.InvalidPathException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * Sucht von gegeben Dateigruppen die inhaltlichen Duplikate.
+ * Sucht von gegeben Dateigruppen die inhaltlichen Duplikate. Die Dateien einer
+ * Gruppe werden blockweise gelesen und je Runde anhand des Blockinhalts in
+ * Untergruppen aufgeteilt. Mit ContentDigest wird stattdessen jede Datei
+ * einmal gelesen und nach ihrer Prüfsumme eingeordnet. Mit HashIndex werden
+ * Gruppen, deren Dateien alle unverändert im Index stehen, ohne Lesen nach den
+ * dort abgelegten Prüfsummen eingeordnet. Ist das
+ * Budget der Suche erschöpft, so werden offene Gruppen ohne weiteres Lesen als
+ * unaufgelöst gemeldet.
  */
 public class DuplicateContentFinder implements Runnable {
 
-	private static final Function<FileReader, Integer> fileReaderToInt = FileReader::read;
+	/**
+	 * Untergrenze der Blockgröße, auf welche bei sehr großen Gruppen reduziert
+	 * wird
+	 */
+	private static final int MIN_BLOCK_SIZE = 4 * 1024;
+	/**
+	 * Obergrenze des Speichers, den die Blöcke einer Gruppe in einer Runde
+	 * gemeinsam belegen sollen
+	 */
+	private static final int ROUND_BUFFER_LIMIT = 64 * 1024 * 1024;
+	/**
+	 * Leerer Block, wie er von vollständig gelesenen Dateien geliefert wird
+	 */
+	private static final ByteBuffer FINISHED_BLOCK = ByteBuffer.allocate(0);
+	/**
+	 * Leere Prüfsumme, welche beim Vergleich über Prüfsummen nicht lesbare
+	 * Dateien kennzeichnet
+	 */
+	private static final ByteBuffer FAILING_DIGEST = ByteBuffer.allocate(0);
+	private static final Function<FileReader, ByteBuffer> fileReaderToBlock = FileReader::getBlock;
+	private static final Predicate<FileReader> failedRead = reader -> reader.getBlock() == null;
 	private static final Function<FileReader, File> fileReaderToFile = FileReader::clear;
-	private static final Function<Collection<FileReader>, Stream<FileReader>> collection = Collection::parallelStream;
-	private static final Function<Entry<Integer, List<FileReader>>, List<FileReader>> entryToValue = Entry::getValue;
-	private static final Predicate<Entry<Integer, List<FileReader>>> hasSingleItemInEntry = entry -> entry.getValue()
+	private static final Function<Collection<FileReader>, Stream<FileReader>> collection = Collection::stream;
+	private static final Function<Entry<ByteBuffer, List<FileReader>>, List<FileReader>> entryToValue = Entry::getValue;
+	private static final Predicate<Entry<ByteBuffer, List<FileReader>>> hasSingleItemInEntry = entry -> entry.getValue()
 			.size() < 2;
 
 	private Collection<FileReader> currentCandidates;
 
 	private final DuplicateContentFinderCallback callback;
 	private final Executor executor;
+	private final int blockSize;
+	private final ScanMetrics metrics;
+	private final ScanProgress progress;
+	private final DeviceScheduler devices;
+	private final ScanBudget budget;
 
 	public DuplicateContentFinder(final Collection<FileReader> files, final DuplicateContentFinderCallback callback,
-			Executor executor) {
+			Executor executor, int blockSize) {
+		this(files, callback, executor, blockSize, null, null, null, null);
+	}
+
+	DuplicateContentFinder(final Collection<FileReader> files, final DuplicateContentFinderCallback callback,
+			Executor executor, int blockSize, ScanMetrics metrics, ScanProgress progress, DeviceScheduler devices,
+			ScanBudget budget) {
 		this.currentCandidates = files;
 		this.callback = callback;
 		this.executor = executor;
+		this.blockSize = blockSize;
+		this.metrics = metrics;
+		this.progress = progress;
+		this.devices = devices;
+		this.budget = budget;
 	}
 
+	/**
+	 * Vergleicht die Gruppe rundenweise. Abgespaltene Untergruppen werden als
+	 * eigene Aufgaben verglichen, die erste Untergruppe in der nächsten Runde.
+	 * Die Blöcke einer Runde werden je Gerät begrenzt und geordnet gelesen,
+	 * sofern ein DeviceScheduler vorliegt. Lesen alle Dateien denselben Block,
+	 * so wird die Gruppe ohne Aufteilen unverändert weiter verglichen, womit
+	 * Dubletten im eingeschwungenen Zustand kaum neue Objekte anlegen. Ist das
+	 * Budget vor einer Runde erschöpft, so wird die Gruppe als unaufgelöst
+	 * gemeldet. Bei laufender Aufzeichnung des Flight Recorders wird je Runde
+	 * ein ComparisonRoundEvent erzeugt.
+	 */
 	@Override
 	public void run() {
 		while (currentCandidates != null) {
-			Map<Integer, List<FileReader>> sortedFiles = currentCandidates.parallelStream()
-					.collect(Collectors.groupingByConcurrent(fileReaderToInt));
+			if (budget != null && budget.isExhausted()) {
+				// Unresolved Files
+				callback.unresolvedGroup(currentCandidates.stream().map(this::resolve).collect(Collectors.toList()));
+				currentCandidates = null;
+				continue;
+			}
+			ComparisonRoundEvent event = ScanEvents.ENABLED ? ComparisonRoundEvent.start() : null;
+			LongAdder roundBytes = event == null ? null : new LongAdder();
+			final int candidates = currentCandidates.size();
+			final int roundBlockSize = blockSizeFor(candidates);
+			if (devices == null) {
+				executor.forEach(currentCandidates, executor.getWidth(),
+						reader -> read(reader, roundBlockSize, roundBytes));
+			} else {
+				devices.forEach(currentCandidates, executor, reader -> read(reader, roundBlockSize, roundBytes));
+			}
+
+			ByteBuffer sameBlock = candidates > 1 ? sameBlock(currentCandidates) : null;
+			if (sameBlock != null) {
+				boolean finished = sameBlock.equals(FINISHED_BLOCK);
+				if (event != null && event.isRecorded()) {
+					event.record(currentCandidates.iterator().next().getFile().getPath(), candidates,
+							roundBlockSize, roundBytes.sum(), 0, 0, finished ? candidates : 0, finished ? 0 : 1);
+				}
+				if (finished) {
+					duplicateGroup(currentCandidates);
+					currentCandidates = null;
+				}
+				continue;
+			}
+
+			Map<Boolean, List<FileReader>> readFiles = currentCandidates.stream()
+					.collect(Collectors.partitioningBy(failedRead));
 			currentCandidates = null;
 
 			// Failed Files
-			List<FileReader> failingFiles = sortedFiles.remove(FileReader.FAILING);
-			if (failingFiles != null) {
-				failingFiles.parallelStream().map(fileReaderToFile).forEach(callback::failedFile);
+			if (metrics != null) {
+				readFiles.get(Boolean.TRUE).forEach(reader -> metrics.failedFile());
 			}
+			readFiles.get(Boolean.TRUE).stream().map(this::resolve).forEach(callback::failedFile);
+
+			Map<ByteBuffer, List<FileReader>> sortedFiles = readFiles.get(Boolean.FALSE).stream()
+					.collect(Collectors.groupingBy(fileReaderToBlock));
 
 			// Unique Files
-			sortedFiles.entrySet().parallelStream().filter(hasSingleItemInEntry)
-					.peek(entry -> sortedFiles.remove(entry.getKey())).map(entryToValue).flatMap(collection)
-					.map(fileReaderToFile).forEach(callback::uniqueFile);
+			List<Entry<ByteBuffer, List<FileReader>>> uniqueEntries = sortedFiles.entrySet().stream()
+					.filter(hasSingleItemInEntry).collect(Collectors.toList());
+			uniqueEntries.forEach(entry -> sortedFiles.remove(entry.getKey()));
+			uniqueEntries.stream().map(entryToValue).flatMap(collection).map(this::resolve)
+					.forEach(this::uniqueFile);
 
 			// Duplicate Files
-			List<FileReader> duplicateFiles = sortedFiles.remove(FileReader.FINISHED);
+			List<FileReader> duplicateFiles = sortedFiles.remove(FINISHED_BLOCK);
 			if (duplicateFiles != null) {
-				callback.duplicateGroup(
-						duplicateFiles.stream().map(fileReaderToFile).collect(Collectors.toList()));
+				duplicateGroup(duplicateFiles);
+			}
 
+			if (event != null && event.isRecorded()) {
+				record(event, candidates, roundBlockSize, roundBytes.sum(), readFiles, duplicateFiles,
+						sortedFiles.values());
 			}
 
 			// Prepare first group for next iteration
@@ -67,8 +169,128 @@ public class DuplicateContentFinder implements Runnable {
 
 			// Outsource other groups
 			sortedFiles.values().stream().skip(1).forEach(outsourcedCandidates -> executor
-					.submit(new DuplicateContentFinder(outsourcedCandidates, callback, executor)));
+					.submit(new DuplicateContentFinder(outsourcedCandidates, callback, executor, blockSize, metrics,
+							progress, devices, budget)));
+		}
+	}
+
+	/**
+	 * Liefert den Block, den alle Reader in dieser Runde gelesen haben.
+	 * 
+	 * @param readers
+	 *            Reader der Gruppe
+	 * @return gemeinsamer Block oder null, falls ein Reader fehlschlug oder
+	 *         einen anderen Block las
+	 */
+	private static ByteBuffer sameBlock(Collection<FileReader> readers) {
+		ByteBuffer first = null;
+		for (FileReader reader : readers) {
+			ByteBuffer block = reader.getBlock();
+			if (block == null || first != null && !first.equals(block)) {
+				return null;
+			}
+			first = first == null ? block : first;
+		}
+		return first;
+	}
+
+	private void duplicateGroup(Collection<FileReader> duplicateFiles) {
+		if (metrics != null) {
+			metrics.duplicateGroup(duplicateFiles.size());
+		}
+		if (progress != null) {
+			progress.resolved(duplicateFiles.size());
+		}
+		callback.duplicateGroup(duplicateFiles.stream().map(fileReaderToFile).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Zeichnet eine abgeschlossene Runde auf. Einzigartige Dateien werden aus
+	 * den übrigen Anzahlen bestimmt, da sie bereits gemeldet wurden.
+	 * 
+	 * @param event
+	 *            aufzuzeichnendes Ereignis
+	 * @param candidates
+	 *            Anzahl der Dateien zu Beginn der Runde
+	 * @param roundBlockSize
+	 *            Blockgröße der Runde
+	 * @param bytesRead
+	 *            in der Runde gelesene Bytes
+	 * @param readFiles
+	 *            nach Lesefehlern aufgeteilte Dateien der Runde
+	 * @param duplicateFiles
+	 *            vollständig gelesene Dubletten oder null
+	 * @param subgroups
+	 *            weiter zu vergleichende Gruppen
+	 */
+	private static void record(ComparisonRoundEvent event, int candidates, int roundBlockSize, long bytesRead,
+			Map<Boolean, List<FileReader>> readFiles, List<FileReader> duplicateFiles,
+			Collection<List<FileReader>> subgroups) {
+		List<FileReader> failedFiles = readFiles.get(Boolean.TRUE);
+		List<FileReader> readableFiles = readFiles.get(Boolean.FALSE);
+		int duplicates = duplicateFiles == null ? 0 : duplicateFiles.size();
+		int remaining = 0;
+		for (List<FileReader> subgroup : subgroups) {
+			remaining += subgroup.size();
+		}
+		List<FileReader> anyFiles = readableFiles.isEmpty() ? failedFiles : readableFiles;
+		event.record(anyFiles.isEmpty() ? null : anyFiles.get(0).getFile().getPath(), candidates, roundBlockSize,
+				bytesRead, failedFiles.size(), readableFiles.size() - duplicates - remaining, duplicates,
+				subgroups.size());
+	}
+
+	private int read(FileReader reader, int size, LongAdder roundBytes) {
+		int length = reader.readBlock(size);
+		if (length > 0) {
+			if (metrics != null) {
+				metrics.bytesRead(ScanMetrics.Phase.CONTENT, length);
+			}
+			if (progress != null) {
+				progress.compared(length);
+			}
+			if (budget != null) {
+				budget.read(length);
+			}
+			if (roundBytes != null) {
+				roundBytes.add(length);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Schließt den Reader einer Datei, welche nicht weiter verglichen wird. Der
+	 * ungelesene Rest der Datei zählt dabei als erledigt.
+	 * 
+	 * @param reader
+	 *            Reader der ausscheidenden Datei
+	 * @return Datei des Readers
+	 */
+	private File resolve(FileReader reader) {
+		if (progress != null) {
+			progress.skipped(reader.getFile().length() - reader.getPosition());
+			progress.resolved(1);
 		}
+		return reader.clear();
+	}
+
+	private void uniqueFile(File file) {
+		if (metrics != null) {
+			metrics.eliminated(ScanMetrics.Stage.CONTENT);
+		}
+		callback.uniqueFile(file);
+	}
+
+	/**
+	 * Begrenzt die Blockgröße bei großen Gruppen, damit die Blöcke einer Runde
+	 * gemeinsam nicht mehr als ROUND_BUFFER_LIMIT belegen.
+	 * 
+	 * @param candidates
+	 *            Anzahl der Dateien in der aktuellen Gruppe
+	 * @return Blockgröße für die nächste Runde
+	 */
+	private int blockSizeFor(int candidates) {
+		return Math.min(blockSize, Math.max(MIN_BLOCK_SIZE, ROUND_BUFFER_LIMIT / Math.max(1, candidates)));
 	}
 
 	/**
@@ -107,15 +329,339 @@ public class DuplicateContentFinder implements Runnable {
 	 *            werden
 	 */
 	public static void getResult(final Collection<File> input, final DuplicateContentFinderCallback callback) {
+		getResult(input, callback, new ScanSettings());
+	}
+
+	/**
+	 * Ermittelt anhand der optional nach Dateigröße vorgruppierten Files
+	 * inhaltliche Dubletten.
+	 * 
+	 * @param input
+	 *            Dateigruppen, welche auf inhaltliche Gleichheit geprüft werden
+	 *            sollen
+	 * @param callback
+	 *            Callback, um über die Ergebnisse der Dublettensuche informiert zu
+	 *            werden
+	 * @param settings
+	 *            Einstellungen der Dublettensuche, etwa die Blockgröße
+	 */
+	public static void getResult(final Collection<File> input, final DuplicateContentFinderCallback callback,
+			final ScanSettings settings) {
 		if (input == null) {
 			throw new IllegalArgumentException("input may not be null.");
 		}
 		if (callback == null) {
 			throw new IllegalArgumentException("callback may not be null.");
 		}
+		if (settings == null) {
+			throw new IllegalArgumentException("settings may not be null.");
+		}
 
-		Executor executor = new Executor();
-		executor.submit(new DuplicateContentFinder(FileReader.pack(input), callback, executor));
+		try (ScanEngine engine = new ScanEngine(settings)) {
+			Executor executor = engine.newExecutor(engine.newRootLimit());
+			executor.submit(() -> submit(input, callback, engine, executor));
+			executor.consolidate();
+		}
+	}
+
+	/**
+	 * Ermittelt die inhaltlichen Dubletten aller übergebenen Gruppen gemeinsam
+	 * auf dem Thread-Pool der Engine. Gruppen mit nur einer Datei werden ohne
+	 * Lesen als einzigartig gemeldet, ebenfalls auf dem Thread-Pool.
+	 * 
+	 * @param groups
+	 *            Dateigruppen, welche jeweils auf inhaltliche Gleichheit geprüft
+	 *            werden sollen
+	 * @param callback
+	 *            Callback, um über die Ergebnisse der Dublettensuche informiert zu
+	 *            werden
+	 * @param engine
+	 *            Engine mit Einstellungen, Thread-Pool und Obergrenze geöffneter
+	 *            Dateien
+	 * @param rootLimit
+	 *            Begrenzung der Suche, zu der die Gruppen gehören, oder null
+	 */
+	static void find(final Collection<? extends Collection<File>> groups,
+			final DuplicateContentFinderCallback callback, final ScanEngine engine, final Semaphore rootLimit) {
+		Executor executor = engine.newExecutor(rootLimit);
+		ScanMetrics metrics = engine.getMetrics();
+		executor.submit(() -> {
+			for (Collection<File> group : groups) {
+				if (group.size() < 2) {
+					// Unique Files
+					if (metrics != null) {
+						metrics.eliminated(ScanMetrics.Stage.SIZE);
+					}
+					group.forEach(callback::uniqueFile);
+				} else {
+					submit(group, callback, engine, executor);
+				}
+			}
+		});
 		executor.consolidate();
 	}
+
+	private static void submit(final Collection<File> input, final DuplicateContentFinderCallback callback,
+			final ScanEngine engine, final Executor executor) {
+		ScanSettings settings = engine.getSettings();
+		List<FileReader> readers = FileReader.pack(input, settings, engine.getReaderPool());
+		ScanMetrics metrics = engine.getMetrics();
+		ScanProgress progress = settings.getProgress();
+		long length = lengthOf(readers);
+		if (progress != null && !readers.isEmpty()) {
+			progress.addPending(length * readers.size(), readers.size());
+		}
+		DeviceScheduler devices = engine.getDevices();
+		if (settings.getHashIndex() != null) {
+			executor.submit(() -> findByIndex(readers, callback, executor, settings, metrics, devices));
+		} else if (DuplicateRangeFinder.accepts(readers, length, settings, devices)) {
+			executor.submit(new DuplicateRangeFinder(readers, length, 0, callback, executor, settings, metrics,
+					devices));
+		} else if (settings.getContentDigest() != null) {
+			executor.submit(() -> findByDigest(readers, callback, executor, settings, metrics, devices,
+					reader -> digest(reader, settings, metrics)));
+		} else {
+			executor.submit(new DuplicateContentFinder(readers, callback, executor, settings.getBlockSize(), metrics,
+					progress, devices, settings.getBudget()));
+		}
+	}
+
+	/**
+	 * Liefert die gemeinsame Länge der Dateien einer Gruppe. Fehler beim
+	 * Ermitteln der Länge zeigen sich erst beim Lesen.
+	 * 
+	 * @param readers
+	 *            Dateigruppe gleich großer Dateien
+	 * @return Länge der ersten Datei in Bytes oder 0
+	 */
+	private static long lengthOf(Collection<FileReader> readers) {
+		if (readers.isEmpty()) {
+			return 0;
+		}
+		try {
+			return readers.iterator().next().getFile().length();
+		} catch (RuntimeException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Ordnet die Dateien anhand der Prüfsummen aus dem Index ein, sofern alle
+	 * Dateien der Gruppe unverändert im Index stehen. Andernfalls wird die
+	 * Gruppe wie ohne Index verglichen, wobei noch nicht indizierte Dateien
+	 * nebenbei ihre SHA-256-Prüfsumme bilden und im Index ablegen, sobald sie
+	 * vollständig gelesen sind. Früh als einzigartig erkannte Dateien werden
+	 * daher nicht vollständig gelesen und nicht indiziert.
+	 * 
+	 * @param readers
+	 *            Dateigruppe, welche auf inhaltliche Gleichheit geprüft werden
+	 *            soll
+	 * @param callback
+	 *            Callback für die Ergebnisse
+	 * @param executor
+	 *            Executor, auf dem gefundene Dubletten bei Bedarf bestätigt
+	 *            werden
+	 * @param settings
+	 *            Einstellungen mit dem zu nutzenden Index
+	 * @param metrics
+	 *            Kennzahlen der Suche oder null
+	 * @param devices
+	 *            Begrenzung der Lesezugriffe je Gerät
+	 */
+	private static void findByIndex(final Collection<FileReader> readers,
+			final DuplicateContentFinderCallback callback, final Executor executor, final ScanSettings settings,
+			final ScanMetrics metrics, final DeviceScheduler devices) {
+		HashIndex index = settings.getHashIndex();
+		Map<FileReader, ByteBuffer> indexedDigests = new HashMap<>();
+		boolean indexed = true;
+		for (FileReader reader : readers) {
+			File file = reader.getFile();
+			BasicFileAttributes attributes;
+			try {
+				attributes = HashIndex.readAttributes(file.toPath());
+			} catch (InvalidPathException e) {
+				attributes = null;
+			}
+			byte[] digest = attributes == null ? null : index.getDigest(file, attributes);
+			if (attributes == null) {
+				indexedDigests.put(reader, FAILING_DIGEST);
+			} else if (digest != null) {
+				indexedDigests.put(reader, ByteBuffer.wrap(digest));
+			} else {
+				final BasicFileAttributes fileAttributes = attributes;
+				reader.digestWhileReading(new Sha256ContentDigest().newHasher(), attributes.size(),
+						content -> index.putDigest(file, fileAttributes, content));
+				indexed = false;
+			}
+		}
+
+		ScanProgress progress = settings.getProgress();
+		if (indexed) {
+			long length = lengthOf(readers);
+			findByDigest(readers, callback, executor, settings, metrics, devices, reader -> {
+				ByteBuffer digest = indexedDigests.get(reader);
+				if (digest != FAILING_DIGEST && progress != null) {
+					progress.skipped(length);
+				}
+				return digest;
+			});
+		} else if (settings.getContentDigest() != null) {
+			findByDigest(readers, callback, executor, settings, metrics, devices,
+					reader -> digest(reader, settings, metrics));
+		} else {
+			new DuplicateContentFinder(readers, callback, executor, settings.getBlockSize(), metrics, progress,
+					devices, settings.getBudget()).run();
+		}
+	}
+
+	/**
+	 * Ordnet die Dateien anhand ihrer vollständigen Prüfsummen ein. Jede Datei
+	 * wird höchstens einmal gelesen und gleich danach geschlossen. Ist das
+	 * Budget erschöpft, bevor alle Dateien
+	 * eingeordnet sind, so wird die Gruppe ohne ihre fehlerhaften Dateien als
+	 * unaufgelöst gemeldet. Nicht gelesene Dateien zählen im Fortschritt als
+	 * übersprungen.
+	 * 
+	 * @param readers
+	 *            Dateigruppe, welche auf inhaltliche Gleichheit geprüft werden
+	 *            soll
+	 * @param callback
+	 *            Callback für die Ergebnisse
+	 * @param executor
+	 *            Executor, auf dem gefundene Dubletten bei Bedarf bestätigt
+	 *            werden
+	 * @param settings
+	 *            Einstellungen mit dem zu nutzenden Index oder Algorithmus
+	 * @param metrics
+	 *            Kennzahlen der Suche oder null
+	 * @param devices
+	 *            Begrenzung der Lesezugriffe je Gerät
+	 * @param digests
+	 *            liefert die Prüfsumme je Reader oder FAILING_DIGEST im
+	 *            Fehlerfall
+	 */
+	private static void findByDigest(final Collection<FileReader> readers,
+			final DuplicateContentFinderCallback callback, final Executor executor, final ScanSettings settings,
+			final ScanMetrics metrics, final DeviceScheduler devices, final Function<FileReader, ByteBuffer> digests) {
+		Map<ByteBuffer, List<FileReader>> sortedFiles = new ConcurrentHashMap<>();
+		ScanBudget budget = settings.getBudget();
+		ScanProgress progress = settings.getProgress();
+		long length = lengthOf(readers);
+		Queue<FileReader> unresolvedFiles = new ConcurrentLinkedQueue<>();
+		devices.forEach(readers, executor, reader -> {
+			boolean unresolved = budget != null && budget.isExhausted();
+			ByteBuffer digest = unresolved ? null : digests.apply(reader);
+			reader.clear();
+			if (progress != null) {
+				if (unresolved || digest == FAILING_DIGEST) {
+					progress.skipped(length);
+				}
+				progress.resolved(1);
+			}
+			if (unresolved) {
+				unresolvedFiles.add(reader);
+			} else {
+				sortedFiles.computeIfAbsent(digest, key -> Collections.synchronizedList(new ArrayList<>()))
+						.add(reader);
+			}
+		});
+
+		// Failed Files
+		List<FileReader> failingFiles = sortedFiles.remove(FAILING_DIGEST);
+		if (failingFiles != null) {
+			if (metrics != null) {
+				failingFiles.forEach(reader -> metrics.failedFile());
+			}
+			failingFiles.stream().map(fileReaderToFile).forEach(callback::failedFile);
+		}
+
+		if (!unresolvedFiles.isEmpty()) {
+			// Unresolved Files
+			List<File> group = new ArrayList<>(readers.size());
+			sortedFiles.values().forEach(files -> files.stream().map(FileReader::getFile).forEach(group::add));
+			unresolvedFiles.stream().map(FileReader::getFile).forEach(group::add);
+			callback.unresolvedGroup(group);
+			return;
+		}
+
+		for (List<FileReader> group : sortedFiles.values()) {
+			if (group.size() < 2) {
+				// Unique Files
+				if (metrics != null) {
+					metrics.eliminated(ScanMetrics.Stage.CONTENT);
+				}
+				group.stream().map(fileReaderToFile).forEach(callback::uniqueFile);
+			} else {
+				confirmDuplicates(group, callback, executor, settings, metrics, devices);
+			}
+		}
+	}
+
+	/**
+	 * Meldet eine über Prüfsummen gefundene Gruppe als Dubletten. Sollen
+	 * Dubletten bestätigt werden, so wird die Gruppe stattdessen von vorn
+	 * blockweise verglichen, wobei Kollisionen der Prüfsummen wieder getrennt
+	 * werden.
+	 * 
+	 * @param group
+	 *            Dateien mit gleicher Prüfsumme
+	 * @param callback
+	 *            Callback für die Ergebnisse
+	 * @param executor
+	 *            Executor, auf dem die Gruppe bei Bedarf verglichen wird
+	 * @param settings
+	 *            Einstellungen der Suche
+	 * @param metrics
+	 *            Kennzahlen der Suche oder null
+	 * @param devices
+	 *            Begrenzung der Lesezugriffe je Gerät
+	 */
+	static void confirmDuplicates(final List<FileReader> group, final DuplicateContentFinderCallback callback,
+			final Executor executor, final ScanSettings settings, final ScanMetrics metrics,
+			final DeviceScheduler devices) {
+		if (settings.isVerifyContent()) {
+			group.forEach(FileReader::clear);
+			ScanProgress progress = settings.getProgress();
+			if (progress != null) {
+				progress.addPending(lengthOf(group) * group.size(), group.size());
+			}
+			executor.submit(new DuplicateContentFinder(group, callback, executor, settings.getBlockSize(), metrics,
+					progress, devices, settings.getBudget()));
+			return;
+		}
+
+		// Duplicate Files
+		if (metrics != null) {
+			metrics.duplicateGroup(group.size());
+		}
+		callback.duplicateGroup(group.stream().map(fileReaderToFile).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Liest die Prüfsumme einer Datei über den eingestellten Algorithmus.
+	 * 
+	 * @param reader
+	 *            Reader der einzuordnenden Datei
+	 * @param settings
+	 *            Einstellungen mit dem zu nutzenden Algorithmus
+	 * @param metrics
+	 *            Kennzahlen der Suche oder null
+	 * @return Prüfsumme oder ein leerer Puffer im Fehlerfall
+	 */
+	private static ByteBuffer digest(FileReader reader, ScanSettings settings, ScanMetrics metrics) {
+		byte[] digest = reader.digest(settings.getContentDigest().newHasher(), settings.getBlockSize());
+		if (digest == null) {
+			return FAILING_DIGEST;
+		}
+		if (metrics != null) {
+			metrics.bytesRead(ScanMetrics.Phase.CONTENT, reader.getPosition());
+		}
+		if (settings.getBudget() != null) {
+			settings.getBudget().read(reader.getPosition());
+		}
+		if (settings.getProgress() != null) {
+			settings.getProgress().compared(reader.getPosition());
+		}
+		return ByteBuffer.wrap(digest);
+	}
 }
\ No newline at end of file
@@ -29,4 +29,12 @@ public interface DuplicateContentFinderCallback {
 	 */
 	default void duplicateGroup(List<File> duplicateFiles) {}
 
+	/**
+	 * Wird aufgerufen, wenn der Vergleich einer Gruppe gleich großer Dateien nicht abgeschlossen wurde, weil das
+	 * Budget der Suche erschöpft ist. Die Dateien der Gruppe können Dubletten sein, müssen es aber nicht. Sie werden
+	 * über keinen anderen Callback gemeldet, weder als fehlerhaft, einzigartig noch als Dublette.
+	 * @param unresolvedFiles Files, deren Vergleich offen ist
+	 */
+	default void unresolvedGroup(List<File> unresolvedFiles) {}
+
 }
@@ -0,0 +1,346 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+import de.b0n.dir.processor.DuplicateSampleFinder.SampleKey;
+
+/**
+ * Verbindet die Suche nach gleich großen Dateien, die Stichproben und den
+ * vollständigen Inhaltsvergleich zu einer Pipeline. Sobald eine Dateigröße zum
+ * zweiten Mal gefunden wird, werden die Stichproben ihrer Dateien bereits
+ * gelesen, während die Verzeichnisse noch durchsucht werden. Nach Abschluss
+ * der Verzeichnissuche werden die Gruppen abgeglichen und die verbleibenden
+ * Kandidaten vollständig verglichen. Dateien mit gleichem Dateischlüssel,
+ * etwa harte Verknüpfungen, werden ohne Lesen ihres Inhalts zusammengefasst.
+ * <p>
+ * Ist das Budget der Suche erschöpft, so werden keine weiteren Verzeichnisse
+ * durchsucht und keine weiteren Inhalte gelesen. Bis dahin bestätigte
+ * Dubletten bleiben gemeldet, Gruppen gleich großer Dateien, deren Vergleich
+ * offen ist, werden als unaufgelöst gemeldet. Einzigartig sind Dateien dann
+ * nur unter den durchsuchten Dateien.
+ */
+public class DuplicateFinder {
+
+	/**
+	 * Alle bisher gefundenen Dateien nach Größe gruppiert
+	 */
+	private final SizeIndex sizes = new SizeIndex();
+	/**
+	 * Bereits ermittelte Schlüssel der Stichproben aller Dateien, deren Größe
+	 * mehrfach vorkommt
+	 */
+	private final Map<File, SampleKey> keys = new ConcurrentHashMap<>();
+	/**
+	 * Weitere Verknüpfungen je zuerst gefundener Datei
+	 */
+	private final Map<File, List<File>> links = new ConcurrentHashMap<>();
+	private final DuplicateFinderCallback callback;
+	private final ScanEngine engine;
+	private final DuplicateSampleFinder sampler;
+	private final Semaphore rootLimit;
+	private final Executor executor;
+	private final ScanMetrics metrics;
+	private final ScanBudget budget;
+
+	private DuplicateFinder(DuplicateFinderCallback callback, ScanEngine engine) {
+		this.callback = callback;
+		this.engine = engine;
+		this.sampler = new DuplicateSampleFinder(engine);
+		this.rootLimit = engine.newRootLimit();
+		this.executor = engine.newExecutor(rootLimit);
+		this.metrics = engine.getMetrics();
+		this.budget = engine.getSettings().getBudget();
+	}
+
+	/**
+	 * Legt die gefundene Datei in der Gruppe ihrer Größe ab. Hat die Gruppe
+	 * damit mindestens zwei Dateien, so werden deren noch fehlende Stichproben
+	 * nebenläufig gelesen.
+	 *
+	 * @param size
+	 *            Länge der Datei
+	 * @param file
+	 *            gefundene Datei
+	 */
+	private void add(long size, File file) {
+		int count;
+		File first = null;
+		synchronized (sizes) {
+			count = sizes.add(size, file);
+			if (count == 2) {
+				first = sizes.first(size);
+			}
+		}
+
+		if (first != null) {
+			sample(first);
+		}
+		if (count >= 2) {
+			sample(file);
+		}
+	}
+
+	private void sample(File file) {
+		executor.submit(() -> {
+			if (budget == null || !budget.isExhausted()) {
+				keys.put(file, sampler.sample(file));
+			}
+		});
+	}
+
+	/**
+	 * Durchsucht die Verzeichnisse in einen gemeinsamen Größenindex und gleicht
+	 * nach Abschluss die Gruppen anhand der Stichproben ab. Die verbleibenden
+	 * Kandidaten werden vollständig verglichen. Gruppen, für deren Dateien
+	 * wegen des erschöpften Budgets Stichproben fehlen, werden als unaufgelöst
+	 * gemeldet. Auch das Melden läuft auf dem Thread-Pool der Engine.
+	 *
+	 * @param folders
+	 *            zu durchsuchende Verzeichnisse
+	 */
+	private void find(Collection<File> folders) {
+		DuplicateLengthFinder.find(folders, new DuplicateLengthFinderCallback() {
+
+			@Override
+			public void enteredNewFolder(File folder) {
+				callback.enteredNewFolder(folder);
+			}
+
+			@Override
+			public void unreadableFolder(File folder) {
+				callback.unreadableFolder(folder);
+			}
+
+			@Override
+			public void skippedFolder(File folder) {
+				callback.skippedFolder(folder);
+			}
+
+			@Override
+			public void addGroupedElement(long size, File file) {
+				callback.addGroupedElement(size, file);
+				add(size, file);
+			}
+
+			@Override
+			public void linkedElement(long size, File file, File linkedFile) {
+				callback.linkedElement(size, file, linkedFile);
+				links.computeIfAbsent(linkedFile, k -> Collections.synchronizedList(new ArrayList<>())).add(file);
+			}
+		}, engine);
+		executor.consolidate();
+
+		Queue<List<File>> candidates = new ConcurrentLinkedQueue<>();
+		executor.submit(() -> report(candidates));
+		executor.consolidate();
+
+		DuplicateContentFinder.find(candidates, callback, engine, rootLimit);
+	}
+
+	/**
+	 * Meldet die verknüpften Dateien sowie die nach Größe und Stichprobe
+	 * einzigartigen Dateien und sammelt die verbleibenden Gruppen.
+	 *
+	 * @param candidates
+	 *            nimmt die vollständig zu vergleichenden Gruppen auf
+	 */
+	private void report(Queue<List<File>> candidates) {
+		// Linked Files
+		links.forEach((file, linkedFiles) -> {
+			List<File> group = new ArrayList<>(linkedFiles.size() + 1);
+			group.add(file);
+			group.addAll(linkedFiles);
+			callback.linkedGroup(group);
+		});
+		links.clear();
+
+		DuplicateSampleFinderCallback sampleCallback = new DuplicateSampleFinderCallback() {
+
+			@Override
+			public void failedFile(File failedFile) {
+				callback.failedFile(failedFile);
+			}
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				callback.uniqueFile(uniqueFile);
+			}
+
+			@Override
+			public void candidateGroup(List<File> group) {
+				candidates.add(group);
+			}
+		};
+		sizes.forEachGroup(1, (size, files) -> {
+			if (files.size() < 2) {
+				// Unique Files
+				if (metrics != null) {
+					metrics.eliminated(ScanMetrics.Stage.SIZE);
+				}
+				callback.uniqueFile(files.get(0));
+			} else {
+				if (metrics != null) {
+					metrics.sizeGroup(files.size());
+				}
+				if (!keys.keySet().containsAll(files)) {
+					// Unresolved Files
+					unresolvedGroup(size, files);
+					return;
+				}
+				sampler.report(files.stream().collect(Collectors.groupingBy(keys::get)), sampleCallback);
+			}
+		});
+		keys.clear();
+	}
+
+	/**
+	 * Meldet eine Gruppe gleich großer Dateien, deren Stichproben wegen des
+	 * erschöpften Budgets nicht vollständig gelesen wurden, als unaufgelöst.
+	 * Im Fortschritt zählt die Gruppe als übersprungen, damit er auch bei
+	 * vorzeitigem Ende alle gefundenen Gruppen abschließt.
+	 *
+	 * @param size
+	 *            Länge der Dateien
+	 * @param files
+	 *            Dateien der Gruppe
+	 */
+	private void unresolvedGroup(long size, List<File> files) {
+		ScanProgress progress = engine.getSettings().getProgress();
+		if (progress != null) {
+			progress.addPending(size * files.size(), files.size());
+			progress.skipped(size * files.size());
+			progress.resolved(files.size());
+		}
+		callback.unresolvedGroup(files);
+	}
+
+	/**
+	 * Einstiegsmethode zum Durchsuchen eines Verzeichnisses nach inhaltlichen
+	 * Dubletten.
+	 *
+	 * @param folder
+	 *            Zu durchsuchendes Verzeichnis
+	 * @return Nach inhaltlichen Dubletten gruppierte File-Listen
+	 */
+	public static Queue<List<File>> getResult(final File folder) {
+		ConcurrentLinkedQueue<List<File>> result = new ConcurrentLinkedQueue<>();
+		DuplicateFinderCallback callback = new DuplicateFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateGroup) {
+				result.add(duplicateGroup);
+			}
+		};
+
+		getResult(folder, callback);
+
+		return result;
+	}
+
+	/**
+	 * Einstiegsmethode zum Durchsuchen eines Verzeichnisses nach inhaltlichen
+	 * Dubletten.
+	 *
+	 * @param folder
+	 *            Zu durchsuchendes Verzeichnis
+	 * @param callback
+	 *            Callback, um über den Fortschritt und die Ergebnisse der
+	 *            Dublettensuche informiert zu werden
+	 */
+	public static void getResult(final File folder, final DuplicateFinderCallback callback) {
+		getResult(folder, callback, new ScanSettings());
+	}
+
+	/**
+	 * Einstiegsmethode zum Durchsuchen eines Verzeichnisses nach inhaltlichen
+	 * Dubletten.
+	 *
+	 * @param folder
+	 *            Zu durchsuchendes Verzeichnis
+	 * @param callback
+	 *            Callback, um über den Fortschritt und die Ergebnisse der
+	 *            Dublettensuche informiert zu werden
+	 * @param settings
+	 *            Einstellungen der Dublettensuche
+	 */
+	public static void getResult(final File folder, final DuplicateFinderCallback callback,
+			final ScanSettings settings) {
+		if (callback == null) {
+			throw new IllegalArgumentException("callback may not be null.");
+		}
+		if (settings == null) {
+			throw new IllegalArgumentException("settings may not be null.");
+		}
+
+		try (ScanEngine engine = new ScanEngine(settings)) {
+			find(folder, callback, engine);
+		}
+	}
+
+	/**
+	 * Einstiegsmethode zum gemeinsamen Durchsuchen mehrerer Verzeichnisse nach
+	 * inhaltlichen Dubletten, auch über die Verzeichnisse hinweg.
+	 *
+	 * @param folders
+	 *            Zu durchsuchende Verzeichnisse
+	 * @param callback
+	 *            Callback, um über den Fortschritt und die Ergebnisse der
+	 *            Dublettensuche informiert zu werden
+	 * @param settings
+	 *            Einstellungen der Dublettensuche
+	 */
+	public static void getResult(final Collection<File> folders, final DuplicateFinderCallback callback,
+			final ScanSettings settings) {
+		if (callback == null) {
+			throw new IllegalArgumentException("callback may not be null.");
+		}
+		if (settings == null) {
+			throw new IllegalArgumentException("settings may not be null.");
+		}
+
+		try (ScanEngine engine = new ScanEngine(settings)) {
+			find(folders, callback, engine);
+		}
+	}
+
+	/**
+	 * Durchsucht ein Verzeichnis auf dem Thread-Pool der Engine nach
+	 * inhaltlichen Dubletten.
+	 *
+	 * @param folder
+	 *            Zu durchsuchendes Verzeichnis
+	 * @param callback
+	 *            Callback für den Fortschritt und die Ergebnisse
+	 * @param engine
+	 *            Engine mit Einstellungen und Thread-Pool
+	 */
+	static void find(final File folder, final DuplicateFinderCallback callback, final ScanEngine engine) {
+		find(Collections.singletonList(folder), callback, engine);
+	}
+
+	/**
+	 * Durchsucht mehrere Verzeichnisse auf dem Thread-Pool der Engine
+	 * gemeinsam nach inhaltlichen Dubletten.
+	 *
+	 * @param folders
+	 *            Zu durchsuchende Verzeichnisse
+	 * @param callback
+	 *            Callback für den Fortschritt und die Ergebnisse
+	 * @param engine
+	 *            Engine mit Einstellungen und Thread-Pool
+	 */
+	static void find(final Collection<File> folders, final DuplicateFinderCallback callback,
+			final ScanEngine engine) {
+		new DuplicateFinder(callback, engine).find(folders);
+	}
+}
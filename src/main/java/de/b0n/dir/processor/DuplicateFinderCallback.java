@@ -0,0 +1,27 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Ermöglicht das Tracking der gesamten Dublettensuche des DuplicateFinder.
+ * Neben dem Fortschritt auf Verzeichnisebene werden alle Dateien gemeldet,
+ * sobald sie als fehlerhaft, einzigartig oder als Teil einer Dublettengruppe
+ * erkannt wurden, unabhängig davon, in welcher Stufe dies geschieht.
+ *
+ */
+public interface DuplicateFinderCallback extends DuplicateLengthFinderCallback, DuplicateContentFinderCallback {
+
+	/**
+	 * Wird aufgerufen, sobald eine Gruppe von Dateien erkannt wurde, welche auf
+	 * denselben Inhalt verweisen, etwa über harte Verknüpfungen. Deren Inhalt
+	 * wird nicht gelesen, nur die zuerst gefundene Datei der Gruppe wird
+	 * weiter untersucht und erscheint gegebenenfalls zusätzlich in ihrer
+	 * Dublettengruppe, die übrigen Dateien nur hier. Da verknüpfte Dateien
+	 * keinen zusätzlichen Speicher belegen, wird die Gruppe nicht als
+	 * Dublettengruppe gemeldet.
+	 * @param linkedFiles Files mit demselben Dateischlüssel, die zuerst gefundene vorn
+	 */
+	default void linkedGroup(List<File> linkedFiles) {}
+
+}
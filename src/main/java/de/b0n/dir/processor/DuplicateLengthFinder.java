@@ -1,13 +1,21 @@
 package de.b0n.dir.processor;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Sucht in einem gegebenen Verzeichnis und dessen Unterverzeichnissen nach
@@ -15,43 +23,254 @@ import java.util.stream.Collectors;
  */
 public class DuplicateLengthFinder implements Runnable {
 
-	private final File folder;
+	/**
+	 * Über die Sicht "unix" gemeinsam in einem Aufruf gelesene Attribute
+	 */
+	private static final String UNIX_ATTRIBUTES = "unix:size,lastModifiedTime,lastAccessTime,creationTime,"
+			+ "isRegularFile,isDirectory,isSymbolicLink,isOther,fileKey,nlink";
+
+	/**
+	 * Attribute einer Datei samt der Anzahl ihrer harten Verknüpfungen, in
+	 * einem einzigen Aufruf über die Sicht "unix" gelesen
+	 */
+	private static final class UnixAttributes implements BasicFileAttributes {
+		private final Map<String, Object> attributes;
+
+		UnixAttributes(Map<String, Object> attributes) {
+			this.attributes = attributes;
+		}
+
+		@Override
+		public FileTime lastModifiedTime() {
+			return (FileTime) attributes.get("lastModifiedTime");
+		}
+
+		@Override
+		public FileTime lastAccessTime() {
+			return (FileTime) attributes.get("lastAccessTime");
+		}
+
+		@Override
+		public FileTime creationTime() {
+			return (FileTime) attributes.get("creationTime");
+		}
+
+		@Override
+		public boolean isRegularFile() {
+			return Boolean.TRUE.equals(attributes.get("isRegularFile"));
+		}
+
+		@Override
+		public boolean isDirectory() {
+			return Boolean.TRUE.equals(attributes.get("isDirectory"));
+		}
+
+		@Override
+		public boolean isSymbolicLink() {
+			return Boolean.TRUE.equals(attributes.get("isSymbolicLink"));
+		}
+
+		@Override
+		public boolean isOther() {
+			return Boolean.TRUE.equals(attributes.get("isOther"));
+		}
+
+		@Override
+		public long size() {
+			return ((Long) attributes.get("size")).longValue();
+		}
+
+		@Override
+		public Object fileKey() {
+			return attributes.get("fileKey");
+		}
+
+		/**
+		 * Liefert, ob die Datei mehrere harte Verknüpfungen haben kann.
+		 *
+		 * @return true, falls mehr als eine oder keine Anzahl bekannt ist
+		 */
+		boolean mayBeLinked() {
+			Object links = attributes.get("nlink");
+			return !(links instanceof Integer) || ((Integer) links).intValue() > 1;
+		}
+	}
+
+	private final Path folder;
 	private final DuplicateLengthFinderCallback callback;
 	private final Executor executor;
+	private final HashIndex index;
+	private final ScanMetrics metrics;
+	private final ScanFilter filter;
+	private final ScanBudget budget;
+	private final Class<? extends BasicFileAttributes> attributeType;
+	/**
+	 * Zuerst gefundene Datei oder zuerst gefundenes Verzeichnis je
+	 * Dateischlüssel (Gerät und Inode), über alle Verzeichnisse einer Suche
+	 * geteilt. Dateien werden nur aufgenommen, wenn sie mehrere harte
+	 * Verknüpfungen haben können.
+	 */
+	private final Map<Object, File> fileKeys;
+	/**
+	 * Gibt an, ob die Attribute samt der Anzahl harter Verknüpfungen über die
+	 * Sicht "unix" gelesen werden
+	 */
+	private final boolean unixAttributes;
 
-	private DuplicateLengthFinder(final File folder, DuplicateLengthFinderCallback callback, Executor executor) {
+	private DuplicateLengthFinder(final Path folder, DuplicateLengthFinderCallback callback, Executor executor,
+			HashIndex index, ScanMetrics metrics, ScanFilter filter, ScanBudget budget,
+			Class<? extends BasicFileAttributes> attributeType, Map<Object, File> fileKeys) {
 		this.folder = folder;
 		this.callback = callback;
 		this.executor = executor;
+		this.index = index;
+		this.metrics = metrics;
+		this.filter = filter;
+		this.budget = budget;
+		this.attributeType = attributeType;
+		this.fileKeys = fileKeys;
+		this.unixAttributes = attributeType == BasicFileAttributes.class
+				&& folder.getFileSystem().supportedFileAttributeViews().contains("unix");
 	}
 
 	/**
 	 * Iteriert durch die Elemente im Verzeichnis und legt neue Suchen für
-	 * Verzeichnisse an. Dateien werden sofort der Größe nach abgelegt. Wartet die
-	 * Unterverzeichnis-Suchen ab und merged deren Ergebnisdateien. Liefert das
-	 * Gesamtergebnis zurück.
+	 * Verzeichnisse an. Dateien werden sofort der Größe nach abgelegt. Die
+	 * Attribute jedes Elements werden dazu einmalig gelesen. Elemente, deren
+	 * Attribute nicht gelesen werden können, etwa verwaiste Verknüpfungen,
+	 * werden übersprungen. Verweist eine Datei auf eine bereits gefundene Datei,
+	 * so wird sie als Verknüpfung gemeldet. Verzeichnisse, die über symbolische
+	 * Verknüpfungen bereits erreicht wurden, werden nicht erneut durchsucht,
+	 * sodass auch Schleifen enden. Vom Filter ausgeschlossene Verzeichnisse
+	 * und Dateien werden übergangen. Ist das Budget der Suche erschöpft, so
+	 * wird das Verzeichnis nicht mehr gelesen, sondern als übersprungen
+	 * gemeldet. Bei laufender Aufzeichnung des Flight Recorders wird je
+	 * Verzeichnis ein FolderListingEvent erzeugt.
 	 */
 	@Override
 	public void run() {
-		callback.enteredNewFolder(folder);
+		if (budget != null && budget.isExhausted()) {
+			callback.skippedFolder(folder.toFile());
+			return;
+		}
+		FolderListingEvent event = ScanEvents.ENABLED ? FolderListingEvent.start() : null;
+		int entries = 0;
+		int files = 0;
+		int subfolders = 0;
+		int linkedFiles = 0;
+		long bytes = 0;
+		boolean unreadable = false;
+		callback.enteredNewFolder(folder.toFile());
+		if (metrics != null) {
+			metrics.directoryVisited();
+		}
 
-		List<File> folderContent = readContent(folder);
-		folderContent.parallelStream().filter(File::isDirectory)
-				.forEach(file -> executor.submit(new DuplicateLengthFinder(file, callback, executor)));
-		folderContent.parallelStream().filter(File::isFile)
-				.forEach(file -> callback.addGroupedElement(Long.valueOf(file.length()), file));
+		try (DirectoryStream<Path> folderContent = Files.newDirectoryStream(folder)) {
+			for (Path entry : folderContent) {
+				entries++;
+				BasicFileAttributes attributes = readAttributes(entry);
+				if (metrics != null) {
+					metrics.statCall();
+				}
+				if (attributes == null) {
+					continue;
+				}
+				if (attributes.isDirectory()) {
+					if (filter != null && !filter.acceptsFolder(entry, attributes) || !firstVisit(attributes, entry)) {
+						continue;
+					}
+					subfolders++;
+					executor.submit(new DuplicateLengthFinder(entry, callback, executor, index, metrics, filter,
+							budget, attributeType, fileKeys));
+				} else if (attributes.isRegularFile()) {
+					if (filter != null && !filter.acceptsFile(entry, attributes)) {
+						continue;
+					}
+					File file = entry.toFile();
+					if (index != null) {
+						index.markSeen(file);
+					}
+					Object fileKey = attributes.fileKey();
+					File linkedFile = fileKey == null || !mayBeLinked(attributes) ? null
+							: fileKeys.putIfAbsent(fileKey, file);
+					if (metrics != null) {
+						metrics.fileVisited();
+					}
+					files++;
+					bytes += attributes.size();
+					if (linkedFile == null) {
+						callback.addGroupedElement(attributes.size(), file);
+					} else {
+						linkedFiles++;
+						if (metrics != null) {
+							metrics.eliminated(ScanMetrics.Stage.LINK);
+						}
+						callback.linkedElement(attributes.size(), file, linkedFile);
+					}
+				}
+			}
+		} catch (IOException | DirectoryIteratorException | SecurityException e) {
+			unreadable = true;
+			if (metrics != null) {
+				metrics.unreadableFolder();
+			}
+			callback.unreadableFolder(folder.toFile());
+		} finally {
+			if (event != null) {
+				event.end(folder, entries, files, subfolders, linkedFiles, bytes, unreadable);
+			}
+		}
 	}
 
-	private List<File> readContent(File folder) {
-		String[] folderContents = folder.list();
-		if (folderContents == null) {
-			callback.unreadableFolder(folder);
-			return Collections.emptyList();
+	/**
+	 * Liest die Attribute eines Elements. Bietet das Dateisystem die Sicht
+	 * "unix", so wird die Anzahl harter Verknüpfungen im selben Aufruf
+	 * gelesen.
+	 *
+	 * @param entry
+	 *            Pfad des Elements
+	 * @return Attribute oder null, falls das Element nicht gelesen werden kann
+	 */
+	private BasicFileAttributes readAttributes(Path entry) {
+		if (!unixAttributes) {
+			return HashIndex.readAttributes(entry, attributeType);
 		}
+		try {
+			return new UnixAttributes(Files.readAttributes(entry, UNIX_ATTRIBUTES));
+		} catch (IOException | UnsupportedOperationException | IllegalArgumentException | SecurityException e) {
+			return null;
+		}
+	}
 
-		return Arrays.stream(folderContents).parallel()
-				.map(fileName -> new File(folder.getAbsolutePath() + System.getProperty("file.separator") + fileName))
-				.collect(Collectors.toList());
+	/**
+	 * Prüft, ob eine Datei mehrere harte Verknüpfungen hat. Nur deren
+	 * Dateischlüssel werden aufbewahrt, sodass der Speicherbedarf nicht mit
+	 * jeder gefundenen Datei wächst. Liefert das Dateisystem keine Anzahl der
+	 * Verknüpfungen, so gilt jede Datei als möglicherweise verknüpft.
+	 * Symbolische Verknüpfungen auf eine Datei mit nur einer harten
+	 * Verknüpfung werden daher wie Kopien inhaltlich verglichen.
+	 *
+	 * @param attributes
+	 *            Attribute der Datei
+	 * @return true, falls der Dateischlüssel aufbewahrt werden muss
+	 */
+	private static boolean mayBeLinked(BasicFileAttributes attributes) {
+		return !(attributes instanceof UnixAttributes) || ((UnixAttributes) attributes).mayBeLinked();
+	}
+
+	/**
+	 * Vermerkt das Verzeichnis als besucht.
+	 *
+	 * @param attributes
+	 *            Attribute des Verzeichnisses
+	 * @param entry
+	 *            Pfad des Verzeichnisses
+	 * @return true, falls das Verzeichnis in dieser Suche noch nicht erreicht
+	 *         wurde oder das Dateisystem keine Dateischlüssel bietet
+	 */
+	private boolean firstVisit(BasicFileAttributes attributes, Path entry) {
+		Object fileKey = attributes.fileKey();
+		return fileKey == null || fileKeys.putIfAbsent(fileKey, entry.toFile()) == null;
 	}
 
 	/**
@@ -64,20 +283,21 @@ public class DuplicateLengthFinder implements Runnable {
 	 *         denen die gefundenen Dateien abgelegt sind
 	 */
 	public static Map<Long, List<File>> getResult(final File folder) {
-		Map<Long, List<File>> result = new HashMap<>();
+		SizeIndex sizes = new SizeIndex();
 		DuplicateLengthFinderCallback callback = new DuplicateLengthFinderCallback() {
 
 			@Override
-			public void addGroupedElement(Long size, File file) {
-				synchronized (this) {
-					List<File> group = result.computeIfAbsent(size, k -> new ArrayList<File>());
-					group.add(file);
+			public void addGroupedElement(long size, File file) {
+				synchronized (sizes) {
+					sizes.add(size, file);
 				}
 			}
 		};
 
 		getResult(folder, callback);
 
+		Map<Long, List<File>> result = new HashMap<>(sizes.groups() * 4 / 3 + 1);
+		sizes.forEachGroup(1, (size, files) -> result.put(Long.valueOf(size), files));
 		return result;
 	}
 
@@ -91,21 +311,176 @@ public class DuplicateLengthFinder implements Runnable {
 	 *            Ruft den Callback bei jedem neu betretenen Verzeichnis auf
 	 */
 	public static void getResult(final File folder, DuplicateLengthFinderCallback callback) {
-		if (folder == null) {
-			throw new IllegalArgumentException("folder may not be null.");
+		getResult(folder, callback, new ScanSettings());
+	}
+
+	/**
+	 * Einstiegsmethode zum Durchsuchen eines Verzeichnisses nach Dateien gleicher
+	 * Größe. Ist in den Einstellungen ein Index hinterlegt, so werden danach alle
+	 * Einträge unterhalb des Verzeichnisses verworfen, deren Dateien nicht mehr
+	 * gefunden wurden.
+	 * 
+	 * @param folder
+	 *            Zu durchsuchendes Verzeichnis
+	 * @param callback
+	 *            Ruft den Callback bei jedem neu betretenen Verzeichnis auf
+	 * @param settings
+	 *            Einstellungen der Dublettensuche
+	 */
+	public static void getResult(final File folder, DuplicateLengthFinderCallback callback,
+			final ScanSettings settings) {
+		if (callback == null) {
+			throw new IllegalArgumentException("callback may not be null.");
 		}
+		if (settings == null) {
+			throw new IllegalArgumentException("settings may not be null.");
+		}
+		checkFolder(folder);
+
+		getResult(Collections.singletonList(folder), callback, settings);
+	}
+
+	/**
+	 * Einstiegsmethode zum gemeinsamen Durchsuchen mehrerer Verzeichnisse nach
+	 * Dateien gleicher Größe. Verzeichnisse, die in einem anderen der
+	 * Verzeichnisse liegen, werden nur einmal durchsucht.
+	 * 
+	 * @param folders
+	 *            Zu durchsuchende Verzeichnisse
+	 * @param callback
+	 *            Ruft den Callback bei jedem neu betretenen Verzeichnis auf
+	 * @param settings
+	 *            Einstellungen der Dublettensuche
+	 */
+	public static void getResult(final Collection<File> folders, DuplicateLengthFinderCallback callback,
+			final ScanSettings settings) {
 		if (callback == null) {
 			throw new IllegalArgumentException("callback may not be null.");
 		}
+		if (settings == null) {
+			throw new IllegalArgumentException("settings may not be null.");
+		}
+		List<Path> roots = distinctRoots(folders);
+
+		try (ScanEngine engine = new ScanEngine(settings)) {
+			findRoots(roots, callback, engine);
+		}
+	}
+
+	/**
+	 * Durchsucht die Verzeichnisse auf dem Thread-Pool der Engine. Alle
+	 * Verzeichnisse werden gleichzeitig begonnen, jedes mit eigenem Executor
+	 * und eigener Begrenzung, damit die Geräte aller Verzeichnisse parallel
+	 * ausgelastet werden. Die Dateischlüssel besuchter Verzeichnisse werden
+	 * über alle Verzeichnisse geteilt, sodass auch über Verknüpfungen oder
+	 * Bind-Mounts überlappende Verzeichnisse nur einmal durchsucht werden.
+	 * Endet die Suche vorzeitig über ihr Budget oder ist ein Filter gesetzt, so
+	 * bleibt der Index unverändert, da übersprungene oder ausgefilterte
+	 * Dateien nicht als verschwunden gelten.
+	 * 
+	 * @param folders
+	 *            Zu durchsuchende, gültige Verzeichnisse
+	 * @param callback
+	 *            Ruft den Callback bei jedem neu betretenen Verzeichnis auf
+	 * @param engine
+	 *            Engine mit Einstellungen und Thread-Pool
+	 */
+	static void find(final Collection<File> folders, DuplicateLengthFinderCallback callback,
+			final ScanEngine engine) {
+		findRoots(distinctRoots(folders), callback, engine);
+	}
+
+	/**
+	 * Durchsucht die bereits über distinctRoots() bereinigten Verzeichnisse
+	 * auf dem Thread-Pool der Engine.
+	 * 
+	 * @param roots
+	 *            absolute Pfade der zu durchsuchenden Verzeichnisse
+	 * @param callback
+	 *            Ruft den Callback bei jedem neu betretenen Verzeichnis auf
+	 * @param engine
+	 *            Engine mit Einstellungen und Thread-Pool
+	 */
+	private static void findRoots(final List<Path> roots, DuplicateLengthFinderCallback callback,
+			final ScanEngine engine) {
+		HashIndex index = engine.getSettings().getHashIndex();
+		ScanFilter filter = engine.getSettings().getFilter();
+		ScanBudget budget = engine.getSettings().getBudget();
+		Map<Object, File> fileKeys = new ConcurrentHashMap<>();
+		List<DuplicateLengthFinder> finders = new ArrayList<>(roots.size());
+		for (Path root : roots) {
+			DuplicateLengthFinder finder = new DuplicateLengthFinder(root, callback,
+					engine.newExecutor(engine.newRootLimit()), index, engine.getMetrics(), filter, budget,
+					filter == null ? BasicFileAttributes.class : filter.attributeType(root), fileKeys);
+			BasicFileAttributes attributes = HashIndex.readAttributes(root);
+			if (attributes == null || finder.firstVisit(attributes, root)) {
+				finders.add(finder);
+			}
+		}
+		for (DuplicateLengthFinder finder : finders) {
+			finder.executor.submit(finder);
+		}
+		for (DuplicateLengthFinder finder : finders) {
+			finder.executor.consolidate();
+		}
+		if (index != null && filter == null && (budget == null || !budget.isExhausted())) {
+			for (Path root : roots) {
+				index.removeUnseen(root.toFile());
+			}
+		}
+	}
+
+	/**
+	 * Prüft die Verzeichnisse und entfernt doppelte sowie in anderen
+	 * Verzeichnissen enthaltene. Verglichen wird anhand der realen Pfade,
+	 * durchsucht wird unter dem angegebenen Pfad.
+	 *
+	 * @param folders
+	 *            zu durchsuchende Verzeichnisse
+	 * @return absolute Pfade der zu durchsuchenden Verzeichnisse
+	 */
+	static List<Path> distinctRoots(final Collection<File> folders) {
+		if (folders == null) {
+			throw new IllegalArgumentException("folders may not be null.");
+		}
+		if (folders.isEmpty()) {
+			throw new IllegalArgumentException("folders may not be empty.");
+		}
+		// Sortiert nach realem Pfad, sodass übergeordnete Verzeichnisse zuerst kommen
+		Map<Path, Path> candidates = new TreeMap<>();
+		for (File folder : folders) {
+			checkFolder(folder);
+			Path root = folder.toPath().toAbsolutePath();
+			candidates.putIfAbsent(realPath(root), root);
+		}
+		List<Path> realRoots = new ArrayList<>(candidates.size());
+		List<Path> roots = new ArrayList<>(candidates.size());
+		candidates.forEach((realRoot, root) -> {
+			if (realRoots.stream().noneMatch(realRoot::startsWith)) {
+				realRoots.add(realRoot);
+				roots.add(root);
+			}
+		});
+		return roots;
+	}
+
+	private static Path realPath(Path path) {
+		try {
+			return path.toRealPath();
+		} catch (IOException | SecurityException e) {
+			return path.normalize();
+		}
+	}
+
+	private static void checkFolder(final File folder) {
+		if (folder == null) {
+			throw new IllegalArgumentException("folder may not be null.");
+		}
 		if (!folder.exists()) {
 			throw new IllegalArgumentException("folder must exist.");
 		}
 		if (!folder.isDirectory()) {
 			throw new IllegalArgumentException("folder must be a valid folder.");
 		}
-
-		Executor executor = new Executor();
-		executor.submit(new DuplicateLengthFinder(folder, callback, executor));
-		executor.consolidate();
 	}
 }
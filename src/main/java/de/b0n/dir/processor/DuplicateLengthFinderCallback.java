@@ -22,6 +22,12 @@ public interface DuplicateLengthFinderCallback {
 	 */
 	default void unreadableFolder(File folder) {}
 
+	/**
+	 * Wird aufgerufen, wenn ein Verzeichnis nicht mehr durchsucht wird, weil das Budget der Suche erschöpft ist.
+	 * @param folder Übersprungenes Verzeichnis
+	 */
+	default void skippedFolder(File folder) {}
+
 	/**
 	 * Wird aufgerufen, wenn die Dateilänge einer Datei ermittelt wurde
 	 * @param size Länge der Datei
@@ -29,4 +35,28 @@ public interface DuplicateLengthFinderCallback {
 	 */
 	default void addGroupedElement(Long size, File file) {}
 
+	/**
+	 * Wird aufgerufen, wenn die Dateilänge einer Datei ermittelt wurde. Wird
+	 * vom DuplicateLengthFinder bevorzugt aufgerufen und vermeidet das Boxen der
+	 * Länge, sofern sie überschrieben wird. Standardmäßig wird an
+	 * addGroupedElement(Long, File) weitergeleitet.
+	 * @param size Länge der Datei
+	 * @param file Datei mit der ermittelten Länge
+	 */
+	default void addGroupedElement(long size, File file) {
+		addGroupedElement(Long.valueOf(size), file);
+	}
+
+	/**
+	 * Wird aufgerufen, wenn eine Datei auf denselben Inhalt wie eine bereits
+	 * gefundene Datei verweist, etwa als harte Verknüpfung. Standardmäßig wird
+	 * die Datei wie jede andere über addGroupedElement abgelegt.
+	 * @param size Länge der Datei
+	 * @param file Datei mit der ermittelten Länge
+	 * @param linkedFile zuerst gefundene Datei mit demselben Inhalt
+	 */
+	default void linkedElement(long size, File file, File linkedFile) {
+		addGroupedElement(size, file);
+	}
+
 }
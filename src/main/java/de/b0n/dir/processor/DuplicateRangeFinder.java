@@ -0,0 +1,257 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vergleicht eine Gruppe sehr großer, gleich großer Dateien in Bereichen. Je
+ * Runde werden mehrere aufeinander folgende Bereiche aller Dateien
+ * gleichzeitig gelesen und ihre Prüfsummen gebildet, sodass auch ein
+ * einzelnes Dublettenpaar mehrere Kerne und Lesezugriffe des Geräts nutzt.
+ * Die Prüfsummen einer Runde werden anschließend gemeinsam verglichen, nach
+ * dem ersten abweichenden Bereich wird der Vergleich der betroffenen Dateien
+ * beendet. Stimmen alle Bereiche überein, so gelten die Dateien anhand der
+ * Prüfsummen als Dubletten, blockweise bestätigt werden sie nur mit
+ * ScanSettings.setVerifyContent(true).
+ */
+class DuplicateRangeFinder implements Runnable {
+
+	/**
+	 * Leere Prüfsumme, welche nicht lesbare Dateien kennzeichnet
+	 */
+	private static final ByteBuffer FAILING_DIGEST = ByteBuffer.allocate(0);
+
+	private List<FileReader> currentCandidates;
+	private int nextRange;
+
+	private final long length;
+	private final DuplicateContentFinderCallback callback;
+	private final Executor executor;
+	private final ScanSettings settings;
+	private final ScanMetrics metrics;
+	private final DeviceScheduler devices;
+	private final ContentDigest contentDigest;
+
+	/**
+	 * Erzeugt den Vergleich einer Gruppe ab dem angegebenen Bereich.
+	 *
+	 * @param readers
+	 *            Dateigruppe mit Dateien der angegebenen Länge
+	 * @param length
+	 *            Länge aller Dateien der Gruppe in Bytes
+	 * @param nextRange
+	 *            erster zu vergleichender Bereich, alle vorherigen sind gleich
+	 * @param callback
+	 *            Callback für die Ergebnisse
+	 * @param executor
+	 *            Executor, auf dem die Bereiche gelesen und abgespaltene
+	 *            Untergruppen verglichen werden
+	 * @param settings
+	 *            Einstellungen mit Bereichs- und Blockgröße
+	 * @param metrics
+	 *            Kennzahlen der Suche oder null
+	 * @param devices
+	 *            Begrenzung der Lesezugriffe je Gerät
+	 */
+	DuplicateRangeFinder(List<FileReader> readers, long length, int nextRange,
+			DuplicateContentFinderCallback callback, Executor executor, ScanSettings settings, ScanMetrics metrics,
+			DeviceScheduler devices) {
+		this.currentCandidates = readers;
+		this.length = length;
+		this.nextRange = nextRange;
+		this.callback = callback;
+		this.executor = executor;
+		this.settings = settings;
+		this.metrics = metrics;
+		this.devices = devices;
+		this.contentDigest = settings.getContentDigest() == null ? new Sha256ContentDigest()
+				: settings.getContentDigest();
+	}
+
+	/**
+	 * Prüft, ob eine Gruppe in Bereichen verglichen wird. Dazu müssen die
+	 * Dateien den Schwellwert erreichen und auf Geräten liegen, die mehrere
+	 * gleichzeitige Lesezugriffe erlauben.
+	 *
+	 * @param readers
+	 *            Dateigruppe
+	 * @param length
+	 *            Länge der Dateien in Bytes
+	 * @param settings
+	 *            Einstellungen mit dem Schwellwert
+	 * @param devices
+	 *            Zuordnung der Dateien zu Geräten
+	 * @return true, falls die Gruppe in Bereichen verglichen werden soll
+	 */
+	static boolean accepts(List<FileReader> readers, long length, ScanSettings settings, DeviceScheduler devices) {
+		if (readers.size() < 2 || length < settings.getRangeThreshold() || length <= settings.getRangeSize()
+				|| length / settings.getRangeSize() >= Integer.MAX_VALUE) {
+			return false;
+		}
+		for (FileReader reader : readers) {
+			if (devices.deviceOf(reader).getMaxReads() < 2) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Vergleicht die Gruppe rundenweise. Abgespaltene Untergruppen werden als
+	 * eigene Aufgaben ab dem folgenden Bereich verglichen, die erste
+	 * Untergruppe in der nächsten Runde. Ist das Budget der Suche vor einer
+	 * Runde erschöpft, so wird die Gruppe als unaufgelöst gemeldet.
+	 */
+	@Override
+	public void run() {
+		final int rangeSize = settings.getRangeSize();
+		final int ranges = (int) ((length + rangeSize - 1) / rangeSize);
+		final ScanBudget budget = settings.getBudget();
+		while (currentCandidates != null) {
+			if (budget != null && budget.isExhausted()) {
+				// Unresolved Files
+				List<File> group = new ArrayList<>(currentCandidates.size());
+				for (FileReader reader : currentCandidates) {
+					group.add(resolve(reader, nextRange));
+				}
+				currentCandidates = null;
+				callback.unresolvedGroup(group);
+				continue;
+			}
+			final List<FileReader> candidates = currentCandidates;
+			final int firstRange = nextRange;
+			final int width = Math.min(ranges - firstRange,
+					Math.max(1, executor.getWidth() / candidates.size()));
+			final byte[][] digests = new byte[candidates.size() * width][];
+			currentCandidates = null;
+			nextRange = firstRange + width;
+
+			List<Integer> tasks = new ArrayList<>(digests.length);
+			for (int task = 0; task < digests.length; task++) {
+				tasks.add(task);
+			}
+			executor.forEach(tasks, executor.getWidth(), task -> devices.read(candidates.get(task / width),
+					reader -> digests[task] = digest(reader, firstRange + task % width)));
+
+			Map<ByteBuffer, List<FileReader>> sortedFiles = new LinkedHashMap<>();
+			for (int index = 0; index < candidates.size(); index++) {
+				sortedFiles.computeIfAbsent(key(digests, index * width, width), key -> new ArrayList<>())
+						.add(candidates.get(index));
+			}
+
+			// Failed Files
+			List<FileReader> failingFiles = sortedFiles.remove(FAILING_DIGEST);
+			if (failingFiles != null) {
+				for (FileReader reader : failingFiles) {
+					if (metrics != null) {
+						metrics.failedFile();
+					}
+					callback.failedFile(resolve(reader, nextRange));
+				}
+			}
+
+			List<List<FileReader>> subgroups = new ArrayList<>();
+			for (List<FileReader> group : sortedFiles.values()) {
+				if (group.size() < 2) {
+					// Unique Files
+					if (metrics != null) {
+						metrics.eliminated(ScanMetrics.Stage.CONTENT);
+					}
+					callback.uniqueFile(resolve(group.get(0), nextRange));
+				} else if (nextRange == ranges) {
+					if (settings.getProgress() != null) {
+						settings.getProgress().resolved(group.size());
+					}
+					DuplicateContentFinder.confirmDuplicates(group, callback, executor, settings, metrics, devices);
+				} else {
+					subgroups.add(group);
+				}
+			}
+
+			// Prepare first group for next iteration
+			subgroups.stream().limit(1).forEach(group -> currentCandidates = group);
+
+			// Outsource other groups
+			subgroups.stream().skip(1).forEach(group -> executor.submit(new DuplicateRangeFinder(group, length,
+					nextRange, callback, executor, settings, metrics, devices)));
+		}
+	}
+
+	/**
+	 * Bildet die Prüfsumme eines Bereichs einer Datei.
+	 *
+	 * @param reader
+	 *            Reader der Datei
+	 * @param range
+	 *            Nummer des Bereichs
+	 * @return Prüfsumme oder null im Fehlerfall
+	 */
+	private byte[] digest(FileReader reader, int range) {
+		long start = (long) range * settings.getRangeSize();
+		long rangeLength = Math.min(settings.getRangeSize(), length - start);
+		byte[] digest = reader.digestRange(contentDigest.newHasher(), start, rangeLength, settings.getBlockSize());
+		if (digest != null) {
+			if (metrics != null) {
+				metrics.bytesRead(ScanMetrics.Phase.CONTENT, rangeLength);
+			}
+			if (settings.getBudget() != null) {
+				settings.getBudget().read(rangeLength);
+			}
+			if (settings.getProgress() != null) {
+				settings.getProgress().compared(rangeLength);
+			}
+		}
+		return digest;
+	}
+
+	/**
+	 * Fasst die Prüfsummen der Bereiche einer Datei in einer Runde zusammen.
+	 *
+	 * @param digests
+	 *            Prüfsummen aller Bereiche der Runde
+	 * @param offset
+	 *            erste Prüfsumme der Datei
+	 * @param width
+	 *            Anzahl der Bereiche je Datei
+	 * @return Schlüssel der Datei oder FAILING_DIGEST, falls ein Bereich nicht
+	 *         gelesen werden konnte
+	 */
+	private static ByteBuffer key(byte[][] digests, int offset, int width) {
+		int size = 0;
+		for (int range = offset; range < offset + width; range++) {
+			if (digests[range] == null) {
+				return FAILING_DIGEST;
+			}
+			size += digests[range].length;
+		}
+		ByteBuffer key = ByteBuffer.allocate(size);
+		for (int range = offset; range < offset + width; range++) {
+			key.put(digests[range]);
+		}
+		key.flip();
+		return key;
+	}
+
+	/**
+	 * Schließt den Reader einer Datei, welche nicht weiter verglichen wird. Der
+	 * ungelesene Rest der Datei zählt dabei als erledigt.
+	 *
+	 * @param reader
+	 *            Reader der ausscheidenden Datei
+	 * @param range
+	 *            erster nicht mehr gelesener Bereich
+	 * @return Datei des Readers
+	 */
+	private File resolve(FileReader reader, int range) {
+		ScanProgress progress = settings.getProgress();
+		if (progress != null) {
+			progress.skipped(Math.max(0, length - (long) range * settings.getRangeSize()));
+			progress.resolved(1);
+		}
+		return reader.clear();
+	}
+}
@@ -0,0 +1,305 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+
+/**
+ * Teilt Gruppen gleich großer Dateien anhand kleiner Stichproben vom Anfang,
+ * vom Ende und optional aus der Mitte der Dateien auf, bevor diese vollständig
+ * gelesen werden. Dateien mit einzigartigen Stichproben sind keine Dubletten
+ * und werden vom vollständigen Inhaltsvergleich ausgeschlossen. Die
+ * Stichproben werden wie der Inhaltsvergleich über den FileReaderPool, die
+ * Lesepuffer und den DeviceScheduler der ScanEngine gelesen.
+ */
+public class DuplicateSampleFinder {
+
+	/**
+	 * Schlüssel aus Dateigröße und Prüfsummen der Stichproben. Gleiche
+	 * Prüfsummen bei unterschiedlichem Inhalt halten Dateien nur unnötig
+	 * zusammen, der vollständige Vergleich trennt diese später.
+	 */
+	static final class SampleKey {
+		private final long length;
+		private final long checksum;
+
+		private SampleKey(long length, long checksum) {
+			this.length = length;
+			this.checksum = checksum;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof SampleKey)) {
+				return false;
+			}
+			SampleKey other = (SampleKey) obj;
+			return length == other.length && checksum == other.checksum;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(length, checksum);
+		}
+	}
+
+	/**
+	 * Markiert Dateien, deren Stichproben nicht gelesen werden konnten
+	 */
+	static final SampleKey FAILING = new SampleKey(-1, -1);
+
+	private final int sampleSize;
+	private final boolean sampleMiddle;
+	private final HashIndex index;
+	private final ScanMetrics metrics;
+	private final ScanBudget budget;
+	private final FileReaderPool pool;
+	private final DeviceScheduler devices;
+
+	DuplicateSampleFinder(ScanEngine engine) {
+		ScanSettings settings = engine.getSettings();
+		this.sampleSize = settings.getSampleSize();
+		this.sampleMiddle = settings.isSampleMiddle();
+		this.index = settings.getHashIndex();
+		this.metrics = settings.getMetrics();
+		this.budget = settings.getBudget();
+		this.pool = engine.getReaderPool();
+		this.devices = engine.getDevices();
+	}
+
+	/**
+	 * Ermittelt den Schlüssel einer Datei aus dem Index oder liest deren
+	 * Stichproben. Dateien, welche nicht größer als die Stichproben zusammen
+	 * sind, werden nur anhand ihrer Größe eingeordnet, da der vollständige
+	 * Vergleich sie ohnehin in einem Zug liest.
+	 * 
+	 * @param file
+	 *            zu untersuchende Datei
+	 * @return Schlüssel der Datei oder FAILING im Fehlerfall
+	 */
+	SampleKey sample(File file) {
+		try {
+			Path path = Paths.get(file.getPath());
+			if (index == null) {
+				return sample(file, path);
+			}
+
+			BasicFileAttributes attributes = HashIndex.readAttributes(path);
+			if (attributes == null) {
+				return FAILING;
+			}
+			Long checksum = index.getSampleChecksum(file, attributes, sampleSize, sampleMiddle);
+			if (checksum != null) {
+				return new SampleKey(attributes.size(), checksum);
+			}
+
+			SampleKey key = sample(file, path);
+			if (key != FAILING && key.length == attributes.size() && !isSmall(key.length)) {
+				index.putSampleChecksum(file, attributes, sampleSize, sampleMiddle, key.checksum);
+			}
+			return key;
+		} catch (IllegalStateException | InvalidPathException e) {
+			return FAILING;
+		}
+	}
+
+	private boolean isSmall(long length) {
+		int samples = sampleMiddle ? 3 : 2;
+		return length <= (long) samples * sampleSize;
+	}
+
+	/**
+	 * Liest die Stichproben, sobald das Gerät der Datei einen weiteren
+	 * Lesezugriff erlaubt.
+	 */
+	private SampleKey sample(File file, Path path) {
+		return devices.read(file, () -> sample(path));
+	}
+
+	/**
+	 * Liest die Stichproben über einen im Pool reservierten Kanal.
+	 */
+	private SampleKey sample(Path path) {
+		pool.reserve();
+		ByteBuffer buffer = null;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (isSmall(length)) {
+				return new SampleKey(length, 0);
+			}
+
+			buffer = pool.getBuffers().acquire(sampleSize);
+			CRC32 head = new CRC32();
+			CRC32 rest = new CRC32();
+			update(head, channel, buffer, 0);
+			if (sampleMiddle) {
+				update(rest, channel, buffer, length / 2 - sampleSize / 2);
+			}
+			update(rest, channel, buffer, length - sampleSize);
+			return new SampleKey(length, head.getValue() << 32 | rest.getValue());
+		} catch (IOException e) {
+			return FAILING;
+		} finally {
+			if (buffer != null) {
+				pool.getBuffers().release(buffer);
+			}
+			pool.free();
+		}
+	}
+
+	private void update(CRC32 checksum, FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+		buffer.clear();
+		buffer.limit(sampleSize);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				break;
+			}
+		}
+		buffer.flip();
+		int count = buffer.limit();
+		checksum.update(buffer);
+		if (metrics != null) {
+			metrics.bytesRead(ScanMetrics.Phase.SAMPLE, count);
+		}
+		if (budget != null) {
+			budget.read(count);
+		}
+	}
+
+	/**
+	 * Teilt die übergebene Gruppe anhand der Stichproben auf und meldet die
+	 * Ergebnisse an den Callback. Die Stichproben werden auf dem Executor
+	 * gelesen.
+	 * 
+	 * @param files
+	 *            aufzuteilende Gruppe
+	 * @param callback
+	 *            Callback für die Ergebnisse
+	 * @param executor
+	 *            Executor, auf dessen Thread-Pool die Stichproben gelesen werden
+	 */
+	private void split(Collection<File> files, DuplicateSampleFinderCallback callback, Executor executor) {
+		Map<SampleKey, List<File>> sortedFiles = new ConcurrentHashMap<>();
+		executor.forEach(files, executor.getWidth(), file -> sortedFiles
+				.computeIfAbsent(sample(file), key -> Collections.synchronizedList(new ArrayList<>())).add(file));
+		report(sortedFiles, callback);
+	}
+
+	/**
+	 * Meldet die nach ihren Schlüsseln gruppierten Dateien an den Callback.
+	 * 
+	 * @param sortedFiles
+	 *            Dateien gruppiert nach den Schlüsseln ihrer Stichproben
+	 * @param callback
+	 *            Callback für die Ergebnisse
+	 */
+	void report(Map<SampleKey, List<File>> sortedFiles, DuplicateSampleFinderCallback callback) {
+		// Failed Files
+		List<File> failingFiles = sortedFiles.remove(FAILING);
+		if (failingFiles != null) {
+			if (metrics != null) {
+				failingFiles.forEach(file -> metrics.failedFile());
+			}
+			failingFiles.forEach(callback::failedFile);
+		}
+
+		for (List<File> group : sortedFiles.values()) {
+			if (group.size() < 2) {
+				// Unique Files
+				if (metrics != null) {
+					metrics.eliminated(ScanMetrics.Stage.SAMPLE);
+				}
+				group.forEach(callback::uniqueFile);
+			} else {
+				// Candidate Files
+				callback.candidateGroup(group);
+			}
+		}
+	}
+
+	/**
+	 * Teilt die nach Dateigröße vorgruppierten Files anhand von Stichproben auf.
+	 * 
+	 * @param input
+	 *            Dateigruppe, welche vor dem Inhaltsvergleich aufgeteilt werden
+	 *            soll
+	 * @return Gruppen mit gleichen Stichproben, welche vollständig verglichen
+	 *         werden müssen
+	 */
+	public static Queue<List<File>> getResult(final Collection<File> input) {
+		ConcurrentLinkedQueue<List<File>> result = new ConcurrentLinkedQueue<>();
+		DuplicateSampleFinderCallback callback = new DuplicateSampleFinderCallback() {
+
+			@Override
+			public void candidateGroup(List<File> candidates) {
+				result.add(candidates);
+			}
+		};
+
+		getResult(input, callback);
+
+		return result;
+	}
+
+	/**
+	 * Teilt die nach Dateigröße vorgruppierten Files anhand von Stichproben auf.
+	 * 
+	 * @param input
+	 *            Dateigruppe, welche vor dem Inhaltsvergleich aufgeteilt werden
+	 *            soll
+	 * @param callback
+	 *            Callback, um über ausgeschlossene Dateien und verbleibende
+	 *            Gruppen informiert zu werden
+	 */
+	public static void getResult(final Collection<File> input, final DuplicateSampleFinderCallback callback) {
+		getResult(input, callback, new ScanSettings());
+	}
+
+	/**
+	 * Teilt die nach Dateigröße vorgruppierten Files anhand von Stichproben auf.
+	 * 
+	 * @param input
+	 *            Dateigruppe, welche vor dem Inhaltsvergleich aufgeteilt werden
+	 *            soll
+	 * @param callback
+	 *            Callback, um über ausgeschlossene Dateien und verbleibende
+	 *            Gruppen informiert zu werden
+	 * @param settings
+	 *            Einstellungen mit Größe und Lage der Stichproben
+	 */
+	public static void getResult(final Collection<File> input, final DuplicateSampleFinderCallback callback,
+			final ScanSettings settings) {
+		if (input == null) {
+			throw new IllegalArgumentException("input may not be null.");
+		}
+		if (callback == null) {
+			throw new IllegalArgumentException("callback may not be null.");
+		}
+		if (settings == null) {
+			throw new IllegalArgumentException("settings may not be null.");
+		}
+
+		try (ScanEngine engine = new ScanEngine(settings)) {
+			DuplicateSampleFinder sampler = new DuplicateSampleFinder(engine);
+			Executor executor = engine.newExecutor(engine.newRootLimit());
+			executor.submit(() -> sampler.split(input, callback, executor));
+			executor.consolidate();
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Ermöglicht das Tracking der Stichproben-Vorauswahl. Sobald der
+ * DuplicateSampleFinder eine Datei ausgeschlossen oder eine Gruppe für den
+ * vollständigen Inhaltsvergleich erkannt hat, wird dieser Callback aufgerufen.
+ *
+ */
+public interface DuplicateSampleFinderCallback {
+
+	/**
+	 * Wird aufgerufen, sobald ein Fehler beim Lesen der Stichproben erkannt wurde
+	 * @param failedFile File mit Zugriffsfehler
+	 */
+	default void failedFile(File failedFile) {}
+
+	/**
+	 * Wird aufgerufen, sobald eine Datei anhand ihrer Stichproben als einzigartig
+	 * erkannt und damit vom vollständigen Vergleich ausgeschlossen wurde
+	 * @param uniqueFile File ohne Duplikat
+	 */
+	default void uniqueFile(File uniqueFile) {}
+
+	/**
+	 * Wird aufgerufen, sobald eine Gruppe von Dateien mit gleichen Stichproben
+	 * erkannt wurde, welche vollständig verglichen werden muss
+	 * @param candidates Files mit gleichen Stichproben
+	 */
+	default void candidateGroup(List<File> candidates) {}
+
+}
@@ -1,41 +1,300 @@
 package de.b0n.dir.processor;
 
+import java.util.Collection;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ManagedBlocker;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 /**
  * Diese Klasse dient zum vereinfachten Starten von Runnables, welche vor der Weiterverarbeitung abgeschlossen sein sollen.
+ * Die Runnables laufen auf dem übergebenen, gemeinsam genutzten Thread-Pool, abgewartet werden nur die eigenen.
+ * Offene Runnables werden nur gezählt, der Speicherbedarf ist damit unabhängig von ihrer Anzahl.
  * @author Claus
  *
  */
 class Executor {
-	private final ExecutorService THREAD_POOL = Executors.newWorkStealingPool();
-	private final Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
+	private final ExecutorService threadPool;
+	private final Semaphore limit;
+	private final ScanMetrics metrics;
+	private final ScanBudget budget;
+	private final int width;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
 
 	/**
-	 * Fügt ein Runnable zur Ausführungsqueue hinzu
+	 * Erzeugt einen Executor auf dem übergebenen Thread-Pool
+	 * @param threadPool Thread-Pool, welcher die Runnables ausführt
+	 */
+	Executor(ExecutorService threadPool) {
+		this(threadPool, null);
+	}
+
+	/**
+	 * Erzeugt einen Executor auf dem übergebenen Thread-Pool, dessen Runnables nur laufen, solange sie eine Freigabe
+	 * der Begrenzung halten
+	 * @param threadPool Thread-Pool, welcher die Runnables ausführt
+	 * @param limit mit anderen Executoren geteilte Begrenzung gleichzeitig laufender Runnables oder null
+	 */
+	Executor(ExecutorService threadPool, Semaphore limit) {
+		this(threadPool, limit, null);
+	}
+
+	/**
+	 * Erzeugt einen Executor auf dem übergebenen Thread-Pool, welcher Wartezeit und Laufzeit seiner Runnables erfasst
+	 * @param threadPool Thread-Pool, welcher die Runnables ausführt
+	 * @param limit mit anderen Executoren geteilte Begrenzung gleichzeitig laufender Runnables oder null
+	 * @param metrics Kennzahlen der Suche oder null
+	 */
+	Executor(ExecutorService threadPool, Semaphore limit, ScanMetrics metrics) {
+		this(threadPool, limit, metrics, null);
+	}
+
+	/**
+	 * Erzeugt einen Executor auf dem übergebenen Thread-Pool, dessen Warten über das Budget der Suche abgebrochen
+	 * werden kann
+	 * @param threadPool Thread-Pool, welcher die Runnables ausführt
+	 * @param limit mit anderen Executoren geteilte Begrenzung gleichzeitig laufender Runnables oder null
+	 * @param metrics Kennzahlen der Suche oder null
+	 * @param budget Budget der Suche oder null
+	 */
+	Executor(ExecutorService threadPool, Semaphore limit, ScanMetrics metrics, ScanBudget budget) {
+		this(threadPool, limit, metrics, budget, 1);
+	}
+
+	/**
+	 * Erzeugt einen Executor auf dem übergebenen Thread-Pool, welcher Aufzählungen mit bis zu width Threads
+	 * gleichzeitig bearbeitet
+	 * @param threadPool Thread-Pool, welcher die Runnables ausführt
+	 * @param limit mit anderen Executoren geteilte Begrenzung gleichzeitig laufender Runnables oder null
+	 * @param metrics Kennzahlen der Suche oder null
+	 * @param budget Budget der Suche oder null
+	 * @param width höchste Anzahl gleichzeitig bearbeiteter Elemente in forEach(), mindestens 1
+	 */
+	Executor(ExecutorService threadPool, Semaphore limit, ScanMetrics metrics, ScanBudget budget, int width) {
+		if (width < 1) {
+			throw new IllegalArgumentException("width must be positive.");
+		}
+		this.threadPool = threadPool;
+		this.limit = limit;
+		this.metrics = metrics;
+		this.budget = budget;
+		this.width = width;
+	}
+
+	/**
+	 * Liefert die höchste Anzahl gleichzeitig bearbeiteter Elemente in forEach().
+	 * @return Breite des Executors, mindestens 1
+	 */
+	int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Wendet die Aktion auf alle Elemente an und kehrt erst zurück, wenn alle bearbeitet sind. Der aufrufende Thread
+	 * bearbeitet selbst Elemente, weitere Elemente übernehmen Helfer auf dem Thread-Pool, sofern dieser gerade Threads
+	 * frei hat. Es warten daher nie Aufgaben auf Threads, die selbst auf sie warten, und auch verschachtelte Aufrufe
+	 * bleiben auf dem Thread-Pool. Helfer zählen gegen die Begrenzung, sie starten nur mit freier Freigabe. Offene
+	 * Elemente werden je Aufruf gezählt, unabhängig von submit(). Der erste Fehler einer Aktion wird weitergereicht,
+	 * nachdem alle begonnenen Aktionen beendet sind.
+	 * @param items zu bearbeitende Elemente
+	 * @param maxWidth höchste Anzahl gleichzeitig bearbeiteter Elemente, durch die Breite des Executors begrenzt
+	 * @param action Aktion je Element
+	 * @param <T> Typ der Elemente
+	 */
+	<T> void forEach(Collection<? extends T> items, int maxWidth, Consumer<? super T> action) {
+		int helpers = Math.min(items.size(), Math.min(width, maxWidth)) - 1;
+		if (helpers < 1) {
+			items.forEach(action);
+			return;
+		}
+
+		Queue<T> open = new ConcurrentLinkedQueue<>(items);
+		AtomicInteger remaining = new AtomicInteger(items.size());
+		AtomicReference<Throwable> actionFailure = new AtomicReference<>();
+		Runnable drain = () -> {
+			T item;
+			while ((item = open.poll()) != null) {
+				try {
+					if (actionFailure.get() == null) {
+						action.accept(item);
+					}
+				} catch (Throwable e) {
+					actionFailure.compareAndSet(null, e);
+				} finally {
+					if (remaining.decrementAndGet() == 0) {
+						synchronized (remaining) {
+							remaining.notifyAll();
+						}
+					}
+				}
+			}
+		};
+		try {
+			for (int i = 0; i < helpers; i++) {
+				threadPool.execute(() -> help(drain));
+			}
+		} catch (RejectedExecutionException e) {
+			// Die übrigen Elemente bearbeitet der aufrufende Thread
+		}
+		drain.run();
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				block(remaining, () -> remaining.get() == 0);
+				break;
+			} catch (InterruptedException e) {
+				// Begonnene Aktionen laufen ohnehin zu Ende
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		Throwable cause = actionFailure.get();
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+	}
+
+	private void help(Runnable drain) {
+		if (limit == null) {
+			drain.run();
+		} else if (limit.tryAcquire()) {
+			try {
+				drain.run();
+			} finally {
+				limit.release();
+			}
+		}
+	}
+
+	/**
+	 * Fügt ein Runnable zur Ausführungsqueue hinzu. Ist bereits ein Runnable fehlgeschlagen, so werden weitere nicht
+	 * mehr ausgeführt.
 	 * @param runnable zu Startende Nebenläufige Klasse
 	 */
 	public void submit(Runnable runnable) {
-		futures.add(THREAD_POOL.submit(runnable));
+		pending.incrementAndGet();
+		long queued = metrics == null ? 0 : metrics.taskQueued();
+		try {
+			threadPool.execute(() -> {
+				long started = metrics == null ? 0 : metrics.taskStarted(queued);
+				try {
+					if (failure.get() == null) {
+						run(runnable);
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					if (metrics != null) {
+						metrics.taskFinished(started);
+					}
+					finished();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			if (metrics != null) {
+				metrics.taskStarted(queued);
+			}
+			finished();
+			throw e;
+		}
+	}
+
+	private void run(Runnable runnable) throws InterruptedException {
+		if (limit == null) {
+			runnable.run();
+			return;
+		}
+
+		limit.acquire();
+		try {
+			runnable.run();
+		} finally {
+			limit.release();
+		}
+	}
+
+	private void finished() {
+		if (pending.decrementAndGet() == 0) {
+			synchronized (this) {
+				notifyAll();
+			}
+		}
 	}
 
 	/**
-	 * Schließt alle Threads im Ausführungsqueue ab, bevor diese Methode zurückkehrt
+	 * Schließt alle Threads im Ausführungsqueue ab, bevor diese Methode zurückkehrt. Wartet ein Thread eines
+	 * ForkJoinPool, so darf der Pool währenddessen einen Ersatzthread starten. Der erste Fehler eines Runnables wird
+	 * weitergereicht. Wird der wartende Thread unterbrochen, so wird ein vorhandenes Budget abgebrochen und auf das
+	 * Auslaufen der Runnables gewartet, der Unterbrechungsstatus bleibt danach gesetzt.
 	 */
 	public void consolidate() {
-		while (!futures.isEmpty()) {
+		boolean interrupted = false;
+		while (true) {
 			try {
-				futures.remove().get();
+				await();
+				break;
 			} catch (InterruptedException e) {
-				throw new IllegalStateException("Thread was already stopped", e);
-			} catch (ExecutionException e) {
-				throw new IllegalStateException("Thread could not be consolidated", e);
+				if (budget == null) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Thread was already stopped", e);
+				}
+				budget.cancel();
+				interrupted = true;
 			}
 		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		Throwable cause = failure.get();
+		if (cause != null) {
+			throw new IllegalStateException("Thread could not be consolidated", cause);
+		}
+	}
+
+	private void await() throws InterruptedException {
+		block(this, () -> pending.get() == 0);
+	}
+
+	/**
+	 * Wartet, bis die Bedingung erfüllt ist. Wartet ein Thread eines ForkJoinPool, so darf der Pool währenddessen
+	 * einen Ersatzthread starten.
+	 * @param monitor Objekt, über welches das Erfüllen der Bedingung gemeldet wird
+	 * @param done Bedingung des Wartens
+	 * @throws InterruptedException falls der wartende Thread unterbrochen wird
+	 */
+	private static void block(Object monitor, BooleanSupplier done) throws InterruptedException {
+		ForkJoinPool.managedBlock(new ManagedBlocker() {
+
+			@Override
+			public boolean block() throws InterruptedException {
+				synchronized (monitor) {
+					while (!done.getAsBoolean()) {
+						monitor.wait();
+					}
+				}
+				return true;
+			}
+
+			@Override
+			public boolean isReleasable() {
+				return done.getAsBoolean();
+			}
+		});
 	}
 }
@@ -1,17 +1,29 @@
 package de.b0n.dir.processor;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * Kapselt ein File und stellt darauf eine read()-Operation zur Verfügung. Dient
  * zum effizienten Teilen der Files bei unterschieden in den Streams und
  * gleichzeitigem Halten des Stream-Zustands. Die Datei wird lazy geöffnet.
+ * Die Anzahl gleichzeitig geöffneter Dateien wird über einen FileReaderPool
+ * begrenzt, eine zwischenzeitlich geschlossene Datei wird an der gespeicherten
+ * Position wieder geöffnet. Große Dateien können blockweise über ein
+ * gleitendes, in den Speicher abgebildetes Fenster gelesen werden. Bei
+ * laufender Aufzeichnung des Flight Recorders wird je Öffnen einer Datei ein
+ * FileSessionEvent erzeugt.
  */
 class FileReader {
 	/**
@@ -24,18 +36,78 @@ class FileReader {
 	public static final int FAILING = -2;
 
 	private final File file;
-	private BufferedInputStream stream;
+	private final FileReaderPool pool;
+	private SeekableByteChannel channel;
+	private long position;
+	private ByteBuffer buffer;
+	private ByteBuffer block;
+	private int mappedWindowSize;
+	private ByteBuffer window;
+	/**
+	 * Der Reader hält einen Platz für abgebildete Fenster im Pool
+	 */
+	private boolean windowReserved;
+	/**
+	 * Prüfsumme, welche beim blockweisen Lesen nebenbei gebildet wird
+	 */
+	private ContentDigest.Hasher contentHasher;
+	private long contentLength;
+	private Consumer<byte[]> contentConsumer;
+	/**
+	 * Ereignis der aktuell geöffneten Datei bei laufender Aufzeichnung
+	 */
+	private FileSessionEvent session;
+	/**
+	 * Gerät der Datei, sobald es einmal ermittelt wurde
+	 */
+	private DeviceScheduler.Device device;
 
 	/**
 	 * Packt die Collection von Dateien in jeweils in einen FileStream,
-	 * zusammengefasst in einer Queue.
+	 * zusammengefasst in einer Queue. Dateien ab der in den Einstellungen
+	 * hinterlegten Größe werden über abgebildete Fenster gelesen.
 	 * 
 	 * @param files
 	 *            In FileStreams zu kapselnde Files
+	 * @param settings
+	 *            Einstellungen mit dem Schwellwert für das Abbilden in den
+	 *            Speicher
+	 * @param pool
+	 *            gemeinsamer Pool, der die gleichzeitig geöffneten Dateien
+	 *            begrenzt
 	 * @return Queue mit FileStreams
 	 */
-	public static List<FileReader> pack(Collection<File> files) {
-		return files.parallelStream().map(FileReader::new).collect(Collectors.toList());
+	public static List<FileReader> pack(Collection<File> files, ScanSettings settings, FileReaderPool pool) {
+		long threshold = settings.getMappedThreshold();
+		int windowSize = settings.getMappedWindowSize();
+		return files.stream().map(file -> {
+			FileReader reader = new FileReader(file, pool);
+			if (isMappable(file, threshold)) {
+				reader.mappedWindowSize = windowSize;
+			}
+			return reader;
+		}).collect(Collectors.toList());
+	}
+
+	/**
+	 * Prüft, ob die Datei den Schwellwert für das Abbilden in den Speicher
+	 * erreicht. Fehler beim Ermitteln der Größe zeigen sich erst beim Lesen.
+	 * 
+	 * @param file
+	 *            zu prüfende Datei
+	 * @param threshold
+	 *            Schwellwert in Bytes, Long.MAX_VALUE für nie
+	 * @return true, falls die Datei abgebildet werden soll
+	 */
+	private static boolean isMappable(File file, long threshold) {
+		if (threshold == Long.MAX_VALUE) {
+			return false;
+		}
+		try {
+			return file.length() >= threshold;
+		} catch (RuntimeException e) {
+			return false;
+		}
 	}
 
 	/**
@@ -45,10 +117,25 @@ class FileReader {
 	 * @param file File, dessen Stream bearbeitet werden soll
 	 */
 	public FileReader(File file) {
+		this(file, new FileReaderPool(1));
+	}
+
+	/**
+	 * Erzeugt das Objekt. Der Stream zum Auslesen wird lazy erst bei Bedarf
+	 * geöffnet.
+	 * 
+	 * @param file File, dessen Stream bearbeitet werden soll
+	 * @param pool Pool, der die gleichzeitig geöffneten Dateien begrenzt
+	 */
+	public FileReader(File file, FileReaderPool pool) {
 		if (file == null) {
 			throw new IllegalArgumentException("File may not be null.");
 		}
+		if (pool == null) {
+			throw new IllegalArgumentException("Pool may not be null.");
+		}
 		this.file = file;
+		this.pool = pool;
 	}
 
 	/**
@@ -57,7 +144,26 @@ class FileReader {
 	 * @return zum Stream-Initialisieren genutzes File
 	 */
 	public File clear() {
+		pool.close(this);
 		close();
+		position = 0;
+		if (buffer != null) {
+			pool.getBuffers().release(buffer);
+		}
+		buffer = null;
+		block = null;
+		releaseWindow();
+		contentHasher = null;
+		contentConsumer = null;
+		return file;
+	}
+
+	/**
+	 * Liefert das gekapselte File, ohne den Stream zu schließen.
+	 * 
+	 * @return zum Stream-Initialisieren genutzes File
+	 */
+	File getFile() {
 		return file;
 	}
 
@@ -66,16 +172,77 @@ class FileReader {
 	 * 
 	 */
 	private void close() {
-		if (stream == null) {
+		if (channel == null) {
 			return;
 		}
 
 		try {
-			stream.close();
+			channel.close();
 		} catch (IOException e) {
 			throw new IllegalStateException("Could not close Stream. Nothing to do about that, resetting FileStream.");
 		} finally {
-			stream = null;
+			channel = null;
+			closed(false);
+		}
+	}
+
+	DeviceScheduler.Device getDevice() {
+		return device;
+	}
+
+	void setDevice(DeviceScheduler.Device device) {
+		this.device = device;
+	}
+
+	/**
+	 * Liefert die Position, bis zu der die Datei gelesen wurde.
+	 * 
+	 * @return Anzahl bisher gelesener Bytes
+	 */
+	long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Prüft, ob die Datei aktuell geöffnet ist.
+	 * 
+	 * @return true, falls die Datei geöffnet ist
+	 */
+	boolean isOpen() {
+		return channel != null;
+	}
+
+	/**
+	 * Schließt die Datei vorübergehend, um Platz für andere Reader zu schaffen.
+	 * Die Leseposition bleibt erhalten, beim nächsten Lesen wird die Datei erneut
+	 * geöffnet. Wird ausschließlich vom FileReaderPool aufgerufen.
+	 */
+	void suspend() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// Die Datei wird dennoch als geschlossen betrachtet und bei Bedarf neu geöffnet
+		} finally {
+			channel = null;
+			closed(true);
+		}
+	}
+
+	private void closed(boolean suspended) {
+		if (session != null) {
+			session.close(file, position, suspended);
+			session = null;
+		}
+	}
+
+	/**
+	 * Verwirft das abgebildete Fenster und gibt dessen Platz im Pool frei.
+	 */
+	private void releaseWindow() {
+		window = null;
+		if (windowReserved) {
+			windowReserved = false;
+			pool.freeWindow();
 		}
 	}
 
@@ -85,15 +252,280 @@ class FileReader {
 	 * @return Wert gemäß InputStream.read()
 	 */
 	public int read() {
-		int data = FAILING;
+		ByteBuffer data = ByteBuffer.allocate(1);
+		int length = fill(data);
+		if (length == FAILING) {
+			return FAILING;
+		}
+		return length == 0 ? FINISHED : data.get(0) & 0xFF;
+	}
+
+	/**
+	 * Liest den nächsten Block der Datei zur Inhaltsanalyse. Der Block wird bis
+	 * zur angeforderten Größe oder bis zum Dateiende gefüllt, sodass gleiche
+	 * Dateien stets gleiche Blöcke liefern. Der gelesene Inhalt steht danach
+	 * über getBlock() zur Verfügung.
+	 * 
+	 * @param size
+	 *            maximale Anzahl zu lesender Bytes
+	 * @return Anzahl gelesener Bytes, FINISHED am Dateiende oder FAILING im
+	 *         Fehlerfall
+	 */
+	public int readBlock(int size) {
+		int length = nextBlock(size);
+		if (contentHasher != null) {
+			if (length > 0) {
+				contentHasher.update(block);
+			}
+			if (length == FAILING || position > contentLength) {
+				contentHasher = null;
+			} else if (position == contentLength) {
+				contentConsumer.accept(contentHasher.digest());
+				contentHasher = null;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Bildet beim blockweisen Lesen ab dem Dateianfang nebenbei die Prüfsumme
+	 * des Inhalts. Sobald die Datei in der erwarteten Länge gelesen ist, wird
+	 * die Prüfsumme übergeben. Wird die Datei vorher geschlossen, schlägt das
+	 * Lesen fehl oder ist sie länger als erwartet, so verfällt die Prüfsumme.
+	 * 
+	 * @param hasher
+	 *            neu begonnene Berechnung der Prüfsumme
+	 * @param length
+	 *            erwartete Länge der Datei in Bytes
+	 * @param consumer
+	 *            Empfänger der vollständigen Prüfsumme
+	 */
+	void digestWhileReading(ContentDigest.Hasher hasher, long length, Consumer<byte[]> consumer) {
+		this.contentHasher = hasher;
+		this.contentLength = length;
+		this.contentConsumer = consumer;
+	}
+
+	private int nextBlock(int size) {
+		block = null;
+		if (mappedWindowSize > 0) {
+			int length = readMapped(size);
+			if (length != FAILING) {
+				return length;
+			}
+			// Das Fenster konnte nicht abgebildet werden, weiter über den Kanal
+		}
+
+		if (buffer == null || buffer.capacity() < size) {
+			if (buffer != null) {
+				pool.getBuffers().release(buffer);
+			}
+			buffer = pool.getBuffers().acquire(size);
+		}
+		buffer.clear();
+		buffer.limit(size);
+
+		int length = fill(buffer);
+		if (length == FAILING) {
+			return FAILING;
+		}
+		buffer.flip();
+		block = buffer;
+		return length == 0 ? FINISHED : length;
+	}
+
+	/**
+	 * Liest die Datei ab der aktuellen Position vollständig und bildet dabei die
+	 * Prüfsumme ihres Inhalts.
+	 * 
+	 * @param hasher
+	 *            neu begonnene Berechnung der Prüfsumme
+	 * @param size
+	 *            Anzahl je Lesevorgang zu lesender Bytes
+	 * @return Prüfsumme oder null im Fehlerfall
+	 */
+	public byte[] digest(ContentDigest.Hasher hasher, int size) {
+		int length;
+		while ((length = readBlock(size)) > 0) {
+			hasher.update(block);
+		}
+		return length == FINISHED ? hasher.digest() : null;
+	}
+
+	/**
+	 * Bildet die Prüfsumme eines Bereichs der Datei. Der Bereich wird über einen
+	 * eigenen Kanal gelesen, sodass mehrere Bereiche derselben Datei
+	 * gleichzeitig gelesen werden können. Position und geöffnete Datei des
+	 * Readers bleiben unberührt, der Kanal belegt dennoch einen Platz im Pool.
+	 * 
+	 * @param hasher
+	 *            neu begonnene Berechnung der Prüfsumme
+	 * @param start
+	 *            Beginn des Bereichs in Bytes
+	 * @param length
+	 *            Länge des Bereichs in Bytes
+	 * @param size
+	 *            Anzahl je Lesevorgang zu lesender Bytes
+	 * @return Prüfsumme oder null, falls der Bereich nicht vollständig gelesen
+	 *         werden konnte
+	 */
+	byte[] digestRange(ContentDigest.Hasher hasher, long start, long length, int size) {
 		try {
-			if (stream == null) {
-				stream = new BufferedInputStream(new FileInputStream(file));
+			pool.reserve();
+		} catch (IllegalStateException e) {
+			return null;
+		}
+
+		FileSessionEvent range = ScanEvents.ENABLED ? FileSessionEvent.open(start, false) : null;
+		long end = start;
+		ByteBuffer rangeBuffer = pool.getBuffers().acquire((int) Math.min(size, length));
+		try (FileChannel rangeChannel = FileChannel.open(Paths.get(file.getPath()), StandardOpenOption.READ)) {
+			while (end < start + length) {
+				rangeBuffer.clear();
+				rangeBuffer.limit((int) Math.min(rangeBuffer.capacity(), start + length - end));
+				int count = rangeChannel.read(rangeBuffer, end);
+				if (count < 0) {
+					return null;
+				}
+				rangeBuffer.flip();
+				hasher.update(rangeBuffer);
+				end += count;
 			}
-			data = stream.read();
-		} catch (IOException | IllegalStateException e) {
+			return hasher.digest();
+		} catch (IOException | InvalidPathException e) {
+			return null;
+		} finally {
+			pool.getBuffers().release(rangeBuffer);
+			pool.free();
+			if (range != null) {
+				range.close(file, end, false);
+			}
+		}
+	}
+
+	/**
+	 * Liefert den zuletzt mit readBlock() gelesenen Block. Gleichheit und
+	 * Hashwert des Puffers ergeben sich aus dessen Inhalt, womit er direkt als
+	 * Gruppierungsschlüssel dient. Am Dateiende ist der Block leer.
+	 * 
+	 * @return zuletzt gelesener Block oder null, falls keiner gelesen wurde
+	 */
+	public ByteBuffer getBlock() {
+		return block;
+	}
+
+	/**
+	 * Liefert den nächsten Block als Ausschnitt des abgebildeten Fensters, ohne
+	 * ihn in einen eigenen Puffer zu kopieren. Reicht das Fenster nicht für einen
+	 * vollständigen Block, so wird es ab der aktuellen Position neu abgebildet.
+	 * Schlägt das Abbilden fehl, wird dauerhaft auf das Lesen über den Kanal
+	 * zurückgefallen. Ist im Pool kein Platz für ein weiteres Fenster frei, so
+	 * wird dieser Block über den Kanal gelesen.
+	 * 
+	 * @param size
+	 *            maximale Anzahl zu lesender Bytes
+	 * @return Anzahl gelesener Bytes, FINISHED am Dateiende oder FAILING, falls
+	 *         kein Fenster abgebildet werden konnte
+	 */
+	private int readMapped(int size) {
+		if (window == null || window.remaining() < size) {
+			if (!windowReserved) {
+				if (!pool.reserveWindow()) {
+					return FAILING;
+				}
+				windowReserved = true;
+			}
+			try {
+				mapWindow(Math.max(size, mappedWindowSize));
+				if (channel != null) {
+					// Fenster bewegen den Kanal nicht, er wird bei Bedarf an der Position neu geöffnet
+					pool.close(this);
+					close();
+				}
+			} catch (IOException | UnsupportedOperationException | IllegalStateException | InvalidPathException e) {
+				mappedWindowSize = 0;
+				releaseWindow();
+				return FAILING;
+			}
+		}
+
+		int length = Math.min(size, window.remaining());
+		block = window.slice();
+		block.limit(length);
+		window.position(window.position() + length);
+		position += length;
+		return length == 0 ? FINISHED : length;
+	}
+
+	/**
+	 * Bildet ab der aktuellen Position ein Fenster der Datei in den Speicher ab.
+	 * Die Datei ist nur während des Abbildens geöffnet, das Fenster bleibt danach
+	 * gültig. Das vorherige Fenster wird erst von der Garbage Collection
+	 * freigegeben, sobald es nicht mehr referenziert wird, da Java kein
+	 * unterstütztes explizites Freigeben kennt.
+	 * 
+	 * @param windowSize
+	 *            maximale Größe des Fensters
+	 * @throws IOException
+	 *             falls die Datei nicht geöffnet oder abgebildet werden kann
+	 */
+	private void mapWindow(int windowSize) throws IOException {
+		window = null;
+		pool.acquire(this);
+		FileSessionEvent mapping = ScanEvents.ENABLED ? FileSessionEvent.open(position, true) : null;
+		try (FileChannel mappedChannel = FileChannel.open(Paths.get(file.getPath()), StandardOpenOption.READ)) {
+			long length = Math.max(0, Math.min(windowSize, mappedChannel.size() - position));
+			window = mappedChannel.map(MapMode.READ_ONLY, position, length);
+		} finally {
+			pool.release(this);
+			if (mapping != null) {
+				mapping.close(file, window == null ? position : position + window.capacity(), false);
+			}
+		}
+	}
+
+	/**
+	 * Füllt den Puffer ab der gespeicherten Position bis er voll oder die Datei
+	 * zuende gelesen ist. Die Datei wird dazu beim Pool reserviert und bei
+	 * Bedarf geöffnet.
+	 * 
+	 * @param target
+	 *            zu füllender Puffer
+	 * @return Anzahl gelesener Bytes oder FAILING im Fehlerfall
+	 */
+	private int fill(ByteBuffer target) {
+		try {
+			pool.acquire(this);
+		} catch (IllegalStateException e) {
+			return FAILING;
+		}
+
+		try {
+			if (channel == null) {
+				channel = FileChannel.open(Paths.get(file.getPath()), StandardOpenOption.READ);
+				if (ScanEvents.ENABLED) {
+					session = FileSessionEvent.open(position, false);
+				}
+				if (position > 0) {
+					channel.position(position);
+				}
+			}
+
+			int length = 0;
+			while (target.hasRemaining()) {
+				int count = channel.read(target);
+				if (count < 0) {
+					break;
+				}
+				length += count;
+			}
+			position += length;
+			return length;
+		} catch (IOException | IllegalStateException | InvalidPathException e) {
 			close();
+			return FAILING;
+		} finally {
+			pool.release(this);
 		}
-		return data;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+package de.b0n.dir.processor;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Begrenzt die Anzahl gleichzeitig geöffneter Dateien aller FileReader, welche
+ * sich diesen Pool teilen. Wird die Grenze erreicht, so wird der am längsten
+ * nicht genutzte Reader geschlossen. Dieser öffnet seine Datei beim nächsten
+ * Lesen erneut und setzt an seiner gespeicherten Position fort. Zudem teilen
+ * sich die Reader über den Pool ihre Lesepuffer. Ebenso viele Reader wie
+ * Dateien dürfen gleichzeitig ein in den Speicher abgebildetes Fenster halten.
+ */
+class FileReaderPool {
+	private final int maxOpenFiles;
+	private final ScanMetrics metrics;
+	private final BufferPool buffers = new BufferPool();
+	/**
+	 * Reader mit geöffneter Datei, welche gerade nicht lesen. Die Reihenfolge
+	 * entspricht der letzten Nutzung, der erste Eintrag wird zuerst geschlossen.
+	 */
+	private final Set<FileReader> idleReaders = new LinkedHashSet<>();
+	private int openFiles;
+	private int mappedWindows;
+
+	/**
+	 * Erzeugt einen Pool mit der übergebenen Obergrenze.
+	 *
+	 * @param maxOpenFiles
+	 *            maximale Anzahl gleichzeitig geöffneter Dateien, mindestens 1
+	 */
+	FileReaderPool(int maxOpenFiles) {
+		this(maxOpenFiles, null);
+	}
+
+	/**
+	 * Erzeugt einen Pool mit der übergebenen Obergrenze, welcher die Anzahl
+	 * geöffneter Dateien erfasst.
+	 *
+	 * @param maxOpenFiles
+	 *            maximale Anzahl gleichzeitig geöffneter Dateien, mindestens 1
+	 * @param metrics
+	 *            Kennzahlen der Suche oder null
+	 */
+	FileReaderPool(int maxOpenFiles, ScanMetrics metrics) {
+		if (maxOpenFiles < 1) {
+			throw new IllegalArgumentException("maxOpenFiles must be positive.");
+		}
+		this.maxOpenFiles = maxOpenFiles;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Liefert die gemeinsamen Lesepuffer aller Reader dieses Pools.
+	 *
+	 * @return gemeinsamer BufferPool
+	 */
+	BufferPool getBuffers() {
+		return buffers;
+	}
+
+	/**
+	 * Reserviert den Reader für einen Lesevorgang. Hält der Reader seine Datei
+	 * noch nicht offen, so wird ein Platz zum Öffnen reserviert. Ist keiner frei,
+	 * wird der am längsten ungenutzte Reader geschlossen oder gewartet, bis ein
+	 * Reader seinen Lesevorgang beendet.
+	 *
+	 * @param reader
+	 *            Reader, der lesen möchte
+	 */
+	synchronized void acquire(FileReader reader) {
+		if (idleReaders.remove(reader) || reader.isOpen()) {
+			return;
+		}
+		reserve();
+	}
+
+	/**
+	 * Reserviert einen Platz für eine zusätzlich geöffnete Datei, die keinem
+	 * Reader im Pool gehört, etwa für das Lesen eines einzelnen Bereichs. Der
+	 * Platz muss über free() wieder freigegeben werden.
+	 */
+	synchronized void reserve() {
+		while (openFiles >= maxOpenFiles) {
+			Iterator<FileReader> leastRecentlyUsed = idleReaders.iterator();
+			if (leastRecentlyUsed.hasNext()) {
+				FileReader evicted = leastRecentlyUsed.next();
+				leastRecentlyUsed.remove();
+				evicted.suspend();
+				closed();
+			} else {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Thread was stopped while waiting for a file handle", e);
+				}
+			}
+		}
+		openFiles++;
+		if (metrics != null) {
+			metrics.readerOpened();
+		}
+	}
+
+	/**
+	 * Reserviert einen Platz für einen Reader, der seine Datei über abgebildete
+	 * Fenster liest. Der Platz muss über freeWindow() wieder freigegeben werden.
+	 *
+	 * @return true, falls ein Platz frei war, sonst liest der Reader über
+	 *         seinen Lesepuffer
+	 */
+	synchronized boolean reserveWindow() {
+		if (mappedWindows >= maxOpenFiles) {
+			return false;
+		}
+		mappedWindows++;
+		return true;
+	}
+
+	/**
+	 * Gibt einen über reserveWindow() reservierten Platz wieder frei.
+	 */
+	synchronized void freeWindow() {
+		mappedWindows--;
+	}
+
+	/**
+	 * Gibt einen über reserve() reservierten Platz wieder frei.
+	 */
+	synchronized void free() {
+		closed();
+		notifyAll();
+	}
+
+	private void closed() {
+		openFiles--;
+		if (metrics != null) {
+			metrics.readerClosed();
+		}
+	}
+
+	/**
+	 * Beendet den Lesevorgang des Readers. Eine weiterhin geöffnete Datei darf ab
+	 * jetzt zugunsten anderer Reader geschlossen werden. Konnte die Datei nicht
+	 * geöffnet werden, so wird der reservierte Platz wieder freigegeben.
+	 *
+	 * @param reader
+	 *            Reader, der seinen Lesevorgang beendet hat
+	 */
+	synchronized void release(FileReader reader) {
+		if (reader.isOpen()) {
+			idleReaders.add(reader);
+		} else {
+			closed();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Gibt den Platz eines Readers frei, der seine Datei endgültig schließt.
+	 *
+	 * @param reader
+	 *            Reader, dessen Analyse abgeschlossen ist
+	 */
+	synchronized void close(FileReader reader) {
+		idleReaders.remove(reader);
+		if (reader.isOpen()) {
+			closed();
+			notifyAll();
+		}
+	}
+}
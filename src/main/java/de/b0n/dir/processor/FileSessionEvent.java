@@ -0,0 +1,78 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ereignis für die Zeit, in der ein FileReader seine Datei geöffnet hält,
+ * beziehungsweise für das Abbilden eines Fensters. Nur erzeugen, wenn
+ * ScanEvents.ENABLED gesetzt ist.
+ */
+@Name("de.b0n.dupfinder.FileSession")
+@Label("File Session")
+@Category("DupFinder")
+@Description("A file kept open by the content comparison, from opening to closing")
+@StackTrace(false)
+final class FileSessionEvent extends jdk.jfr.Event {
+
+	@Label("File")
+	String file;
+
+	@Label("Start Position")
+	@DataAmount
+	long startPosition;
+
+	@Label("Bytes Read")
+	@DataAmount
+	long bytesRead;
+
+	@Label("Mapped")
+	@Description("True if a window was mapped instead of reading through the channel")
+	boolean mapped;
+
+	@Label("Suspended")
+	@Description("True if the file was closed early to make room for other files")
+	boolean suspended;
+
+	/**
+	 * Beginnt die Zeitmessung beim Öffnen einer Datei.
+	 *
+	 * @param startPosition
+	 *            Position, an der das Lesen beginnt
+	 * @param mapped
+	 *            true, falls ein Fenster abgebildet wird
+	 * @return gestartetes Ereignis
+	 */
+	static FileSessionEvent open(long startPosition, boolean mapped) {
+		FileSessionEvent event = new FileSessionEvent();
+		event.startPosition = startPosition;
+		event.mapped = mapped;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Schließt die Zeitmessung beim Schließen der Datei ab.
+	 *
+	 * @param file
+	 *            gelesene Datei
+	 * @param endPosition
+	 *            Position nach dem letzten Lesen
+	 * @param suspended
+	 *            true, falls die Datei nur vorübergehend geschlossen wird
+	 */
+	void close(File file, long endPosition, boolean suspended) {
+		if (shouldCommit()) {
+			this.file = file.getPath();
+			this.bytesRead = endPosition - startPosition;
+			this.suspended = suspended;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package de.b0n.dir.processor;
+
+import java.nio.file.Path;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ereignis für das Auflisten eines Verzeichnisses im DuplicateLengthFinder.
+ * Nur erzeugen, wenn ScanEvents.ENABLED gesetzt ist.
+ */
+@Name("de.b0n.dupfinder.FolderListing")
+@Label("Folder Listing")
+@Category("DupFinder")
+@Description("Listing of one folder during the search for files of equal size")
+@StackTrace(false)
+final class FolderListingEvent extends jdk.jfr.Event {
+
+	@Label("Folder")
+	String folder;
+
+	@Label("Entries")
+	int entries;
+
+	@Label("Files")
+	int files;
+
+	@Label("Subfolders")
+	int subfolders;
+
+	@Label("Linked Files")
+	int linkedFiles;
+
+	@Label("File Bytes")
+	@Description("Total size of the files found in the folder")
+	@DataAmount
+	long bytes;
+
+	@Label("Unreadable")
+	boolean unreadable;
+
+	/**
+	 * Beginnt die Zeitmessung für ein Verzeichnis.
+	 *
+	 * @return gestartetes Ereignis
+	 */
+	static FolderListingEvent start() {
+		FolderListingEvent event = new FolderListingEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Schließt die Zeitmessung ab und zeichnet das Ereignis auf, sofern es die
+	 * Einstellungen der Aufzeichnung erfüllt.
+	 *
+	 * @param folder
+	 *            aufgelistetes Verzeichnis
+	 * @param entries
+	 *            Anzahl aller Einträge
+	 * @param files
+	 *            Anzahl regulärer Dateien einschließlich Verknüpfungen
+	 * @param subfolders
+	 *            Anzahl erstmals gefundener Unterverzeichnisse
+	 * @param linkedFiles
+	 *            Anzahl der Verknüpfungen auf bereits gefundene Dateien
+	 * @param bytes
+	 *            Größe aller Dateien
+	 * @param unreadable
+	 *            true, falls das Verzeichnis nicht vollständig gelesen werden
+	 *            konnte
+	 */
+	void end(Path folder, int entries, int files, int subfolders, int linkedFiles, long bytes, boolean unreadable) {
+		if (shouldCommit()) {
+			this.folder = folder.toString();
+			this.entries = entries;
+			this.files = files;
+			this.subfolders = subfolders;
+			this.linkedFiles = linkedFiles;
+			this.bytes = bytes;
+			this.unreadable = unreadable;
+			commit();
+		}
+	}
+}
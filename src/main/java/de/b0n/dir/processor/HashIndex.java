@@ -0,0 +1,434 @@
+package de.b0n.dir.processor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persistenter Index der Prüfsummen bereits analysierter Dateien. Ein Eintrag
+ * gilt nur, solange Pfad, Größe, Änderungszeitpunkt und Dateischlüssel der
+ * Datei unverändert sind. Unveränderte Dateien werden so bei erneuten Suchen
+ * ohne Lesen ihres Inhalts eingeordnet.
+ *
+ * Der Index wird in eine temporäre Datei geschrieben, auf den Datenträger
+ * gebracht und erst dann atomar an seinen Platz verschoben. Eine beschädigte
+ * Indexdatei wird beim Laden erkannt und verworfen.
+ */
+public class HashIndex {
+	/**
+	 * Algorithmus der vollständigen Prüfsummen
+	 */
+	public static final String DIGEST_ALGORITHM = "SHA-256";
+
+	private static final int MAGIC = 0x44464958;
+	private static final int VERSION = 1;
+	private static final int MAX_STRING_LENGTH = 1024 * 1024;
+
+	/**
+	 * Gespeicherte Prüfsummen einer Datei samt der Metadaten, für die sie gelten
+	 */
+	private static final class IndexEntry {
+		private final long size;
+		private final long modified;
+		private final String fileKey;
+		private final int sampleSize;
+		private final boolean sampleMiddle;
+		private final long sampleChecksum;
+		private final byte[] digest;
+
+		private IndexEntry(long size, long modified, String fileKey, int sampleSize, boolean sampleMiddle,
+				long sampleChecksum, byte[] digest) {
+			this.size = size;
+			this.modified = modified;
+			this.fileKey = fileKey;
+			this.sampleSize = sampleSize;
+			this.sampleMiddle = sampleMiddle;
+			this.sampleChecksum = sampleChecksum;
+			this.digest = digest;
+		}
+
+		private static IndexEntry of(BasicFileAttributes attributes) {
+			return new IndexEntry(attributes.size(), modified(attributes), fileKey(attributes), 0, false, 0, null);
+		}
+
+		private boolean matches(BasicFileAttributes attributes) {
+			return size == attributes.size() && modified == modified(attributes)
+					&& fileKey.equals(fileKey(attributes));
+		}
+
+		private IndexEntry withSample(int sampleSize, boolean sampleMiddle, long sampleChecksum) {
+			return new IndexEntry(size, modified, fileKey, sampleSize, sampleMiddle, sampleChecksum, digest);
+		}
+
+		private IndexEntry withDigest(byte[] digest) {
+			return new IndexEntry(size, modified, fileKey, sampleSize, sampleMiddle, sampleChecksum, digest);
+		}
+
+		private static long modified(BasicFileAttributes attributes) {
+			return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+		}
+
+		private static String fileKey(BasicFileAttributes attributes) {
+			return String.valueOf(attributes.fileKey());
+		}
+	}
+
+	private final Path indexFile;
+	private final Map<String, IndexEntry> entries = new ConcurrentHashMap<>();
+	private final Set<String> seen = ConcurrentHashMap.newKeySet();
+
+	private HashIndex(Path indexFile) {
+		this.indexFile = indexFile;
+	}
+
+	/**
+	 * Lädt den Index aus der übergebenen Datei. Existiert die Datei nicht oder ist
+	 * sie beschädigt, so wird mit einem leeren Index begonnen, welcher beim
+	 * Speichern die Datei ersetzt.
+	 *
+	 * @param indexFile
+	 *            Datei des Index
+	 * @return geladener Index
+	 * @throws IOException
+	 *             falls die Datei existiert, aber nicht gelesen werden kann
+	 */
+	public static HashIndex load(Path indexFile) throws IOException {
+		if (indexFile == null) {
+			throw new IllegalArgumentException("indexFile may not be null.");
+		}
+
+		HashIndex index = new HashIndex(indexFile.toAbsolutePath());
+		try (InputStream input = new BufferedInputStream(Files.newInputStream(indexFile))) {
+			index.read(input);
+		} catch (NoSuchFileException e) {
+			// Neuer Index
+		} catch (CorruptIndexException e) {
+			index.entries.clear();
+		}
+		return index;
+	}
+
+	/**
+	 * Signalisiert eine unvollständige oder verfälschte Indexdatei
+	 */
+	private static class CorruptIndexException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		private CorruptIndexException(String message) {
+			super(message);
+		}
+	}
+
+	private void read(InputStream input) throws IOException {
+		CheckedInputStream checkedInput = new CheckedInputStream(input, new CRC32());
+		DataInputStream data = new DataInputStream(checkedInput);
+		try {
+			if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+				throw new CorruptIndexException("Unknown index format");
+			}
+			boolean digestsUsable = DIGEST_ALGORITHM.equals(data.readUTF());
+			int count = data.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = readString(data);
+				long size = data.readLong();
+				long modified = data.readLong();
+				String fileKey = readString(data);
+				int sampleSize = data.readInt();
+				boolean sampleMiddle = data.readBoolean();
+				long sampleChecksum = data.readLong();
+				byte[] digest = new byte[data.readUnsignedShort()];
+				data.readFully(digest);
+				entries.put(path, new IndexEntry(size, modified, fileKey, sampleSize, sampleMiddle, sampleChecksum,
+						digestsUsable && digest.length > 0 ? digest : null));
+			}
+			long checksum = checkedInput.getChecksum().getValue();
+			if (data.readLong() != checksum) {
+				throw new CorruptIndexException("Index checksum mismatch");
+			}
+		} catch (EOFException | UTFDataFormatException e) {
+			throw new CorruptIndexException("Index is truncated");
+		}
+	}
+
+	private static String readString(DataInputStream data) throws IOException {
+		int length = data.readInt();
+		if (length < 0 || length > MAX_STRING_LENGTH) {
+			throw new CorruptIndexException("Invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		data.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeString(DataOutputStream data, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		data.writeInt(bytes.length);
+		data.write(bytes);
+	}
+
+	/**
+	 * Speichert den Index. Die bisherige Indexdatei wird erst ersetzt, wenn der
+	 * neue Stand vollständig auf dem Datenträger liegt.
+	 *
+	 * @throws IOException
+	 *             falls der Index nicht geschrieben werden kann
+	 */
+	public void save() throws IOException {
+		Path directory = indexFile.getParent();
+		Path temporaryFile = Files.createTempFile(directory, indexFile.getFileName().toString(), ".tmp");
+		try {
+			try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile.toFile())) {
+				CheckedOutputStream checkedOutput = new CheckedOutputStream(new BufferedOutputStream(fileOutput),
+						new CRC32());
+				DataOutputStream data = new DataOutputStream(checkedOutput);
+				write(data);
+				data.writeLong(checkedOutput.getChecksum().getValue());
+				data.flush();
+				fileOutput.getFD().sync();
+			}
+			try {
+				Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	private void write(DataOutputStream data) throws IOException {
+		Map<String, IndexEntry> snapshot = new HashMap<>(entries);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeUTF(DIGEST_ALGORITHM);
+		data.writeInt(snapshot.size());
+		for (Entry<String, IndexEntry> entry : snapshot.entrySet()) {
+			IndexEntry value = entry.getValue();
+			writeString(data, entry.getKey());
+			data.writeLong(value.size);
+			data.writeLong(value.modified);
+			writeString(data, value.fileKey);
+			data.writeInt(value.sampleSize);
+			data.writeBoolean(value.sampleMiddle);
+			data.writeLong(value.sampleChecksum);
+			byte[] digest = value.digest == null ? new byte[0] : value.digest;
+			data.writeShort(digest.length);
+			data.write(digest);
+		}
+	}
+
+	/**
+	 * Liefert die Anzahl der Einträge im Index.
+	 *
+	 * @return Anzahl der Einträge
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Entfernt alle Einträge, deren Datei nicht mehr existiert oder sich seit der
+	 * Aufnahme in den Index verändert hat.
+	 *
+	 * @return Anzahl der entfernten Einträge
+	 */
+	public int compact() {
+		int removed = 0;
+		for (Iterator<Entry<String, IndexEntry>> iterator = entries.entrySet().iterator(); iterator.hasNext();) {
+			Entry<String, IndexEntry> entry = iterator.next();
+			BasicFileAttributes attributes = readAttributes(new File(entry.getKey()).toPath());
+			if (attributes == null || !entry.getValue().matches(attributes)) {
+				iterator.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Entfernt alle Einträge unterhalb des übergebenen Pfades, sodass deren
+	 * Dateien bei der nächsten Suche erneut gelesen werden.
+	 *
+	 * @param prefix
+	 *            Datei oder Verzeichnis, dessen Einträge verworfen werden
+	 * @return Anzahl der entfernten Einträge
+	 */
+	public int invalidate(Path prefix) {
+		Path normalizedPrefix = prefix.toAbsolutePath().normalize();
+		int removed = 0;
+		for (Iterator<String> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+			if (new File(iterator.next()).toPath().startsWith(normalizedPrefix)) {
+				iterator.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Vermerkt, dass die Datei bei der aktuellen Suche gefunden wurde.
+	 *
+	 * @param file
+	 *            gefundene Datei
+	 */
+	void markSeen(File file) {
+		seen.add(key(file));
+	}
+
+	/**
+	 * Entfernt die Einträge unterhalb des durchsuchten Verzeichnisses, deren
+	 * Dateien bei der aktuellen Suche nicht mehr gefunden wurden.
+	 *
+	 * @param folder
+	 *            durchsuchtes Verzeichnis
+	 * @return Anzahl der entfernten Einträge
+	 */
+	int removeUnseen(File folder) {
+		Path root = new File(key(folder)).toPath();
+		int removed = 0;
+		for (Iterator<String> iterator = entries.keySet().iterator(); iterator.hasNext();) {
+			String path = iterator.next();
+			if (!seen.contains(path) && new File(path).toPath().startsWith(root)) {
+				iterator.remove();
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Liefert die gespeicherte vollständige Prüfsumme der Datei, sofern sich die
+	 * Datei seitdem nicht verändert hat.
+	 *
+	 * @param file
+	 *            nachzuschlagende Datei
+	 * @param attributes
+	 *            aktuelle Attribute der Datei
+	 * @return Prüfsumme oder null, falls keine gültige vorliegt
+	 */
+	byte[] getDigest(File file, BasicFileAttributes attributes) {
+		IndexEntry entry = entries.get(key(file));
+		if (entry == null || entry.digest == null || !entry.matches(attributes)) {
+			return null;
+		}
+		return entry.digest;
+	}
+
+	/**
+	 * Speichert die vollständige Prüfsumme der Datei.
+	 *
+	 * @param file
+	 *            gelesene Datei
+	 * @param attributes
+	 *            Attribute der Datei vor dem Lesen
+	 * @param digest
+	 *            Prüfsumme des Inhalts
+	 */
+	void putDigest(File file, BasicFileAttributes attributes, byte[] digest) {
+		entries.compute(key(file), (path, entry) -> (entry != null && entry.matches(attributes) ? entry
+				: IndexEntry.of(attributes)).withDigest(Arrays.copyOf(digest, digest.length)));
+	}
+
+	/**
+	 * Liefert die gespeicherte Prüfsumme der Stichproben der Datei, sofern sich
+	 * weder die Datei noch die Art der Stichproben verändert hat.
+	 *
+	 * @param file
+	 *            nachzuschlagende Datei
+	 * @param attributes
+	 *            aktuelle Attribute der Datei
+	 * @param sampleSize
+	 *            Größe der Stichproben
+	 * @param sampleMiddle
+	 *            true, falls die Mitte mit untersucht wird
+	 * @return Prüfsumme oder null, falls keine gültige vorliegt
+	 */
+	Long getSampleChecksum(File file, BasicFileAttributes attributes, int sampleSize, boolean sampleMiddle) {
+		IndexEntry entry = entries.get(key(file));
+		if (entry == null || entry.sampleSize != sampleSize || entry.sampleMiddle != sampleMiddle
+				|| !entry.matches(attributes)) {
+			return null;
+		}
+		return entry.sampleChecksum;
+	}
+
+	/**
+	 * Speichert die Prüfsumme der Stichproben der Datei.
+	 *
+	 * @param file
+	 *            untersuchte Datei
+	 * @param attributes
+	 *            Attribute der Datei vor dem Lesen
+	 * @param sampleSize
+	 *            Größe der Stichproben
+	 * @param sampleMiddle
+	 *            true, falls die Mitte mit untersucht wurde
+	 * @param sampleChecksum
+	 *            Prüfsumme der Stichproben
+	 */
+	void putSampleChecksum(File file, BasicFileAttributes attributes, int sampleSize, boolean sampleMiddle,
+			long sampleChecksum) {
+		entries.compute(key(file),
+				(path, entry) -> (entry != null && entry.matches(attributes) ? entry : IndexEntry.of(attributes))
+						.withSample(sampleSize, sampleMiddle, sampleChecksum));
+	}
+
+	/**
+	 * Liest die Attribute einer Datei für den Abgleich mit dem Index.
+	 *
+	 * @param path
+	 *            Pfad der Datei
+	 * @return Attribute oder null, falls die Datei nicht gelesen werden kann
+	 */
+	static BasicFileAttributes readAttributes(Path path) {
+		return readAttributes(path, BasicFileAttributes.class);
+	}
+
+	/**
+	 * Liest die Attribute einer Datei in der angegebenen Art, welche auch für
+	 * den Abgleich mit dem Index genügt.
+	 *
+	 * @param path
+	 *            Pfad der Datei
+	 * @param type
+	 *            Art der Attribute
+	 * @return Attribute oder null, falls die Datei nicht gelesen werden kann
+	 */
+	static BasicFileAttributes readAttributes(Path path, Class<? extends BasicFileAttributes> type) {
+		try {
+			return Files.readAttributes(path, type);
+		} catch (IOException | UnsupportedOperationException | SecurityException e) {
+			return null;
+		}
+	}
+
+	private static String key(File file) {
+		return file.toPath().toAbsolutePath().normalize().toString();
+	}
+}
@@ -0,0 +1,120 @@
+package de.b0n.dir.processor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Schnelle, nicht kryptografische 128-Bit-Prüfsumme MurmurHash3 in der
+ * Variante x64_128 mit Startwert 0. Die Prüfsumme wird in der üblichen
+ * Darstellung geliefert, beide Hälften in Little Endian. Zufällige Kollisionen
+ * sind bei 128 Bit vernachlässigbar, gezielt herbeigeführte nicht; wer das
+ * ausschließen muss, lässt gefundene Gruppen zusätzlich byteweise bestätigen.
+ */
+public class Murmur3ContentDigest implements ContentDigest {
+
+	/**
+	 * Name des Algorithmus
+	 */
+	public static final String NAME = "murmur3-128";
+
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public Hasher newHasher() {
+		return new Murmur3Hasher();
+	}
+
+	/**
+	 * Verarbeitet den Inhalt in 16-Byte-Blöcken. Ein unvollständiger Block am
+	 * Ende eines Abschnitts wird bis zum nächsten Abschnitt aufbewahrt.
+	 */
+	private static final class Murmur3Hasher implements Hasher {
+		private final ByteBuffer tail = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		private long h1;
+		private long h2;
+		private long length;
+
+		@Override
+		public void update(ByteBuffer block) {
+			ByteBuffer data = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			length += data.remaining();
+			if (tail.position() > 0) {
+				while (tail.hasRemaining() && data.hasRemaining()) {
+					tail.put(data.get());
+				}
+				if (tail.hasRemaining()) {
+					return;
+				}
+				mix(tail.getLong(0), tail.getLong(8));
+				tail.clear();
+			}
+			while (data.remaining() >= 16) {
+				mix(data.getLong(), data.getLong());
+			}
+			tail.put(data);
+		}
+
+		private void mix(long k1, long k2) {
+			h1 ^= mixK1(k1);
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+			h2 ^= mixK2(k2);
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+
+		@Override
+		public byte[] digest() {
+			int remaining = tail.position();
+			long k1 = 0;
+			long k2 = 0;
+			for (int i = remaining - 1; i >= 8; i--) {
+				k2 ^= (tail.get(i) & 0xFFL) << ((i - 8) * 8);
+			}
+			for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+				k1 ^= (tail.get(i) & 0xFFL) << (i * 8);
+			}
+			if (remaining > 8) {
+				h2 ^= mixK2(k2);
+			}
+			if (remaining > 0) {
+				h1 ^= mixK1(k1);
+			}
+
+			h1 ^= length;
+			h2 ^= length;
+			h1 += h2;
+			h2 += h1;
+			h1 = fmix(h1);
+			h2 = fmix(h2);
+			h1 += h2;
+			h2 += h1;
+			return ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putLong(h1).putLong(h2).array();
+		}
+
+		private static long mixK1(long k1) {
+			return Long.rotateLeft(k1 * C1, 31) * C2;
+		}
+
+		private static long mixK2(long k2) {
+			return Long.rotateLeft(k2 * C2, 33) * C1;
+		}
+
+		private static long fmix(long k) {
+			k ^= k >>> 33;
+			k *= 0xff51afd7ed558ccdL;
+			k ^= k >>> 33;
+			k *= 0xc4ceb9fe1a85ec53L;
+			k ^= k >>> 33;
+			return k;
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package de.b0n.dir.processor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Begrenzt eine Suche zeitlich oder nach gelesenen Bytes und erlaubt ihren
+ * Abbruch von außen. Die Aufgaben der Suche prüfen das Budget vor jedem
+ * Verzeichnis, jeder Stichprobe und jeder Vergleichsrunde. Ist es erschöpft,
+ * so beenden sie sich, ohne weiter zu lesen: bis dahin bestätigte Dubletten
+ * sind bereits gemeldet, nicht durchsuchte Verzeichnisse werden über
+ * skippedFolder() und nicht abgeschlossene Gruppen gleich großer Dateien über
+ * unresolvedGroup() gemeldet. Die Suche kehrt danach regulär zurück.
+ * <p>
+ * Wird der auf die Suche wartende Thread unterbrochen, so wird das Budget
+ * ebenfalls abgebrochen. Ein Budget gilt für eine einzige Suche.
+ */
+public final class ScanBudget {
+
+	/**
+	 * Grund, aus dem das Budget erschöpft ist
+	 */
+	public enum Reason {
+		/**
+		 * Über cancel() oder durch Unterbrechen des wartenden Threads
+		 * abgebrochen
+		 */
+		CANCELLED,
+		/**
+		 * Zeitlimit abgelaufen
+		 */
+		TIME,
+		/**
+		 * Obergrenze gelesener Bytes erreicht
+		 */
+		BYTES
+	}
+
+	private final AtomicReference<Reason> reason = new AtomicReference<>();
+	private final LongAdder readBytes = new LongAdder();
+	private volatile long deadlineNanos;
+	private volatile boolean deadline;
+	private volatile long maxBytes = Long.MAX_VALUE;
+
+	/**
+	 * Beendet die Suche, sobald die angegebene Zeit ab jetzt verstrichen ist.
+	 *
+	 * @param timeout
+	 *            verbleibende Zeit, nicht negativ
+	 * @param unit
+	 *            Einheit der Zeit
+	 * @return dieses Budget
+	 */
+	public ScanBudget setTimeLimit(long timeout, TimeUnit unit) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("timeout may not be negative.");
+		}
+		if (unit == null) {
+			throw new IllegalArgumentException("unit may not be null.");
+		}
+		deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+		deadline = true;
+		return this;
+	}
+
+	/**
+	 * Beendet die Suche, sobald sie insgesamt mehr Bytes aus Stichproben und
+	 * Inhaltsvergleich gelesen hat. Laufende Lesevorgänge werden noch
+	 * abgeschlossen.
+	 *
+	 * @param maxBytes
+	 *            Obergrenze gelesener Bytes, nicht negativ
+	 * @return dieses Budget
+	 */
+	public ScanBudget setMaxBytes(long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes may not be negative.");
+		}
+		this.maxBytes = maxBytes;
+		return this;
+	}
+
+	/**
+	 * Bricht die Suche ab. Kann von einem beliebigen Thread aufgerufen werden.
+	 */
+	public void cancel() {
+		reason.compareAndSet(null, Reason.CANCELLED);
+	}
+
+	/**
+	 * Prüft, ob das Budget erschöpft ist. Ein einmal erschöpftes Budget bleibt
+	 * erschöpft.
+	 *
+	 * @return true, falls die Suche enden soll
+	 */
+	public boolean isExhausted() {
+		if (reason.get() != null) {
+			return true;
+		}
+		if (deadline && System.nanoTime() - deadlineNanos >= 0) {
+			reason.compareAndSet(null, Reason.TIME);
+		} else if (readBytes.sum() > maxBytes) {
+			reason.compareAndSet(null, Reason.BYTES);
+		}
+		return reason.get() != null;
+	}
+
+	/**
+	 * Liefert den Grund, aus dem das Budget erschöpft ist.
+	 *
+	 * @return Grund oder null, solange das Budget nicht erschöpft ist
+	 */
+	public Reason getReason() {
+		isExhausted();
+		return reason.get();
+	}
+
+	/**
+	 * @return bisher gelesene Bytes
+	 */
+	public long getReadBytes() {
+		return readBytes.sum();
+	}
+
+	void read(long bytes) {
+		readBytes.add(bytes);
+	}
+}
@@ -0,0 +1,267 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Führt Dublettensuchen auf einem gemeinsamen Thread-Pool aus. Alle Suchen
+ * einer Engine teilen sich zudem die Obergrenze geöffneter Dateien. Eine
+ * Engine kann für beliebig viele Suchen wiederverwendet werden und muss nach
+ * Gebrauch geschlossen werden.
+ */
+public class ScanEngine implements AutoCloseable {
+
+	private static final AtomicInteger ENGINE_NUMBER = new AtomicInteger();
+
+	private final ScanSettings settings;
+	private final ExecutorService threadPool;
+	private final FileReaderPool readerPool;
+	private final DeviceScheduler devices;
+	private final ScanMetrics metrics;
+	/**
+	 * Gestartete Threads eines Pools gewöhnlicher Threads, auf deren Ende beim
+	 * Schließen gewartet wird
+	 */
+	private final Queue<Thread> platformThreads = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Erzeugt eine Engine mit Standardeinstellungen.
+	 */
+	public ScanEngine() {
+		this(new ScanSettings());
+	}
+
+	/**
+	 * Erzeugt eine Engine. Parallelität, Art der Threads, Obergrenze
+	 * geöffneter Dateien und Kennzahlen werden dabei aus den Einstellungen
+	 * übernommen, alle übrigen Einstellungen wirken je Suche.
+	 *
+	 * @param settings
+	 *            Einstellungen der Dublettensuche
+	 */
+	public ScanEngine(final ScanSettings settings) {
+		if (settings == null) {
+			throw new IllegalArgumentException("settings may not be null.");
+		}
+		this.settings = settings;
+		this.metrics = settings.getMetrics();
+		this.threadPool = createThreadPool(settings, platformThreads);
+		this.readerPool = new FileReaderPool(settings.getMaxOpenFiles(), metrics);
+		this.devices = new DeviceScheduler(settings.getMaxReadsPerDevice(), settings.getMaxReadsPerRotationalDevice());
+	}
+
+	private static ExecutorService createThreadPool(ScanSettings settings, Queue<Thread> platformThreads) {
+		switch (settings.getThreadType()) {
+		case PLATFORM:
+			String prefix = "dupfinder-" + ENGINE_NUMBER.incrementAndGet() + "-";
+			AtomicInteger threadNumber = new AtomicInteger();
+			ThreadFactory threadFactory = runnable -> {
+				Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				platformThreads.add(thread);
+				return thread;
+			};
+			return Executors.newFixedThreadPool(settings.getParallelism(), threadFactory);
+		case VIRTUAL:
+			return newVirtualThreadPerTaskExecutor();
+		case WORK_STEALING:
+		default:
+			return new ForkJoinPool(settings.getParallelism(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null,
+					true);
+		}
+	}
+
+	/**
+	 * Erzeugt einen Executor, der jede Aufgabe auf einem eigenen virtuellen
+	 * Thread startet. Der Aufruf erfolgt reflektiv, damit das Projekt weiterhin
+	 * für ältere Java-Versionen übersetzt werden kann.
+	 *
+	 * @return ExecutorService auf virtuellen Threads
+	 * @throws UnsupportedOperationException
+	 *             falls die Laufzeitumgebung keine virtuellen Threads bietet
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or newer.", e);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Could not create virtual thread executor.", e);
+		}
+	}
+
+	/**
+	 * Prüft, ob die Laufzeitumgebung virtuelle Threads bietet.
+	 *
+	 * @return true, falls ThreadType.VIRTUAL genutzt werden kann
+	 */
+	public static boolean isVirtualThreadSupported() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Liefert die Einstellungen dieser Engine.
+	 *
+	 * @return Einstellungen der Dublettensuche
+	 */
+	public ScanSettings getSettings() {
+		return settings;
+	}
+
+	/**
+	 * Durchsucht ein Verzeichnis nach inhaltlichen Dubletten.
+	 *
+	 * @param folder
+	 *            Zu durchsuchendes Verzeichnis
+	 * @return Nach inhaltlichen Dubletten gruppierte File-Listen
+	 */
+	public Queue<List<File>> findDuplicates(final File folder) {
+		ConcurrentLinkedQueue<List<File>> result = new ConcurrentLinkedQueue<>();
+		findDuplicates(folder, new DuplicateFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateGroup) {
+				result.add(duplicateGroup);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Durchsucht ein Verzeichnis nach inhaltlichen Dubletten.
+	 *
+	 * @param folder
+	 *            Zu durchsuchendes Verzeichnis
+	 * @param callback
+	 *            Callback, um über den Fortschritt und die Ergebnisse der
+	 *            Dublettensuche informiert zu werden
+	 */
+	public void findDuplicates(final File folder, final DuplicateFinderCallback callback) {
+		if (callback == null) {
+			throw new IllegalArgumentException("callback may not be null.");
+		}
+		DuplicateFinder.find(folder, callback, this);
+	}
+
+	/**
+	 * Durchsucht mehrere Verzeichnisse gemeinsam nach inhaltlichen Dubletten.
+	 * Die Dateien aller Verzeichnisse landen in einem Größenindex, sodass auch
+	 * Dubletten über Verzeichnisse hinweg gefunden werden. Verschachtelte oder
+	 * überlappende Verzeichnisse werden nur einmal durchsucht.
+	 *
+	 * @param folders
+	 *            Zu durchsuchende Verzeichnisse
+	 * @param callback
+	 *            Callback, um über den Fortschritt und die Ergebnisse der
+	 *            Dublettensuche informiert zu werden
+	 */
+	public void findDuplicates(final Collection<File> folders, final DuplicateFinderCallback callback) {
+		if (callback == null) {
+			throw new IllegalArgumentException("callback may not be null.");
+		}
+		DuplicateFinder.find(folders, callback, this);
+	}
+
+	/**
+	 * Legt die Begrenzung gleichzeitig laufender Aufgaben für die Suche in einem
+	 * Verzeichnis an. Nur auf virtuellen Threads wird begrenzt, Thread-Pools
+	 * begrenzen bereits über ihre Parallelität.
+	 *
+	 * @return gemeinsame Begrenzung aller Executoren einer Suche oder null für
+	 *         unbegrenzt
+	 */
+	Semaphore newRootLimit() {
+		if (settings.getThreadType() != ScanSettings.ThreadType.VIRTUAL) {
+			return null;
+		}
+		return new Semaphore(settings.getMaxTasksPerRoot());
+	}
+
+	/**
+	 * Legt eine neue Gruppe von Aufgaben an, deren Abschluss gemeinsam
+	 * abgewartet werden kann. Das Warten bricht das Budget der Einstellungen
+	 * ab, falls der wartende Thread unterbrochen wird. Aufzählungen bearbeitet
+	 * der Executor mit so vielen Threads, wie der Thread-Pool parallel
+	 * ausführt, auf virtuellen Threads mit so vielen, wie je Verzeichnis
+	 * gleichzeitig laufen dürfen.
+	 *
+	 * @param rootLimit
+	 *            Begrenzung der Suche, zu der die Aufgaben gehören, oder null
+	 * @return Executor auf dem Thread-Pool dieser Engine
+	 */
+	Executor newExecutor(Semaphore rootLimit) {
+		if (threadPool.isShutdown()) {
+			throw new IllegalStateException("ScanEngine has already been closed.");
+		}
+		int width = settings.getThreadType() == ScanSettings.ThreadType.VIRTUAL ? settings.getMaxTasksPerRoot()
+				: settings.getParallelism();
+		return new Executor(threadPool, rootLimit, metrics, settings.getBudget(), width);
+	}
+
+	/**
+	 * Liefert die Kennzahlen, in welchen alle Suchen dieser Engine ihren
+	 * Verlauf erfassen.
+	 *
+	 * @return Kennzahlen oder null
+	 */
+	ScanMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Liefert den Pool, über den alle Suchen dieser Engine ihre geöffneten
+	 * Dateien begrenzen.
+	 *
+	 * @return gemeinsamer FileReaderPool
+	 */
+	FileReaderPool getReaderPool() {
+		return readerPool;
+	}
+
+	/**
+	 * Liefert die Zuordnung zu Geräten, über die alle Suchen dieser Engine ihre
+	 * gleichzeitigen Lesezugriffe je Gerät begrenzen.
+	 *
+	 * @return gemeinsamer DeviceScheduler
+	 */
+	DeviceScheduler getDevices() {
+		return devices;
+	}
+
+	/**
+	 * Beendet den Thread-Pool und wartet auf noch laufende Aufgaben. Threads
+	 * eines Pools gewöhnlicher Threads sind danach beendet.
+	 */
+	@Override
+	public void close() {
+		threadPool.shutdown();
+		try {
+			while (!threadPool.awaitTermination(1, TimeUnit.MINUTES)) {
+				// Laufende Aufgaben werden nicht abgebrochen
+			}
+			// Der Pool gilt bereits als beendet, bevor seine Threads enden
+			Thread thread;
+			while ((thread = platformThreads.poll()) != null) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			threadPool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package de.b0n.dir.processor;
+
+/**
+ * Entscheidet, ob die Suche Ereignisse für Java Flight Recorder erzeugt. Die
+ * Ereignisklassen werden nur geladen, wenn die Laufzeitumgebung jdk.jfr bietet
+ * und die Systemeigenschaft dupfinder.jfr nicht auf false gesetzt ist. Ohne
+ * laufende Aufzeichnung verwirft der Flight Recorder die Ereignisse, ohne
+ * deren Felder zu befüllen.
+ */
+final class ScanEvents {
+
+	/**
+	 * true, falls Ereignisse erzeugt werden
+	 */
+	static final boolean ENABLED = !"false".equals(System.getProperty("dupfinder.jfr")) && isAvailable();
+
+	private ScanEvents() {
+	}
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event", false, ScanEvents.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError | SecurityException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Beschreibt, welche Dateien und Verzeichnisse die Suche berücksichtigt. Der
+ * Filter wird bereits beim Durchsuchen der Verzeichnisse ausgewertet:
+ * ausgeschlossene Verzeichnisse werden nicht aufgelistet, ausgeschlossene
+ * Dateien gelangen weder in den Größenindex noch in den Inhaltsvergleich.
+ * <p>
+ * Muster sind Globs im Format von {@link FileSystem#getPathMatcher(String)}.
+ * Muster ohne Pfadtrenner werden mit dem Namen verglichen, etwa
+ * {@code *.jpg} oder {@code node_modules}, Muster mit Pfadtrenner mit dem
+ * absoluten Pfad, etwa {@code /var/cache/**}.
+ */
+public class ScanFilter {
+
+	private long minSize;
+	private long maxSize = Long.MAX_VALUE;
+	private final List<Glob> includes = new ArrayList<>();
+	private final List<Glob> excludes = new ArrayList<>();
+	private final List<Glob> prunes = new ArrayList<>();
+	private boolean skipHidden;
+	private boolean skipSystem;
+
+	/**
+	 * Liefert die Mindestgröße berücksichtigter Dateien.
+	 *
+	 * @return Mindestgröße in Bytes
+	 */
+	public long getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * Setzt die Mindestgröße berücksichtigter Dateien. Eine Mindestgröße von 1
+	 * schließt leere Dateien aus.
+	 *
+	 * @param minSize
+	 *            Mindestgröße in Bytes, nicht negativ
+	 * @return dieser Filter
+	 */
+	public ScanFilter setMinSize(long minSize) {
+		if (minSize < 0) {
+			throw new IllegalArgumentException("minSize may not be negative.");
+		}
+		this.minSize = minSize;
+		return this;
+	}
+
+	/**
+	 * Liefert die Höchstgröße berücksichtigter Dateien.
+	 *
+	 * @return Höchstgröße in Bytes
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Setzt die Höchstgröße berücksichtigter Dateien.
+	 *
+	 * @param maxSize
+	 *            Höchstgröße in Bytes, nicht negativ
+	 * @return dieser Filter
+	 */
+	public ScanFilter setMaxSize(long maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("maxSize may not be negative.");
+		}
+		this.maxSize = maxSize;
+		return this;
+	}
+
+	/**
+	 * Berücksichtigt nur noch Dateien, die mindestens einem der angegebenen
+	 * Muster entsprechen. Verzeichnisse werden davon nicht eingeschränkt.
+	 *
+	 * @param glob
+	 *            Muster einzuschließender Dateien
+	 * @return dieser Filter
+	 */
+	public ScanFilter include(String glob) {
+		includes.add(Glob.of(glob));
+		return this;
+	}
+
+	/**
+	 * Schließt Dateien aus, die dem Muster entsprechen.
+	 *
+	 * @param glob
+	 *            Muster auszuschließender Dateien
+	 * @return dieser Filter
+	 */
+	public ScanFilter exclude(String glob) {
+		excludes.add(Glob.of(glob));
+		return this;
+	}
+
+	/**
+	 * Schließt Verzeichnisse samt Inhalt aus, die dem Muster entsprechen, etwa
+	 * {@code .git} oder {@code node_modules}. Die durchsuchten Verzeichnisse
+	 * selbst werden nie ausgeschlossen.
+	 *
+	 * @param glob
+	 *            Muster auszuschließender Verzeichnisse
+	 * @return dieser Filter
+	 */
+	public ScanFilter prune(String glob) {
+		prunes.add(Glob.of(glob));
+		return this;
+	}
+
+	/**
+	 * Liefert, ob versteckte Dateien und Verzeichnisse übersprungen werden.
+	 *
+	 * @return true, falls versteckte Elemente übersprungen werden
+	 */
+	public boolean isSkipHidden() {
+		return skipHidden;
+	}
+
+	/**
+	 * Legt fest, ob versteckte Dateien und Verzeichnisse übersprungen werden.
+	 * Als versteckt gelten Elemente, deren Name mit einem Punkt beginnt, und
+	 * unter Windows zusätzlich Elemente mit dem Attribut "versteckt".
+	 *
+	 * @param skipHidden
+	 *            true, um versteckte Elemente zu überspringen
+	 * @return dieser Filter
+	 */
+	public ScanFilter setSkipHidden(boolean skipHidden) {
+		this.skipHidden = skipHidden;
+		return this;
+	}
+
+	/**
+	 * Liefert, ob Systemdateien und -verzeichnisse übersprungen werden.
+	 *
+	 * @return true, falls Systemelemente übersprungen werden
+	 */
+	public boolean isSkipSystem() {
+		return skipSystem;
+	}
+
+	/**
+	 * Legt fest, ob Dateien und Verzeichnisse mit dem Attribut "System"
+	 * übersprungen werden. Wirkt nur auf Dateisystemen mit DOS-Attributen ohne
+	 * POSIX-Rechte, also unter Windows.
+	 *
+	 * @param skipSystem
+	 *            true, um Systemelemente zu überspringen
+	 * @return dieser Filter
+	 */
+	public ScanFilter setSkipSystem(boolean skipSystem) {
+		this.skipSystem = skipSystem;
+		return this;
+	}
+
+	/**
+	 * Liefert die Art der Attribute, welche je Element unterhalb eines
+	 * Verzeichnisses gelesen werden. DOS-Attribute werden nur gelesen, wenn sie
+	 * für den Filter benötigt werden und das Dateisystem sie nativ führt, sodass
+	 * je Element weiterhin ein einziger Zugriff genügt.
+	 *
+	 * @param path
+	 *            durchsuchtes Verzeichnis
+	 * @return zu lesende Art der Attribute
+	 */
+	Class<? extends BasicFileAttributes> attributeType(Path path) {
+		if (skipHidden || skipSystem) {
+			FileSystem fileSystem = path.getFileSystem();
+			if (fileSystem.supportedFileAttributeViews().contains("dos")
+					&& !fileSystem.supportedFileAttributeViews().contains("posix")) {
+				return DosFileAttributes.class;
+			}
+		}
+		return BasicFileAttributes.class;
+	}
+
+	/**
+	 * Prüft, ob ein gefundenes Verzeichnis durchsucht wird.
+	 *
+	 * @param folder
+	 *            Pfad des Verzeichnisses
+	 * @param attributes
+	 *            Attribute des Verzeichnisses
+	 * @return true, falls das Verzeichnis durchsucht wird
+	 */
+	boolean acceptsFolder(Path folder, BasicFileAttributes attributes) {
+		return !skipped(folder, attributes) && !matchesAny(prunes, folder);
+	}
+
+	/**
+	 * Prüft, ob eine gefundene Datei in den Größenindex aufgenommen wird.
+	 *
+	 * @param file
+	 *            Pfad der Datei
+	 * @param attributes
+	 *            Attribute der Datei
+	 * @return true, falls die Datei berücksichtigt wird
+	 */
+	boolean acceptsFile(Path file, BasicFileAttributes attributes) {
+		long size = attributes.size();
+		return size >= minSize && size <= maxSize && !skipped(file, attributes)
+				&& (includes.isEmpty() || matchesAny(includes, file)) && !matchesAny(excludes, file);
+	}
+
+	private boolean skipped(Path path, BasicFileAttributes attributes) {
+		if (skipHidden) {
+			Path name = path.getFileName();
+			if (name != null && name.toString().startsWith(".")) {
+				return true;
+			}
+			if (attributes instanceof DosFileAttributes && ((DosFileAttributes) attributes).isHidden()) {
+				return true;
+			}
+		}
+		return skipSystem && attributes instanceof DosFileAttributes && ((DosFileAttributes) attributes).isSystem();
+	}
+
+	private static boolean matchesAny(List<Glob> globs, Path path) {
+		for (Glob glob : globs) {
+			if (glob.matches(path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Muster, welches je nach Schreibweise mit dem Namen oder dem absoluten Pfad
+	 * verglichen wird
+	 */
+	private static final class Glob {
+		private final PathMatcher matcher;
+		private final boolean absolute;
+
+		private Glob(PathMatcher matcher, boolean absolute) {
+			this.matcher = matcher;
+			this.absolute = absolute;
+		}
+
+		static Glob of(String glob) {
+			if (glob == null) {
+				throw new IllegalArgumentException("glob may not be null.");
+			}
+			if (glob.isEmpty()) {
+				throw new IllegalArgumentException("glob may not be empty.");
+			}
+			boolean absolute = glob.indexOf('/') >= 0 || glob.indexOf(File.separatorChar) >= 0;
+			return new Glob(FileSystems.getDefault().getPathMatcher("glob:" + glob), absolute);
+		}
+
+		boolean matches(Path path) {
+			if (absolute) {
+				return matcher.matches(path);
+			}
+			Path name = path.getFileName();
+			return name != null && matcher.matches(name);
+		}
+	}
+}
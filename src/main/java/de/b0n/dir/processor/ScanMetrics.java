@@ -0,0 +1,444 @@
+package de.b0n.dir.processor;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sammelt Kennzahlen einer oder mehrerer Dublettensuchen. Die Kennzahlen
+ * werden an den Stellen erfasst, an denen die Suche ihre Callbacks aufruft,
+ * ergänzt um Dateisystemzugriffe, gelesene Bytes, Aufgaben und geöffnete
+ * Dateien. Ohne in den ScanSettings hinterlegte Kennzahlen wird nichts
+ * erfasst. Alle Methoden sind threadsicher, die Werte können jederzeit während
+ * der Suche abgefragt werden.
+ */
+public final class ScanMetrics {
+
+	/**
+	 * Abschnitt der Suche, in dem Dateiinhalte gelesen werden
+	 */
+	public enum Phase {
+		/**
+		 * Stichproben vom Anfang, vom Ende und optional aus der Mitte
+		 */
+		SAMPLE,
+		/**
+		 * Vollständiger Inhaltsvergleich
+		 */
+		CONTENT
+	}
+
+	/**
+	 * Stufe, in der eine Datei als einzigartig erkannt oder aussortiert wurde
+	 */
+	public enum Stage {
+		/**
+		 * Einzigartige Größe
+		 */
+		SIZE,
+		/**
+		 * Verknüpfung auf eine bereits gefundene Datei
+		 */
+		LINK,
+		/**
+		 * Einzigartige Stichproben
+		 */
+		SAMPLE,
+		/**
+		 * Einzigartiger Inhalt
+		 */
+		CONTENT
+	}
+
+	/**
+	 * Verteilung nicht negativer Werte in Klassen zu Zweierpotenzen. Quantile
+	 * werden mit der Obergrenze ihrer Klasse angegeben und sind damit höchstens
+	 * um den Faktor 2 zu groß.
+	 */
+	public static final class Histogram {
+		private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		Histogram() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		/**
+		 * Erfasst einen Wert, negative Werte als 0.
+		 *
+		 * @param value
+		 *            zu erfassender Wert
+		 */
+		void record(long value) {
+			long positive = Math.max(0, value);
+			buckets[Long.SIZE - Long.numberOfLeadingZeros(positive) - (positive == 0 ? 0 : 1)].increment();
+			count.increment();
+			sum.add(positive);
+			if (positive > max.get()) {
+				max.accumulateAndGet(positive, Math::max);
+			}
+		}
+
+		/**
+		 * @return Anzahl erfasster Werte
+		 */
+		public long getCount() {
+			return count.sum();
+		}
+
+		/**
+		 * @return Summe aller erfassten Werte
+		 */
+		public long getSum() {
+			return sum.sum();
+		}
+
+		/**
+		 * @return größter erfasster Wert
+		 */
+		public long getMax() {
+			return max.get();
+		}
+
+		/**
+		 * @return Mittelwert oder 0, falls noch nichts erfasst wurde
+		 */
+		public long getMean() {
+			long values = getCount();
+			return values == 0 ? 0 : getSum() / values;
+		}
+
+		/**
+		 * Schätzt das Quantil der erfassten Werte.
+		 *
+		 * @param quantile
+		 *            Quantil zwischen 0 und 1
+		 * @return Obergrenze der Klasse, in die das Quantil fällt, höchstens
+		 *         der größte erfasste Wert
+		 */
+		public long getQuantile(double quantile) {
+			if (quantile < 0 || quantile > 1) {
+				throw new IllegalArgumentException("quantile must be between 0 and 1.");
+			}
+			long values = getCount();
+			if (values == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * values));
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i].sum();
+				if (seen >= rank) {
+					long upperBound = i == 0 ? 1 : i == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+					return Math.min(upperBound, getMax());
+				}
+			}
+			return getMax();
+		}
+
+		private void export(Map<String, Long> values, String name) {
+			values.put(name + ".count", getCount());
+			values.put(name + ".mean", getMean());
+			values.put(name + ".p50", getQuantile(0.5));
+			values.put(name + ".p99", getQuantile(0.99));
+			values.put(name + ".max", getMax());
+		}
+	}
+
+	private final long startNanos = System.nanoTime();
+
+	private final LongAdder directories = new LongAdder();
+	private final LongAdder files = new LongAdder();
+	private final LongAdder statCalls = new LongAdder();
+	private final LongAdder unreadableFolders = new LongAdder();
+	private final LongAdder failedFiles = new LongAdder();
+	private final LongAdder duplicateGroups = new LongAdder();
+	private final LongAdder duplicateFiles = new LongAdder();
+	private final LongAdder[] bytesRead = adders(Phase.values().length);
+	private final LongAdder[] eliminated = adders(Stage.values().length);
+	private final Histogram sizeGroups = new Histogram();
+	private final Histogram taskWait = new Histogram();
+	private final Histogram taskRun = new Histogram();
+	private final AtomicLong queueDepth = new AtomicLong();
+	private final AtomicLong maxQueueDepth = new AtomicLong();
+	private final AtomicLong openReaders = new AtomicLong();
+	private final AtomicLong maxOpenReaders = new AtomicLong();
+
+	private static LongAdder[] adders(int count) {
+		LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	private static void raise(AtomicLong maximum, long value) {
+		if (value > maximum.get()) {
+			maximum.accumulateAndGet(value, Math::max);
+		}
+	}
+
+	void directoryVisited() {
+		directories.increment();
+	}
+
+	void fileVisited() {
+		files.increment();
+	}
+
+	void statCall() {
+		statCalls.increment();
+	}
+
+	void unreadableFolder() {
+		unreadableFolders.increment();
+	}
+
+	void failedFile() {
+		failedFiles.increment();
+	}
+
+	void duplicateGroup(int size) {
+		duplicateGroups.increment();
+		duplicateFiles.add(size);
+	}
+
+	void sizeGroup(int size) {
+		sizeGroups.record(size);
+	}
+
+	void bytesRead(Phase phase, long bytes) {
+		bytesRead[phase.ordinal()].add(bytes);
+	}
+
+	void eliminated(Stage stage) {
+		eliminated[stage.ordinal()].increment();
+	}
+
+	/**
+	 * Erfasst eine neu eingereihte Aufgabe.
+	 *
+	 * @return Zeitpunkt der Einreihung
+	 */
+	long taskQueued() {
+		raise(maxQueueDepth, queueDepth.incrementAndGet());
+		return System.nanoTime();
+	}
+
+	/**
+	 * Erfasst den Start einer Aufgabe und deren Wartezeit.
+	 *
+	 * @param queuedNanos
+	 *            Zeitpunkt der Einreihung
+	 * @return Zeitpunkt des Starts
+	 */
+	long taskStarted(long queuedNanos) {
+		queueDepth.decrementAndGet();
+		long now = System.nanoTime();
+		taskWait.record((now - queuedNanos) / 1000);
+		return now;
+	}
+
+	/**
+	 * Erfasst das Ende einer Aufgabe und deren Laufzeit.
+	 *
+	 * @param startedNanos
+	 *            Zeitpunkt des Starts
+	 */
+	void taskFinished(long startedNanos) {
+		taskRun.record((System.nanoTime() - startedNanos) / 1000);
+	}
+
+	void readerOpened() {
+		raise(maxOpenReaders, openReaders.incrementAndGet());
+	}
+
+	void readerClosed() {
+		openReaders.decrementAndGet();
+	}
+
+	/**
+	 * @return Anzahl durchsuchter Verzeichnisse
+	 */
+	public long getDirectories() {
+		return directories.sum();
+	}
+
+	/**
+	 * @return Anzahl gefundener Dateien einschließlich Verknüpfungen
+	 */
+	public long getFiles() {
+		return files.sum();
+	}
+
+	/**
+	 * @return Anzahl gelesener Dateiattribute
+	 */
+	public long getStatCalls() {
+		return statCalls.sum();
+	}
+
+	/**
+	 * @return Anzahl nicht lesbarer Verzeichnisse
+	 */
+	public long getUnreadableFolders() {
+		return unreadableFolders.sum();
+	}
+
+	/**
+	 * @return Anzahl nicht lesbarer Dateien
+	 */
+	public long getFailedFiles() {
+		return failedFiles.sum();
+	}
+
+	/**
+	 * @return Anzahl gemeldeter Dublettengruppen
+	 */
+	public long getDuplicateGroups() {
+		return duplicateGroups.sum();
+	}
+
+	/**
+	 * @return Anzahl der Dateien aller gemeldeten Dublettengruppen
+	 */
+	public long getDuplicateFiles() {
+		return duplicateFiles.sum();
+	}
+
+	/**
+	 * @param phase
+	 *            Abschnitt der Suche
+	 * @return im Abschnitt gelesene Bytes
+	 */
+	public long getBytesRead(Phase phase) {
+		return bytesRead[phase.ordinal()].sum();
+	}
+
+	/**
+	 * @param stage
+	 *            Stufe der Suche
+	 * @return Anzahl der in der Stufe aussortierten Dateien
+	 */
+	public long getEliminated(Stage stage) {
+		return eliminated[stage.ordinal()].sum();
+	}
+
+	/**
+	 * @return Verteilung der Dateianzahl je Gruppe gleich großer Dateien mit
+	 *         mindestens zwei Dateien
+	 */
+	public Histogram getSizeGroups() {
+		return sizeGroups;
+	}
+
+	/**
+	 * @return Verteilung der Wartezeit von Aufgaben bis zu ihrem Start in
+	 *         Mikrosekunden
+	 */
+	public Histogram getTaskWait() {
+		return taskWait;
+	}
+
+	/**
+	 * @return Verteilung der Laufzeit von Aufgaben in Mikrosekunden
+	 */
+	public Histogram getTaskRun() {
+		return taskRun;
+	}
+
+	/**
+	 * @return Anzahl eingereihter, noch nicht gestarteter Aufgaben
+	 */
+	public long getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * @return höchste Anzahl gleichzeitig eingereihter Aufgaben
+	 */
+	public long getMaxQueueDepth() {
+		return maxQueueDepth.get();
+	}
+
+	/**
+	 * @return Anzahl derzeit geöffneter Dateien des Inhaltsvergleichs
+	 */
+	public long getOpenReaders() {
+		return openReaders.get();
+	}
+
+	/**
+	 * @return höchste Anzahl gleichzeitig geöffneter Dateien des
+	 *         Inhaltsvergleichs
+	 */
+	public long getMaxOpenReaders() {
+		return maxOpenReaders.get();
+	}
+
+	/**
+	 * @return seit Erzeugung der Kennzahlen vergangene Millisekunden
+	 */
+	public long getElapsedMillis() {
+		return (System.nanoTime() - startNanos) / 1000000;
+	}
+
+	/**
+	 * Liefert alle Kennzahlen unter festen Namen, etwa zur Übergabe an ein
+	 * Überwachungssystem. Die Reihenfolge der Namen ist stabil.
+	 *
+	 * @return Momentaufnahme der Kennzahlen
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> values = new LinkedHashMap<>();
+		values.put("elapsedMillis", getElapsedMillis());
+		values.put("directories", getDirectories());
+		values.put("files", getFiles());
+		values.put("statCalls", getStatCalls());
+		values.put("unreadableFolders", getUnreadableFolders());
+		values.put("failedFiles", getFailedFiles());
+		sizeGroups.export(values, "sizeGroups");
+		for (Phase phase : Phase.values()) {
+			values.put("bytesRead." + phase.name().toLowerCase(Locale.ROOT), getBytesRead(phase));
+		}
+		for (Stage stage : Stage.values()) {
+			values.put("eliminated." + stage.name().toLowerCase(Locale.ROOT), getEliminated(stage));
+		}
+		values.put("duplicateGroups", getDuplicateGroups());
+		values.put("duplicateFiles", getDuplicateFiles());
+		values.put("queueDepth", getQueueDepth());
+		values.put("queueDepth.max", getMaxQueueDepth());
+		taskWait.export(values, "taskWaitMicros");
+		taskRun.export(values, "taskRunMicros");
+		values.put("openReaders", getOpenReaders());
+		values.put("openReaders.max", getMaxOpenReaders());
+		return values;
+	}
+
+	/**
+	 * Fasst die wichtigsten Kennzahlen in einer Zeile zusammen.
+	 *
+	 * @return Zusammenfassung für die Konsole
+	 */
+	public String summary() {
+		return String.format(Locale.ROOT,
+				"%ds: %d folders, %d files, %d stats, %d size groups, read %d KiB samples / %d KiB content,"
+						+ " eliminated %d size / %d link / %d sample / %d content, %d duplicate groups,"
+						+ " queue %d, task wait p99 %d us, open readers %d",
+				getElapsedMillis() / 1000, getDirectories(), getFiles(), getStatCalls(), sizeGroups.getCount(),
+				getBytesRead(Phase.SAMPLE) / 1024, getBytesRead(Phase.CONTENT) / 1024, getEliminated(Stage.SIZE),
+				getEliminated(Stage.LINK), getEliminated(Stage.SAMPLE), getEliminated(Stage.CONTENT),
+				getDuplicateGroups(), getQueueDepth(), taskWait.getQuantile(0.99), getOpenReaders());
+	}
+
+	@Override
+	public String toString() {
+		return summary();
+	}
+}
@@ -0,0 +1,167 @@
+package de.b0n.dir.processor;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verfolgt den Fortschritt des Inhaltsvergleichs. Sobald eine Gruppe gleich
+ * großer Dateien zum Vergleich ansteht, werden deren Bytes dem noch zu
+ * vergleichenden Umfang zugerechnet. Gelesene Bytes sowie Bytes von Dateien,
+ * die sich vor ihrem Ende als einzigartig erweisen, zählen als erledigt.
+ * Aufgaben melden ihren Fortschritt nur über Zähler ohne gegenseitige
+ * Sperren, die Werte werden von einem beliebigen Thread in eigenem Takt
+ * abgefragt.
+ */
+public final class ScanProgress {
+
+	private final LongAdder totalBytes = new LongAdder();
+	private final LongAdder totalFiles = new LongAdder();
+	private final LongAdder comparedBytes = new LongAdder();
+	private final LongAdder skippedBytes = new LongAdder();
+	private final LongAdder resolvedFiles = new LongAdder();
+	/**
+	 * Beginn des Inhaltsvergleichs oder 0, solange keine Gruppe ansteht
+	 */
+	private final AtomicLong startNanos = new AtomicLong();
+
+	/**
+	 * Rechnet eine Gruppe dem zu vergleichenden Umfang zu.
+	 *
+	 * @param bytes
+	 *            Größe aller Dateien der Gruppe
+	 * @param files
+	 *            Anzahl der Dateien der Gruppe
+	 */
+	void addPending(long bytes, int files) {
+		if (startNanos.get() == 0) {
+			startNanos.compareAndSet(0, System.nanoTime());
+		}
+		totalBytes.add(bytes);
+		totalFiles.add(files);
+	}
+
+	void compared(long bytes) {
+		comparedBytes.add(bytes);
+	}
+
+	void skipped(long bytes) {
+		if (bytes > 0) {
+			skippedBytes.add(bytes);
+		}
+	}
+
+	void resolved(int files) {
+		resolvedFiles.add(files);
+	}
+
+	/**
+	 * @return Größe aller bisher zum Vergleich angemeldeten Dateien
+	 */
+	public long getTotalBytes() {
+		return totalBytes.sum();
+	}
+
+	/**
+	 * @return Anzahl aller bisher zum Vergleich angemeldeten Dateien
+	 */
+	public long getTotalFiles() {
+		return totalFiles.sum();
+	}
+
+	/**
+	 * @return beim Vergleich gelesene Bytes
+	 */
+	public long getComparedBytes() {
+		return comparedBytes.sum();
+	}
+
+	/**
+	 * @return Bytes, welche nach dem Ausscheiden ihrer Dateien nicht mehr
+	 *         gelesen werden müssen
+	 */
+	public long getSkippedBytes() {
+		return skippedBytes.sum();
+	}
+
+	/**
+	 * @return Anzahl der Dateien, welche als einzigartig, fehlerhaft oder als
+	 *         Dublette feststehen
+	 */
+	public long getResolvedFiles() {
+		return resolvedFiles.sum();
+	}
+
+	/**
+	 * @return noch zu vergleichende Bytes
+	 */
+	public long getRemainingBytes() {
+		return Math.max(0, getTotalBytes() - getComparedBytes() - getSkippedBytes());
+	}
+
+	/**
+	 * @return erledigter Anteil zwischen 0 und 1, 0 solange keine Gruppe
+	 *         ansteht
+	 */
+	public double getFraction() {
+		long total = getTotalBytes();
+		return total == 0 ? 0 : Math.min(1, (double) (total - getRemainingBytes()) / total);
+	}
+
+	/**
+	 * @return seit Beginn des Inhaltsvergleichs erledigte Bytes je Sekunde
+	 */
+	public long getBytesPerSecond() {
+		long start = startNanos.get();
+		long elapsed = System.nanoTime() - start;
+		if (start == 0 || elapsed <= 0) {
+			return 0;
+		}
+		return (long) ((getTotalBytes() - getRemainingBytes()) * 1e9 / elapsed);
+	}
+
+	/**
+	 * Schätzt die verbleibende Zeit anhand des bisherigen Durchsatzes. Noch
+	 * nicht angemeldete Gruppen sind darin nicht enthalten.
+	 *
+	 * @return verbleibende Millisekunden oder -1, solange kein Durchsatz
+	 *         bekannt ist
+	 */
+	public long getEtaMillis() {
+		long rate = getBytesPerSecond();
+		if (rate == 0) {
+			return -1;
+		}
+		return getRemainingBytes() * 1000 / rate;
+	}
+
+	/**
+	 * Fasst den Fortschritt in einer Zeile zusammen.
+	 *
+	 * @return Zusammenfassung für die Konsole
+	 */
+	public String summary() {
+		if (getTotalFiles() == 0) {
+			return "searching for candidates";
+		}
+		long eta = getEtaMillis();
+		return String.format(Locale.ROOT, "%.1f%% of %s, %d of %d files resolved, %s/s, ETA %s",
+				getFraction() * 100, bytes(getTotalBytes()), getResolvedFiles(), getTotalFiles(),
+				bytes(getBytesPerSecond()),
+				eta < 0 ? "unknown" : String.format(Locale.ROOT, "%d:%02d:%02d", eta / 3600000, eta / 60000 % 60,
+						eta / 1000 % 60));
+	}
+
+	private static String bytes(long bytes) {
+		if (bytes < 1024) {
+			return bytes + " B";
+		}
+		int unit = (Long.SIZE - 1 - Long.numberOfLeadingZeros(bytes)) / 10;
+		return String.format(Locale.ROOT, "%.1f %ciB", bytes / (double) (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
+	}
+
+	@Override
+	public String toString() {
+		return summary();
+	}
+}
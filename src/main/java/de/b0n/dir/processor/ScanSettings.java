@@ -0,0 +1,635 @@
+package de.b0n.dir.processor;
+
+/**
+ * Bündelt die Einstellungen der Dublettensuche. Nicht explizit gesetzte Werte
+ * sind mit Standardwerten belegt, sodass eine neue Instanz direkt verwendet
+ * werden kann.
+ */
+public class ScanSettings {
+	/**
+	 * Art der Threads, auf denen eine ScanEngine ihre Aufgaben ausführt
+	 */
+	public enum ThreadType {
+		/**
+		 * Work-Stealing-Pool, dessen Threads sich die Aufgaben gegenseitig
+		 * abnehmen. Geeignet, solange die Parallelität etwa der Anzahl der
+		 * Prozessoren entspricht.
+		 */
+		WORK_STEALING,
+		/**
+		 * Pool mit fester Anzahl gewöhnlicher Threads. Geeignet für eine hohe
+		 * Parallelität, um etwa langsame Netzlaufwerke mit vielen gleichzeitigen
+		 * Anfragen auszulasten.
+		 */
+		PLATFORM,
+		/**
+		 * Ein virtueller Thread je Aufgabe, sodass blockierende Verzeichnis- und
+		 * Dateizugriffe keine Threads des Betriebssystems belegen. Die Anzahl
+		 * gleichzeitig laufender Aufgaben je durchsuchtem Verzeichnis wird über
+		 * maxTasksPerRoot begrenzt. Erfordert Java 21 oder neuer.
+		 */
+		VIRTUAL
+	}
+
+	/**
+	 * Standardgröße eines Vergleichsblocks: 64 KiB
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+	/**
+	 * Standardobergrenze gleichzeitig geöffneter Dateien
+	 */
+	public static final int DEFAULT_MAX_OPEN_FILES = 512;
+	/**
+	 * Standardgröße, ab der Dateien über abgebildete Fenster verglichen werden:
+	 * 64 MiB
+	 */
+	public static final long DEFAULT_MAPPED_THRESHOLD = 64L * 1024 * 1024;
+	/**
+	 * Standardgröße eines abgebildeten Fensters: 16 MiB
+	 */
+	public static final int DEFAULT_MAPPED_WINDOW_SIZE = 16 * 1024 * 1024;
+	/**
+	 * Standardgröße einer Stichprobe der Vorauswahl: 4 KiB
+	 */
+	public static final int DEFAULT_SAMPLE_SIZE = 4 * 1024;
+	/**
+	 * Standardart der Threads
+	 */
+	public static final ThreadType DEFAULT_THREAD_TYPE = ThreadType.WORK_STEALING;
+	/**
+	 * Standardobergrenze gleichzeitig laufender Aufgaben je durchsuchtem
+	 * Verzeichnis auf virtuellen Threads
+	 */
+	public static final int DEFAULT_MAX_TASKS_PER_ROOT = 256;
+	/**
+	 * Standardobergrenze gleichzeitiger Lesezugriffe des Inhaltsvergleichs je
+	 * nicht rotierendem oder unbekanntem Gerät
+	 */
+	public static final int DEFAULT_MAX_READS_PER_DEVICE = 16;
+	/**
+	 * Standardobergrenze gleichzeitiger Lesezugriffe des Inhaltsvergleichs je
+	 * rotierender Festplatte
+	 */
+	public static final int DEFAULT_MAX_READS_PER_ROTATIONAL_DEVICE = 1;
+	/**
+	 * Standardgröße, ab der Dateien in parallel gelesenen Bereichen verglichen
+	 * werden: 1 GiB
+	 */
+	public static final long DEFAULT_RANGE_THRESHOLD = 1024L * 1024 * 1024;
+	/**
+	 * Standardgröße eines parallel gelesenen Bereichs: 64 MiB
+	 */
+	public static final int DEFAULT_RANGE_SIZE = 64 * 1024 * 1024;
+
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+	private int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+	private long mappedThreshold = DEFAULT_MAPPED_THRESHOLD;
+	private int mappedWindowSize = DEFAULT_MAPPED_WINDOW_SIZE;
+	private int sampleSize = DEFAULT_SAMPLE_SIZE;
+	private boolean sampleMiddle;
+	private HashIndex hashIndex;
+	private ContentDigest contentDigest;
+	private boolean verifyContent;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private ThreadType threadType = DEFAULT_THREAD_TYPE;
+	private int maxTasksPerRoot = DEFAULT_MAX_TASKS_PER_ROOT;
+	private int maxReadsPerDevice = DEFAULT_MAX_READS_PER_DEVICE;
+	private int maxReadsPerRotationalDevice = DEFAULT_MAX_READS_PER_ROTATIONAL_DEVICE;
+	private long rangeThreshold = DEFAULT_RANGE_THRESHOLD;
+	private int rangeSize = DEFAULT_RANGE_SIZE;
+	private ScanMetrics metrics;
+	private ScanBudget budget;
+	private ScanProgress progress;
+	private ScanFilter filter;
+
+	/**
+	 * Liefert die maximale Anzahl Bytes, welche je Datei und Vergleichsrunde
+	 * gelesen werden.
+	 *
+	 * @return Blockgröße in Bytes
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Setzt die maximale Anzahl Bytes, welche je Datei und Vergleichsrunde
+	 * gelesen werden.
+	 *
+	 * @param blockSize
+	 *            Blockgröße in Bytes, mindestens 1
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setBlockSize(int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("blockSize must be positive.");
+		}
+		this.blockSize = blockSize;
+		return this;
+	}
+
+	/**
+	 * Liefert die Obergrenze der während der Inhaltsanalyse gleichzeitig
+	 * geöffneten Dateien.
+	 *
+	 * @return maximale Anzahl geöffneter Dateien
+	 */
+	public int getMaxOpenFiles() {
+		return maxOpenFiles;
+	}
+
+	/**
+	 * Setzt die Obergrenze der während der Inhaltsanalyse gleichzeitig
+	 * geöffneten Dateien. Wirkt nur auf danach erzeugte ScanEngines.
+	 *
+	 * @param maxOpenFiles
+	 *            maximale Anzahl geöffneter Dateien, mindestens 1
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setMaxOpenFiles(int maxOpenFiles) {
+		if (maxOpenFiles < 1) {
+			throw new IllegalArgumentException("maxOpenFiles must be positive.");
+		}
+		this.maxOpenFiles = maxOpenFiles;
+		return this;
+	}
+
+	/**
+	 * Liefert die Dateigröße, ab der Dateien über in den Speicher abgebildete
+	 * Fenster statt über einen Lesepuffer verglichen werden.
+	 *
+	 * @return Schwellwert in Bytes
+	 */
+	public long getMappedThreshold() {
+		return mappedThreshold;
+	}
+
+	/**
+	 * Setzt die Dateigröße, ab der Dateien über in den Speicher abgebildete
+	 * Fenster statt über einen Lesepuffer verglichen werden. Long.MAX_VALUE
+	 * schaltet das Abbilden ab. Abgebildete Dateien dürfen während der Analyse
+	 * nicht verkürzt werden. Höchstens so viele Dateien wie gleichzeitig
+	 * geöffnet sein dürfen halten ein Fenster, alle weiteren werden über den
+	 * Lesepuffer gelesen. Nicht mehr benötigte Fenster gibt erst die Garbage
+	 * Collection frei, bis dahin belegen sie weiterhin Adressraum.
+	 *
+	 * @param mappedThreshold
+	 *            Schwellwert in Bytes, nicht negativ
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setMappedThreshold(long mappedThreshold) {
+		if (mappedThreshold < 0) {
+			throw new IllegalArgumentException("mappedThreshold may not be negative.");
+		}
+		this.mappedThreshold = mappedThreshold;
+		return this;
+	}
+
+	/**
+	 * Liefert die Größe des Fensters, welches je Datei gleichzeitig in den
+	 * Speicher abgebildet wird.
+	 *
+	 * @return Fenstergröße in Bytes
+	 */
+	public int getMappedWindowSize() {
+		return mappedWindowSize;
+	}
+
+	/**
+	 * Setzt die Größe des Fensters, welches je Datei gleichzeitig in den Speicher
+	 * abgebildet wird. Das Fenster wird über die Datei geschoben, sodass auch
+	 * sehr große Dateien nur begrenzten Adressraum belegen.
+	 *
+	 * @param mappedWindowSize
+	 *            Fenstergröße in Bytes, mindestens 1
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setMappedWindowSize(int mappedWindowSize) {
+		if (mappedWindowSize < 1) {
+			throw new IllegalArgumentException("mappedWindowSize must be positive.");
+		}
+		this.mappedWindowSize = mappedWindowSize;
+		return this;
+	}
+
+	/**
+	 * Liefert die Größe der Stichproben, welche der DuplicateSampleFinder je
+	 * Datei vom Anfang, vom Ende und optional aus der Mitte liest.
+	 *
+	 * @return Stichprobengröße in Bytes
+	 */
+	public int getSampleSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * Setzt die Größe der Stichproben, welche der DuplicateSampleFinder je Datei
+	 * vom Anfang, vom Ende und optional aus der Mitte liest.
+	 *
+	 * @param sampleSize
+	 *            Stichprobengröße in Bytes, mindestens 1
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setSampleSize(int sampleSize) {
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("sampleSize must be positive.");
+		}
+		this.sampleSize = sampleSize;
+		return this;
+	}
+
+	/**
+	 * Liefert, ob zusätzlich eine Stichprobe aus der Mitte der Dateien gelesen
+	 * wird.
+	 *
+	 * @return true, falls die Mitte mit untersucht wird
+	 */
+	public boolean isSampleMiddle() {
+		return sampleMiddle;
+	}
+
+	/**
+	 * Legt fest, ob zusätzlich eine Stichprobe aus der Mitte der Dateien gelesen
+	 * wird.
+	 *
+	 * @param sampleMiddle
+	 *            true, falls die Mitte mit untersucht werden soll
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setSampleMiddle(boolean sampleMiddle) {
+		this.sampleMiddle = sampleMiddle;
+		return this;
+	}
+
+	/**
+	 * Liefert den persistenten Index, über den unveränderte Dateien ohne Lesen
+	 * ihres Inhalts eingeordnet werden.
+	 *
+	 * @return Index oder null, falls ohne Index gesucht wird
+	 */
+	public HashIndex getHashIndex() {
+		return hashIndex;
+	}
+
+	/**
+	 * Setzt den persistenten Index, über den unveränderte Dateien ohne Lesen
+	 * ihres Inhalts eingeordnet werden. Stehen alle Dateien einer Gruppe
+	 * unverändert im Index, so vergleicht der DuplicateContentFinder sie
+	 * anhand der dort abgelegten Prüfsummen. Andere Gruppen werden wie ohne
+	 * Index verglichen, vollständig gelesene Dateien legen dabei ihre
+	 * Prüfsumme im Index ab.
+	 *
+	 * @param hashIndex
+	 *            Index oder null, um ohne Index zu suchen
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setHashIndex(HashIndex hashIndex) {
+		this.hashIndex = hashIndex;
+		return this;
+	}
+
+	/**
+	 * Liefert den Algorithmus, über dessen Prüfsummen die Dateien verglichen
+	 * werden.
+	 *
+	 * @return Algorithmus oder null, falls blockweise verglichen wird
+	 */
+	public ContentDigest getContentDigest() {
+		return contentDigest;
+	}
+
+	/**
+	 * Setzt den Algorithmus, über dessen Prüfsummen die Dateien verglichen
+	 * werden. Jede Datei wird dann genau einmal gelesen und nach ihrer
+	 * Prüfsumme gruppiert, statt alle Dateien einer Gruppe gleichzeitig
+	 * blockweise zu lesen. Der Algorithmus gilt auch für die Bereiche sehr
+	 * großer Dateien. Mit HashIndex werden die im Index abgelegten Prüfsummen
+	 * zusätzlich über SHA-256 gebildet, sehr große Dateien werden dann nicht
+	 * in Bereichen verglichen.
+	 *
+	 * @param contentDigest
+	 *            Algorithmus, etwa ContentDigest.of("murmur3-128"), oder null
+	 *            für den blockweisen Vergleich
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setContentDigest(ContentDigest contentDigest) {
+		this.contentDigest = contentDigest;
+		return this;
+	}
+
+	/**
+	 * Liefert, ob über Prüfsummen gefundene Dubletten byteweise bestätigt
+	 * werden.
+	 *
+	 * @return true, falls bestätigt wird
+	 */
+	public boolean isVerifyContent() {
+		return verifyContent;
+	}
+
+	/**
+	 * Legt fest, ob über Prüfsummen gefundene Dubletten abschließend blockweise
+	 * verglichen werden, bevor sie gemeldet werden. Schließt Kollisionen der
+	 * Prüfsummen aus, liest jede Dublette aber ein weiteres Mal. Gilt auch für
+	 * Dateien ab dem Schwellwert von setRangeThreshold(), die stets über
+	 * Prüfsummen verglichen werden. Der blockweise Vergleich ist ohnehin exakt
+	 * und bleibt davon unberührt.
+	 *
+	 * @param verifyContent
+	 *            true, um Dubletten byteweise zu bestätigen
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setVerifyContent(boolean verifyContent) {
+		this.verifyContent = verifyContent;
+		return this;
+	}
+
+	/**
+	 * Liefert die Anzahl der Threads, mit denen eine ScanEngine gleichzeitig
+	 * arbeitet. Auf virtuellen Threads ohne Bedeutung.
+	 *
+	 * @return Parallelität, standardmäßig die Anzahl der Prozessoren
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Setzt die Anzahl der Threads, mit denen eine ScanEngine gleichzeitig
+	 * arbeitet. Wirkt nur auf danach erzeugte ScanEngines.
+	 *
+	 * @param parallelism
+	 *            Parallelität, mindestens 1
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive.");
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Liefert die Art der Threads, auf denen eine ScanEngine ihre Aufgaben
+	 * ausführt.
+	 *
+	 * @return Art der Threads
+	 */
+	public ThreadType getThreadType() {
+		return threadType;
+	}
+
+	/**
+	 * Setzt die Art der Threads, auf denen eine ScanEngine ihre Aufgaben
+	 * ausführt. Wirkt nur auf danach erzeugte ScanEngines.
+	 *
+	 * @param threadType
+	 *            Art der Threads
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setThreadType(ThreadType threadType) {
+		if (threadType == null) {
+			throw new IllegalArgumentException("threadType may not be null.");
+		}
+		this.threadType = threadType;
+		return this;
+	}
+
+	/**
+	 * Liefert die Obergrenze gleichzeitig laufender Aufgaben je durchsuchtem
+	 * Verzeichnis auf virtuellen Threads.
+	 *
+	 * @return maximale Anzahl gleichzeitig laufender Aufgaben
+	 */
+	public int getMaxTasksPerRoot() {
+		return maxTasksPerRoot;
+	}
+
+	/**
+	 * Setzt die Obergrenze gleichzeitig laufender Aufgaben je durchsuchtem
+	 * Verzeichnis auf virtuellen Threads. Begrenzt damit die gleichzeitigen
+	 * Anfragen an das Dateisystem, auf Thread-Pools begrenzt bereits deren
+	 * Parallelität.
+	 *
+	 * @param maxTasksPerRoot
+	 *            maximale Anzahl gleichzeitig laufender Aufgaben, mindestens 1
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setMaxTasksPerRoot(int maxTasksPerRoot) {
+		if (maxTasksPerRoot < 1) {
+			throw new IllegalArgumentException("maxTasksPerRoot must be positive.");
+		}
+		this.maxTasksPerRoot = maxTasksPerRoot;
+		return this;
+	}
+
+	/**
+	 * Liefert die Obergrenze gleichzeitiger Lesezugriffe des Inhaltsvergleichs
+	 * je nicht rotierendem oder unbekanntem Gerät.
+	 *
+	 * @return maximale Anzahl gleichzeitiger Lesezugriffe
+	 */
+	public int getMaxReadsPerDevice() {
+		return maxReadsPerDevice;
+	}
+
+	/**
+	 * Setzt die Obergrenze gleichzeitiger Lesezugriffe des Inhaltsvergleichs je
+	 * nicht rotierendem oder unbekanntem Gerät. SSDs erreichen ihren Durchsatz
+	 * erst mit vielen gleichzeitigen Zugriffen. Wirkt nur auf danach erzeugte
+	 * ScanEngines.
+	 *
+	 * @param maxReadsPerDevice
+	 *            maximale Anzahl gleichzeitiger Lesezugriffe, mindestens 1
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setMaxReadsPerDevice(int maxReadsPerDevice) {
+		if (maxReadsPerDevice < 1) {
+			throw new IllegalArgumentException("maxReadsPerDevice must be positive.");
+		}
+		this.maxReadsPerDevice = maxReadsPerDevice;
+		return this;
+	}
+
+	/**
+	 * Liefert die Obergrenze gleichzeitiger Lesezugriffe des Inhaltsvergleichs
+	 * je rotierender Festplatte.
+	 *
+	 * @return maximale Anzahl gleichzeitiger Lesezugriffe
+	 */
+	public int getMaxReadsPerRotationalDevice() {
+		return maxReadsPerRotationalDevice;
+	}
+
+	/**
+	 * Setzt die Obergrenze gleichzeitiger Lesezugriffe des Inhaltsvergleichs je
+	 * rotierender Festplatte. Bei einem Zugriff werden die Dateien eines Geräts
+	 * in der Reihenfolge ihrer Pfade gelesen, statt den Lesekopf zwischen
+	 * verschränkten Zugriffen springen zu lassen. Rotierende Festplatten werden
+	 * nur unter Linux erkannt. Wirkt nur auf danach erzeugte ScanEngines.
+	 *
+	 * @param maxReadsPerRotationalDevice
+	 *            maximale Anzahl gleichzeitiger Lesezugriffe, mindestens 1
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setMaxReadsPerRotationalDevice(int maxReadsPerRotationalDevice) {
+		if (maxReadsPerRotationalDevice < 1) {
+			throw new IllegalArgumentException("maxReadsPerRotationalDevice must be positive.");
+		}
+		this.maxReadsPerRotationalDevice = maxReadsPerRotationalDevice;
+		return this;
+	}
+
+	/**
+	 * Liefert die Dateigröße, ab der Dateien in parallel gelesenen Bereichen
+	 * verglichen werden.
+	 *
+	 * @return Schwellwert in Bytes
+	 */
+	public long getRangeThreshold() {
+		return rangeThreshold;
+	}
+
+	/**
+	 * Setzt die Dateigröße, ab der Dateien in Bereiche aufgeteilt werden, deren
+	 * Prüfsummen gleichzeitig auf dem Thread-Pool gebildet und der Reihe nach
+	 * verglichen werden. So lastet auch ein einzelnes großes Dublettenpaar
+	 * mehrere Kerne und ein schnelles Gerät aus. Dateien auf Geräten mit nur
+	 * einem gleichzeitigen Lesezugriff werden weiterhin blockweise verglichen.
+	 * So gefundene Dubletten gelten anhand gleicher Prüfsummen aller Bereiche
+	 * als gleich, ohne eingestellten Algorithmus über SHA-256. Exakte
+	 * Ergebnisse liefert erst setVerifyContent(true), welches jede Dublette
+	 * ein weiteres Mal blockweise liest. Long.MAX_VALUE schaltet die
+	 * Aufteilung ab.
+	 *
+	 * @param rangeThreshold
+	 *            Schwellwert in Bytes, nicht negativ
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setRangeThreshold(long rangeThreshold) {
+		if (rangeThreshold < 0) {
+			throw new IllegalArgumentException("rangeThreshold may not be negative.");
+		}
+		this.rangeThreshold = rangeThreshold;
+		return this;
+	}
+
+	/**
+	 * Liefert die Größe der parallel gelesenen Bereiche.
+	 *
+	 * @return Bereichsgröße in Bytes
+	 */
+	public int getRangeSize() {
+		return rangeSize;
+	}
+
+	/**
+	 * Setzt die Größe der parallel gelesenen Bereiche.
+	 *
+	 * @param rangeSize
+	 *            Bereichsgröße in Bytes, mindestens 1
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setRangeSize(int rangeSize) {
+		if (rangeSize < 1) {
+			throw new IllegalArgumentException("rangeSize must be positive.");
+		}
+		this.rangeSize = rangeSize;
+		return this;
+	}
+
+	/**
+	 * Liefert die Kennzahlen, in welchen die Suche ihren Verlauf erfasst.
+	 *
+	 * @return Kennzahlen oder null, falls keine erfasst werden
+	 */
+	public ScanMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Setzt die Kennzahlen, in welchen die Suche ihren Verlauf erfasst. Für
+	 * eine ScanEngine gilt der Wert bei ihrer Erzeugung, alle ihre Suchen
+	 * erfassen in dieselben Kennzahlen.
+	 *
+	 * @param metrics
+	 *            Kennzahlen oder null, um nichts zu erfassen
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setMetrics(ScanMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Liefert den Fortschritt, in welchem der Inhaltsvergleich verglichene und
+	 * noch zu vergleichende Bytes erfasst.
+	 *
+	 * @return Fortschritt oder null, falls keiner erfasst wird
+	 */
+	public ScanProgress getProgress() {
+		return progress;
+	}
+
+	/**
+	 * Setzt den Fortschritt, in welchem der Inhaltsvergleich verglichene und
+	 * noch zu vergleichende Bytes erfasst.
+	 *
+	 * @param progress
+	 *            Fortschritt oder null, um keinen zu erfassen
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setProgress(ScanProgress progress) {
+		this.progress = progress;
+		return this;
+	}
+
+	/**
+	 * Liefert den Filter, welcher beim Durchsuchen der Verzeichnisse über die
+	 * berücksichtigten Dateien und Verzeichnisse entscheidet.
+	 *
+	 * @return Filter oder null, falls alle Elemente berücksichtigt werden
+	 */
+	public ScanFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Setzt den Filter, welcher beim Durchsuchen der Verzeichnisse über die
+	 * berücksichtigten Dateien und Verzeichnisse entscheidet.
+	 *
+	 * @param filter
+	 *            Filter oder null, um alle Elemente zu berücksichtigen
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setFilter(ScanFilter filter) {
+		this.filter = filter;
+		return this;
+	}
+
+	/**
+	 * Liefert das Budget, nach dessen Erschöpfung die Suche vorzeitig endet.
+	 *
+	 * @return Budget oder null, falls die Suche vollständig läuft
+	 */
+	public ScanBudget getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Setzt das Budget, nach dessen Erschöpfung die Suche vorzeitig endet.
+	 * Bereits bestätigte Dubletten bleiben gemeldet, offene Gruppen werden als
+	 * unaufgelöst gemeldet. Das Budget gilt für alle Suchen, die mit diesen
+	 * Einstellungen gestartet werden, und sollte daher je Suche neu gesetzt
+	 * werden.
+	 *
+	 * @param budget
+	 *            Budget oder null für eine vollständige Suche
+	 * @return diese Einstellungen
+	 */
+	public ScanSettings setBudget(ScanBudget budget) {
+		this.budget = budget;
+		return this;
+	}
+}
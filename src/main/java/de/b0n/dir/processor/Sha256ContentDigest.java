@@ -0,0 +1,45 @@
+package de.b0n.dir.processor;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Kryptografische Prüfsumme SHA-256 über MessageDigest. Wird auch für den
+ * HashIndex genutzt, dessen Einträge daher unabhängig vom gewählten
+ * Algorithmus stets SHA-256 enthalten.
+ */
+public class Sha256ContentDigest implements ContentDigest {
+
+	/**
+	 * Name des Algorithmus
+	 */
+	public static final String NAME = "sha-256";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public Hasher newHasher() {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(HashIndex.DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Every Java platform has to support " + HashIndex.DIGEST_ALGORITHM, e);
+		}
+		return new Hasher() {
+
+			@Override
+			public void update(ByteBuffer block) {
+				digest.update(block.duplicate());
+			}
+
+			@Override
+			public byte[] digest() {
+				return digest.digest();
+			}
+		};
+	}
+}
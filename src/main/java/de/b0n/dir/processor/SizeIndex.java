@@ -0,0 +1,198 @@
+package de.b0n.dir.processor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Gruppiert Dateien nach ihrer Größe, ohne Größen zu boxen oder je Gruppe
+ * eigene Listen anzulegen. Die Größen liegen in einer Hashtabelle mit offener
+ * Adressierung, die Dateien einer Gruppe sind über Indizes in einer
+ * gemeinsamen Dateitabelle verkettet. Listen werden erst beim Auslesen und nur
+ * für die angeforderten Gruppen erzeugt. Nicht threadsicher, nebenläufige
+ * Aufrufer müssen sich auf dem Index synchronisieren.
+ */
+final class SizeIndex {
+
+	/**
+	 * Empfängt eine Gruppe gleich großer Dateien beim Auslesen des Index
+	 */
+	interface GroupConsumer {
+		/**
+		 * @param size
+		 *            gemeinsame Größe der Dateien
+		 * @param files
+		 *            Dateien der Gruppe in Reihenfolge ihrer Aufnahme
+		 */
+		void accept(long size, List<File> files);
+	}
+
+	private static final int EMPTY = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private long[] sizes;
+	/**
+	 * Index der zuletzt aufgenommenen Datei je Gruppe oder EMPTY für freie
+	 * Plätze
+	 */
+	private int[] lastFiles;
+	private int[] counts;
+	private int groups;
+
+	private File[] files;
+	/**
+	 * Index der zuvor aufgenommenen Datei derselben Gruppe oder EMPTY
+	 */
+	private int[] previousFiles;
+	private int fileCount;
+
+	SizeIndex() {
+		sizes = new long[INITIAL_CAPACITY];
+		lastFiles = new int[INITIAL_CAPACITY];
+		Arrays.fill(lastFiles, EMPTY);
+		counts = new int[INITIAL_CAPACITY];
+		files = new File[INITIAL_CAPACITY];
+		previousFiles = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Nimmt die Datei in die Gruppe ihrer Größe auf.
+	 *
+	 * @param size
+	 *            Größe der Datei
+	 * @param file
+	 *            aufzunehmende Datei
+	 * @return Anzahl der Dateien in der Gruppe einschließlich der neuen Datei
+	 */
+	int add(long size, File file) {
+		if (fileCount == files.length) {
+			int capacity = Math.max(files.length + (files.length >> 1), files.length + 1);
+			files = Arrays.copyOf(files, capacity);
+			previousFiles = Arrays.copyOf(previousFiles, capacity);
+		}
+		if ((groups + 1) * 4 > sizes.length * 3) {
+			rehash(sizes.length * 2);
+		}
+
+		int slot = slot(size);
+		if (lastFiles[slot] == EMPTY) {
+			sizes[slot] = size;
+			groups++;
+		}
+		files[fileCount] = file;
+		previousFiles[fileCount] = lastFiles[slot];
+		lastFiles[slot] = fileCount++;
+		return ++counts[slot];
+	}
+
+	/**
+	 * Liefert die zuerst aufgenommene Datei der übergebenen Größe.
+	 *
+	 * @param size
+	 *            Größe der Gruppe
+	 * @return erste Datei der Gruppe oder null, falls keine Datei dieser Größe
+	 *         aufgenommen wurde
+	 */
+	File first(long size) {
+		int fileIndex = lastFiles[slot(size)];
+		if (fileIndex == EMPTY) {
+			return null;
+		}
+		while (previousFiles[fileIndex] != EMPTY) {
+			fileIndex = previousFiles[fileIndex];
+		}
+		return files[fileIndex];
+	}
+
+	/**
+	 * Liefert die Anzahl unterschiedlicher Größen.
+	 *
+	 * @return Anzahl der Gruppen
+	 */
+	int groups() {
+		return groups;
+	}
+
+	/**
+	 * Liefert die Anzahl aller aufgenommenen Dateien.
+	 *
+	 * @return Anzahl der Dateien
+	 */
+	int files() {
+		return fileCount;
+	}
+
+	/**
+	 * Übergibt alle Gruppen ab der angegebenen Mindestgröße. Für kleinere
+	 * Gruppen, etwa Dateien mit einzigartiger Größe, werden keine Listen
+	 * erzeugt.
+	 *
+	 * @param minimumCount
+	 *            Mindestanzahl Dateien einer übergebenen Gruppe
+	 * @param consumer
+	 *            Empfänger der Gruppen
+	 */
+	void forEachGroup(int minimumCount, GroupConsumer consumer) {
+		for (int slot = 0; slot < sizes.length; slot++) {
+			if (lastFiles[slot] == EMPTY || counts[slot] < minimumCount) {
+				continue;
+			}
+
+			File[] group = new File[counts[slot]];
+			int position = group.length;
+			for (int fileIndex = lastFiles[slot]; fileIndex != EMPTY; fileIndex = previousFiles[fileIndex]) {
+				group[--position] = files[fileIndex];
+			}
+			consumer.accept(sizes[slot], new ArrayList<>(Arrays.asList(group)));
+		}
+	}
+
+	/**
+	 * Sucht den Platz der Größe in der Hashtabelle durch lineares Sondieren.
+	 *
+	 * @param size
+	 *            gesuchte Größe
+	 * @return Platz der Größe oder der freie Platz, an dem sie einzutragen ist
+	 */
+	private int slot(long size) {
+		int mask = sizes.length - 1;
+		int slot = hash(size) & mask;
+		while (lastFiles[slot] != EMPTY && sizes[slot] != size) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Verteilt auch kleine, dicht beieinander liegende Größen gleichmäßig über
+	 * die Tabelle.
+	 *
+	 * @param size
+	 *            zu streuende Größe
+	 * @return Hashwert
+	 */
+	private static int hash(long size) {
+		long hash = size * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	private void rehash(int capacity) {
+		long[] oldSizes = sizes;
+		int[] oldLastFiles = lastFiles;
+		int[] oldCounts = counts;
+
+		sizes = new long[capacity];
+		lastFiles = new int[capacity];
+		Arrays.fill(lastFiles, EMPTY);
+		counts = new int[capacity];
+		for (int oldSlot = 0; oldSlot < oldSizes.length; oldSlot++) {
+			if (oldLastFiles[oldSlot] != EMPTY) {
+				int slot = slot(oldSizes[oldSlot]);
+				sizes[slot] = oldSizes[oldSlot];
+				lastFiles[slot] = oldLastFiles[oldSlot];
+				counts[slot] = oldCounts[oldSlot];
+			}
+		}
+	}
+}
@@ -34,7 +34,24 @@ public class DupFinderConsoleTest extends de.b0n.dir.Test {
 		System.setErr(printStream);
 		DupFinderConsole.main(new String[] {});
 		assertEquals(
-				"FEHLER: Parameter <Verzeichnis> fehlt.\r\n Benutzung: DupFinder <Verzeichnis>\r\n<Verzeichnis> = Verzeichnis in dem rekursiv nach Duplikaten gesucht wird",
+				"FEHLER: Parameter <Verzeichnis> fehlt.\r\n Benutzung: DupFinder [Optionen] <Verzeichnis> [<Verzeichnis> ...]\r\n<Verzeichnis> = Verzeichnis in dem rekursiv nach Duplikaten gesucht wird, mehrere werden gemeinsam durchsucht"
+						+ "\r\nOptionen:"
+						+ "\r\n --index <Datei> = Pruefsummen unveraenderter Dateien aus dem Index uebernehmen und ihn fortschreiben"
+						+ "\r\n --compact-index <Datei> = Veraltete Eintraege aus dem Index entfernen, ohne zu suchen"
+						+ "\r\n --invalidate-index <Pfad> = Eintraege unterhalb des Pfades aus dem Index von --index entfernen, ohne zu suchen"
+						+ "\r\n --metrics <Sekunden> = Kennzahlen der Suche im angegebenen Abstand und am Ende ausgeben"
+						+ "\r\n --progress <Sekunden> = Fortschritt und Restzeit des Vergleichs im angegebenen Abstand ausgeben"
+						+ "\r\n --format <text|jsonl|csv|nul> = Format der Ausgabe, Standard ist text"
+						+ "\r\n --min-size <Bytes> = Nur Dateien ab dieser Groesse vergleichen, auch mit K, M oder G"
+						+ "\r\n --max-size <Bytes> = Nur Dateien bis zu dieser Groesse vergleichen, auch mit K, M oder G"
+						+ "\r\n --include <Muster> = Nur Dateien vergleichen, deren Name oder Pfad einem der Muster entspricht"
+						+ "\r\n --exclude <Muster> = Dateien nicht vergleichen, deren Name oder Pfad dem Muster entspricht"
+						+ "\r\n --prune <Muster> = Verzeichnisse nicht durchsuchen, deren Name oder Pfad dem Muster entspricht"
+						+ "\r\n --skip-hidden = Versteckte Dateien und Verzeichnisse ueberspringen"
+						+ "\r\n --digest <Algorithmus> = Jede Datei einmal lesen und nach Pruefsumme gruppieren, etwa murmur3-128 oder sha-256"
+						+ "\r\n --verify = Ueber Pruefsummen gefundene Dubletten byteweise bestaetigen"
+						+ "\r\n --time-limit <Sekunden> = Suche nach dieser Zeit beenden und offene Gruppen als unaufgeloest melden"
+						+ "\r\n --max-bytes <Bytes> = Suche nach so vielen gelesenen Bytes beenden, auch mit K, M oder G",
 				new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8).trim());
 	}
 
@@ -43,7 +60,24 @@ public class DupFinderConsoleTest extends de.b0n.dir.Test {
 		System.setErr(printStream);
 		DupFinderConsole.main(new String[] {PATH_FILE});
 		assertEquals(
-				"FEHLER: Parameter <Verzeichnis> ist kein Verzeichnis.\r\n Benutzung: DupFinder <Verzeichnis>\r\n<Verzeichnis> = Verzeichnis in dem rekursiv nach Duplikaten gesucht wird",
+				"FEHLER: Parameter <Verzeichnis> ist kein Verzeichnis.\r\n Benutzung: DupFinder [Optionen] <Verzeichnis> [<Verzeichnis> ...]\r\n<Verzeichnis> = Verzeichnis in dem rekursiv nach Duplikaten gesucht wird, mehrere werden gemeinsam durchsucht"
+						+ "\r\nOptionen:"
+						+ "\r\n --index <Datei> = Pruefsummen unveraenderter Dateien aus dem Index uebernehmen und ihn fortschreiben"
+						+ "\r\n --compact-index <Datei> = Veraltete Eintraege aus dem Index entfernen, ohne zu suchen"
+						+ "\r\n --invalidate-index <Pfad> = Eintraege unterhalb des Pfades aus dem Index von --index entfernen, ohne zu suchen"
+						+ "\r\n --metrics <Sekunden> = Kennzahlen der Suche im angegebenen Abstand und am Ende ausgeben"
+						+ "\r\n --progress <Sekunden> = Fortschritt und Restzeit des Vergleichs im angegebenen Abstand ausgeben"
+						+ "\r\n --format <text|jsonl|csv|nul> = Format der Ausgabe, Standard ist text"
+						+ "\r\n --min-size <Bytes> = Nur Dateien ab dieser Groesse vergleichen, auch mit K, M oder G"
+						+ "\r\n --max-size <Bytes> = Nur Dateien bis zu dieser Groesse vergleichen, auch mit K, M oder G"
+						+ "\r\n --include <Muster> = Nur Dateien vergleichen, deren Name oder Pfad einem der Muster entspricht"
+						+ "\r\n --exclude <Muster> = Dateien nicht vergleichen, deren Name oder Pfad dem Muster entspricht"
+						+ "\r\n --prune <Muster> = Verzeichnisse nicht durchsuchen, deren Name oder Pfad dem Muster entspricht"
+						+ "\r\n --skip-hidden = Versteckte Dateien und Verzeichnisse ueberspringen"
+						+ "\r\n --digest <Algorithmus> = Jede Datei einmal lesen und nach Pruefsumme gruppieren, etwa murmur3-128 oder sha-256"
+						+ "\r\n --verify = Ueber Pruefsummen gefundene Dubletten byteweise bestaetigen"
+						+ "\r\n --time-limit <Sekunden> = Suche nach dieser Zeit beenden und offene Gruppen als unaufgeloest melden"
+						+ "\r\n --max-bytes <Bytes> = Suche nach so vielen gelesenen Bytes beenden, auch mit K, M oder G",
 				new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8).trim());
 	}
 
@@ -65,5 +99,18 @@ public class DupFinderConsoleTest extends de.b0n.dir.Test {
        	List<String> lines = Arrays.asList(output.split("\\r\\n|\\n|\\r"));
        	assertListContainsLineEndingWith(lines, "Test1.txt");
        	assertListContainsLineEndingWith(lines, "Test2.txt");
+       	assertListContainsLineEndingWith(lines, "Files eliminated by sampling: 0");
+	}
+
+	@Test
+	public void testInvalidateIndex() {
+		String indexName = new File(temporaryFolder.getRoot(), "index.idx").getPath();
+		System.setOut(printStream);
+		DupFinderConsole.main(new String[] {"--index", indexName, PATH_SAME_SIZE_FILES_IN_TREE_FOLDER});
+		printStream.flush();
+		byteArrayOutputStream.reset();
+		DupFinderConsole.main(new String[] {"--index", indexName, "--invalidate-index", PATH_SAME_SIZE_FILES_IN_TREE_FOLDER});
+		String output = new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8).trim();
+		assertTrue(output, output.matches("Removed invalidated index entries: [1-9][0-9]*, remaining: 0"));
 	}
 }
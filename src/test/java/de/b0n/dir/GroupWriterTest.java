@@ -0,0 +1,108 @@
+package de.b0n.dir;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GroupWriterTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File plain;
+	private File special;
+
+	@Before
+	public void setUp() throws IOException {
+		plain = temporaryFolder.newFile("plain.txt");
+		special = temporaryFolder.newFile("quote\"comma,tab\t.txt");
+		Files.write(plain.toPath(), new byte[10]);
+		Files.write(special.toPath(), new byte[10]);
+	}
+
+	private String write(GroupWriter.Format format, List<File> files) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GroupWriter writer = new GroupWriter(out, format)) {
+			writer.write(files);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noOutputStream() {
+		new GroupWriter(null, GroupWriter.Format.TEXT);
+	}
+
+	@Test
+	public void formatByName() {
+		assertEquals(GroupWriter.Format.JSONL, GroupWriter.Format.of("jsonl"));
+		assertEquals(null, GroupWriter.Format.of("xml"));
+	}
+
+	@Test
+	public void writeJsonLines() throws IOException {
+		String folder = temporaryFolder.getRoot().getAbsolutePath().replace("\\", "\\\\");
+		assertEquals("{\"size\":10,\"count\":2,\"wasted\":10,\"files\":[\"" + folder + File.separator
+				+ "plain.txt\",\"" + folder + File.separator + "quote\\\"comma,tab\\t.txt\"]}\n",
+				write(GroupWriter.Format.JSONL, Arrays.asList(plain, special)));
+	}
+
+	@Test
+	public void writeCsv() throws IOException {
+		String folder = temporaryFolder.getRoot().getAbsolutePath();
+		assertEquals("group,size,wasted,path\n1,10,10," + folder + File.separator + "plain.txt\n1,10,10,\"" + folder
+				+ File.separator + "quote\"\"comma,tab\t.txt\"\n",
+				write(GroupWriter.Format.CSV, Arrays.asList(plain, special)));
+	}
+
+	@Test
+	public void writeNulTerminated() throws IOException {
+		String folder = temporaryFolder.getRoot().getAbsolutePath();
+		assertEquals("1\t10\t10\t" + folder + File.separator + "plain.txt\0" + "1\t10\t10\t" + folder
+				+ File.separator + "quote\"comma,tab\t.txt\0",
+				write(GroupWriter.Format.NUL, Arrays.asList(plain, special)));
+	}
+
+	@Test
+	public void groupsNeverInterleave() throws IOException {
+		List<File> group = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			group.add(plain);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GroupWriter writer = new GroupWriter(out, GroupWriter.Format.CSV)) {
+			IntStream.range(0, 2000).parallel().forEach(i -> writer.write(group));
+		}
+
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		assertEquals(1 + 2000 * 20, lines.length);
+		for (int line = 1; line < lines.length; line++) {
+			assertEquals("Zeile " + line, String.valueOf((line - 1) / 20 + 1), lines[line].split(",")[0]);
+		}
+	}
+
+	@Test
+	public void writeLinkedWithoutWasted() throws IOException {
+		String folder = temporaryFolder.getRoot().getAbsolutePath().replace("\\", "\\\\");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GroupWriter writer = new GroupWriter(out, GroupWriter.Format.JSONL)) {
+			writer.writeLinked(Arrays.asList(plain, plain));
+		}
+		assertEquals("{\"size\":10,\"count\":2,\"wasted\":0,\"linked\":true,\"files\":[\"" + folder
+				+ File.separator + "plain.txt\",\"" + folder + File.separator + "plain.txt\"]}\n",
+				new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+}
@@ -2,9 +2,29 @@ package de.b0n.dir;
 
 import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
 
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
 public class Test {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	protected File createFile(String name, byte[] content) throws IOException {
+		return createFile(temporaryFolder.getRoot(), name, content);
+	}
+
+	protected File createFile(File folder, String name, byte[] content) throws IOException {
+		Files.createDirectories(folder.toPath());
+		File file = new File(folder, name);
+		Files.write(file.toPath(), content);
+		return file;
+	}
+
 	protected void assertListContainsLineEndingWith(List<String> lines, String ending) {
 		for (String line : lines) {
 			if (line.endsWith(ending)) {
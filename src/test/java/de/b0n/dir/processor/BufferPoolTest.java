@@ -0,0 +1,55 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeRetainedBytes() {
+		new BufferPool(-1);
+	}
+
+	@Test
+	public void acquireDirectBufferOfSizeClass() {
+		ByteBuffer buffer = new BufferPool().acquire(5000);
+
+		assertTrue(buffer.isDirect());
+		assertEquals(8192, buffer.capacity());
+		assertEquals(5000, buffer.limit());
+		assertEquals(0, buffer.position());
+	}
+
+	@Test
+	public void reuseReleasedBuffer() {
+		BufferPool pool = new BufferPool();
+		ByteBuffer buffer = pool.acquire(4096);
+		buffer.put((byte) 1);
+		pool.release(buffer);
+
+		ByteBuffer reused = pool.acquire(3000);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(3000, reused.limit());
+		assertEquals(1, pool.getAllocatedBuffers());
+	}
+
+	@Test
+	public void dropBuffersBeyondLimit() {
+		BufferPool pool = new BufferPool(4096);
+		ByteBuffer first = pool.acquire(4096);
+		ByteBuffer second = pool.acquire(4096);
+		pool.release(first);
+		pool.release(second);
+
+		assertSame(first, pool.acquire(4096));
+		assertNotSame(second, pool.acquire(4096));
+		assertEquals(3, pool.getAllocatedBuffers());
+	}
+}
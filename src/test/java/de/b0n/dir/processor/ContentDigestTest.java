@@ -0,0 +1,63 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ContentDigestTest {
+
+	private static final byte[] QUICK_FOX = "The quick brown fox jumps over the lazy dog"
+			.getBytes(StandardCharsets.US_ASCII);
+
+	private static String hex(byte[] digest) {
+		return String.format("%0" + digest.length * 2 + "x", new BigInteger(1, digest));
+	}
+
+	private static byte[] digest(ContentDigest contentDigest, byte[] content, int chunk) {
+		ContentDigest.Hasher hasher = contentDigest.newHasher();
+		for (int offset = 0; offset < content.length; offset += chunk) {
+			hasher.update(ByteBuffer.wrap(content, offset, Math.min(chunk, content.length - offset)));
+		}
+		return hasher.digest();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownDigest() {
+		ContentDigest.of("md4");
+	}
+
+	@Test
+	public void findBundledDigests() {
+		assertTrue(ContentDigest.of("MURMUR3-128") instanceof Murmur3ContentDigest);
+		assertTrue(ContentDigest.of(Sha256ContentDigest.NAME) instanceof Sha256ContentDigest);
+		assertTrue(ContentDigest.names().contains(Murmur3ContentDigest.NAME));
+	}
+
+	@Test
+	public void murmur3KnownValues() {
+		ContentDigest murmur3 = new Murmur3ContentDigest();
+		assertArrayEquals(new byte[16], digest(murmur3, new byte[0], 1));
+		assertEquals("6c1b07bc7bbc4be347939ac4a93c437a", hex(digest(murmur3, QUICK_FOX, QUICK_FOX.length)));
+	}
+
+	@Test
+	public void murmur3IndependentOfBlocks() {
+		ContentDigest murmur3 = new Murmur3ContentDigest();
+		byte[] expected = digest(murmur3, QUICK_FOX, QUICK_FOX.length);
+		for (int chunk = 1; chunk < 20; chunk++) {
+			assertArrayEquals("Abschnitte der Größe " + chunk, expected, digest(murmur3, QUICK_FOX, chunk));
+		}
+	}
+
+	@Test
+	public void sha256KnownValue() {
+		assertEquals("d7a8fbb307d7809469ca9abcb0082e4f8d5651e46d3cdb762d02d0bf37c9e592",
+				hex(digest(new Sha256ContentDigest(), QUICK_FOX, 5)));
+	}
+}
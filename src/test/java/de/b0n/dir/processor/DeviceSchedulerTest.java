@@ -0,0 +1,133 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DeviceSchedulerTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final ExecutorService threadPool = new ForkJoinPool(8);
+	private final Executor executor = new Executor(threadPool, null, null, null, 8);
+
+	@After
+	public void tearDown() {
+		threadPool.shutdownNow();
+	}
+
+	private List<FileReader> createReaders(int count) throws IOException {
+		FileReaderPool pool = new FileReaderPool(count);
+		List<FileReader> readers = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			readers.add(new FileReader(temporaryFolder.newFile(String.format("file%03d.bin", i)), pool));
+		}
+		Collections.shuffle(readers);
+		return readers;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noReads() {
+		new DeviceScheduler(0, 1);
+	}
+
+	@Test
+	public void sameFolderSameDevice() throws IOException {
+		List<FileReader> readers = createReaders(2);
+		DeviceScheduler devices = new DeviceScheduler(4, 1);
+
+		DeviceScheduler.Device device = devices.deviceOf(readers.get(0));
+		assertSame(device, devices.deviceOf(readers.get(1)));
+		assertSame("Das Gerät wird am Reader vermerkt", device, readers.get(0).getDevice());
+	}
+
+	@Test
+	public void readFileWithoutReader() throws IOException {
+		File file = temporaryFolder.newFile("file.bin");
+		DeviceScheduler devices = new DeviceScheduler(1, 1);
+
+		assertEquals(file.getName(), devices.read(file, file::getName));
+	}
+
+	@Test
+	public void readSingleDeviceInPathOrder() throws IOException {
+		List<FileReader> readers = createReaders(50);
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+
+		new DeviceScheduler(1, 1).forEach(readers, executor, reader -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			order.add(reader.getFile().getName());
+			running.decrementAndGet();
+		});
+
+		assertEquals(1, maxRunning.get());
+		assertEquals(50, order.size());
+		List<String> sorted = new ArrayList<>(order);
+		Collections.sort(sorted);
+		assertEquals(sorted, order);
+	}
+
+	@Test
+	public void limitReadsPerDevice() throws IOException {
+		List<FileReader> readers = createReaders(64);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+
+		new DeviceScheduler(3, 1).forEach(readers, executor, reader -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.decrementAndGet();
+		});
+
+		assertTrue("Höchstens drei gleichzeitige Lesezugriffe, waren " + maxRunning.get(), maxRunning.get() <= 3);
+	}
+
+	@Test
+	public void compareContentOnSerialDevice() throws IOException {
+		final byte[] content = new byte[10000];
+		final File file1 = temporaryFolder.newFile("duplicate1.bin");
+		final File file2 = temporaryFolder.newFile("duplicate2.bin");
+		Files.write(file1.toPath(), content);
+		Files.write(file2.toPath(), content);
+		content[5000] = 1;
+		final File file3 = temporaryFolder.newFile("unique.bin");
+		Files.write(file3.toPath(), content);
+		final Queue<List<File>> result = new ConcurrentLinkedQueue<>();
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2, file3), new DuplicateContentFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				result.add(duplicateFiles);
+			}
+		}, new ScanSettings().setMaxReadsPerDevice(1).setMaxReadsPerRotationalDevice(1).setBlockSize(1000));
+
+		assertEquals(1, result.size());
+		assertEquals(2, result.peek().size());
+	}
+}
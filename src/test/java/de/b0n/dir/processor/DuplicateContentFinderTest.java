@@ -3,18 +3,27 @@ package de.b0n.dir.processor;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
+import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
-public class DuplicateContentFinderTest {
+import com.sun.management.ThreadMXBean;
+
+public class DuplicateContentFinderTest extends de.b0n.dir.Test {
 
 	private static final String PATH_FILE_1A = "src/test/resources/Test1.txt";
 	private static final String PATH_FILE_1B = "src/test/resources/noDuplicates/Test1.txt";
@@ -23,6 +32,14 @@ public class DuplicateContentFinderTest {
 
 	private static final DuplicateContentFinderCallback FAILING_DCF_CALLBACK = new FailingDuplicateContentFinderCallback();
 
+	private byte[] createContent(int length) {
+		byte[] content = new byte[length];
+		for (int i = 0; i < length; i++) {
+			content[i] = (byte) i;
+		}
+		return content;
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void noArguments() {
 		DuplicateContentFinder.getResult(null);
@@ -152,4 +169,312 @@ public class DuplicateContentFinderTest {
 		assertTrue(duplicateList.get(0).contains(file1));
 		assertTrue(duplicateList.get(0).contains(file2));
 	}
+
+	@Test
+	public void scanLateDifferenceWithSmallBlocks() throws IOException {
+		final List<File> uniqueFiles = new ArrayList<>();
+		final byte[] content = createContent(100);
+		final File file1 = createFile("late1.bin", content);
+		content[99]++;
+		final File file2 = createFile("late2.bin", content);
+		DuplicateContentFinderCallback callback = new FailingDuplicateContentFinderCallback() {
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				synchronized (uniqueFiles) {
+					uniqueFiles.add(uniqueFile);
+				}
+			}
+		};
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2), callback, new ScanSettings().setBlockSize(16));
+
+		assertEquals("Beide Dateien müssen als einzigartig erkannt werden", 2, uniqueFiles.size());
+		assertTrue(uniqueFiles.contains(file1));
+		assertTrue(uniqueFiles.contains(file2));
+	}
+
+	@Test
+	public void scanDuplicatesSpanningSeveralBlocks() throws IOException {
+		final List<List<File>> duplicateList = new ArrayList<>();
+		final byte[] content = createContent(100);
+		final File file1 = createFile("multi1.bin", content);
+		final File file2 = createFile("multi2.bin", content);
+		DuplicateContentFinderCallback callback = new FailingDuplicateContentFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicateList.add(duplicateFiles);
+			}
+		};
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2), callback, new ScanSettings().setBlockSize(16));
+
+		assertEquals(1, duplicateList.size());
+		assertEquals(2, duplicateList.get(0).size());
+		assertTrue(duplicateList.get(0).contains(file1));
+		assertTrue(duplicateList.get(0).contains(file2));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noArgumentSettings() {
+		DuplicateContentFinder.getResult(new ArrayList<File>(), FAILING_DCF_CALLBACK, null);
+	}
+
+	@Test
+	public void scanMappedFiles() throws IOException {
+		final List<List<File>> duplicateList = new ArrayList<>();
+		final List<File> uniqueFiles = new ArrayList<>();
+		final byte[] content = createContent(100);
+		final File file1 = createFile("mapped1.bin", content);
+		final File file2 = createFile("mapped2.bin", content);
+		content[50]++;
+		final File file3 = createFile("mapped3.bin", content);
+		DuplicateContentFinderCallback callback = new FailingDuplicateContentFinderCallback() {
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				uniqueFiles.add(uniqueFile);
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicateList.add(duplicateFiles);
+			}
+		};
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2, file3), callback,
+				new ScanSettings().setBlockSize(16).setMappedThreshold(0).setMappedWindowSize(40));
+
+		assertEquals(1, duplicateList.size());
+		assertTrue(duplicateList.get(0).contains(file1));
+		assertTrue(duplicateList.get(0).contains(file2));
+		assertEquals(Collections.singletonList(file3), uniqueFiles);
+	}
+
+	@Test
+	public void scanRangesOfLargeFiles() throws IOException {
+		final Queue<List<File>> duplicateList = new ConcurrentLinkedQueue<>();
+		final Queue<File> uniqueFiles = new ConcurrentLinkedQueue<>();
+		final byte[] content = createContent(1000);
+		final File file1 = createFile("range1.bin", content);
+		final File file2 = createFile("range2.bin", content);
+		content[999]++;
+		final File file3 = createFile("range3.bin", content);
+		content[999]--;
+		content[0]++;
+		final File file4 = createFile("range4.bin", content);
+		final ScanProgress progress = new ScanProgress();
+		DuplicateContentFinderCallback callback = new FailingDuplicateContentFinderCallback() {
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				uniqueFiles.add(uniqueFile);
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicateList.add(duplicateFiles);
+			}
+		};
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2, file3, file4), callback,
+				new ScanSettings().setRangeThreshold(0).setRangeSize(64).setBlockSize(16).setParallelism(4)
+						.setMaxReadsPerRotationalDevice(2).setProgress(progress));
+
+		assertEquals(1, duplicateList.size());
+		assertTrue(duplicateList.peek().contains(file1));
+		assertTrue(duplicateList.peek().contains(file2));
+		assertEquals(2, uniqueFiles.size());
+		assertTrue(uniqueFiles.contains(file3));
+		assertTrue(uniqueFiles.contains(file4));
+		assertEquals("Nach dem ersten abweichenden Bereich wird nicht weiter gelesen", 3064,
+				progress.getComparedBytes());
+		assertEquals(0, progress.getRemainingBytes());
+	}
+
+	private static long allocatedBytes(ThreadMXBean threads) {
+		long sum = 0;
+		for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			sum += Math.max(0, allocated);
+		}
+		return sum;
+	}
+
+	@Test
+	public void compareDuplicatesWithoutAllocating() throws IOException {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof ThreadMXBean);
+		ThreadMXBean threads = (ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		final int blockSize = 4 * 1024;
+		final int rounds = 4096;
+		final byte[] content = new byte[blockSize * rounds];
+		new Random(7).nextBytes(content);
+		final List<File> files = Arrays.asList(createFile("alloc1.bin", content), createFile("alloc2.bin", content));
+		final Queue<List<File>> duplicateList = new ConcurrentLinkedQueue<>();
+		DuplicateContentFinderCallback callback = new DuplicateContentFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicateList.add(duplicateFiles);
+			}
+		};
+		ScanSettings settings = new ScanSettings().setBlockSize(blockSize).setMaxReadsPerRotationalDevice(2);
+		try (ScanEngine engine = new ScanEngine(settings)) {
+			for (int warmup = 0; warmup < 3; warmup++) {
+				DuplicateContentFinder.find(Collections.singletonList(files), callback, engine, null);
+			}
+			long before = allocatedBytes(threads);
+			DuplicateContentFinder.find(Collections.singletonList(files), callback, engine, null);
+			long perRound = (allocatedBytes(threads) - before) / rounds;
+			assertTrue("Je Runde angelegt: " + perRound + " Bytes", perRound < 1024);
+		}
+		assertEquals(4, duplicateList.size());
+	}
+
+	@Test
+	public void scanByContentDigest() throws IOException {
+		final Queue<List<File>> duplicateList = new ConcurrentLinkedQueue<>();
+		final Queue<File> uniqueFiles = new ConcurrentLinkedQueue<>();
+		final byte[] content = createContent(100);
+		final File file1 = createFile("digest1.bin", content);
+		final File file2 = createFile("digest2.bin", content);
+		content[99]++;
+		final File file3 = createFile("digest3.bin", content);
+		DuplicateContentFinderCallback callback = new FailingDuplicateContentFinderCallback() {
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				uniqueFiles.add(uniqueFile);
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicateList.add(duplicateFiles);
+			}
+		};
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2, file3), callback,
+				new ScanSettings().setBlockSize(16).setContentDigest(new Murmur3ContentDigest()));
+
+		assertEquals(1, duplicateList.size());
+		assertTrue(duplicateList.peek().contains(file1));
+		assertTrue(duplicateList.peek().contains(file2));
+		assertEquals(Collections.singletonList(file3), new ArrayList<>(uniqueFiles));
+	}
+
+	@Test
+	public void verifyCollidingDigests() throws IOException {
+		final byte[] content = createContent(100);
+		final File file1 = createFile("collision1.bin", content);
+		final File file2 = createFile("collision2.bin", content);
+		content[50]++;
+		final File file3 = createFile("collision3.bin", content);
+		ContentDigest colliding = new ContentDigest() {
+
+			@Override
+			public String getName() {
+				return "colliding";
+			}
+
+			@Override
+			public Hasher newHasher() {
+				return new Hasher() {
+
+					@Override
+					public void update(ByteBuffer block) {
+					}
+
+					@Override
+					public byte[] digest() {
+						return new byte[] { 42 };
+					}
+				};
+			}
+		};
+		ScanSettings settings = new ScanSettings().setBlockSize(16).setContentDigest(colliding);
+
+		Queue<List<File>> collided = new ConcurrentLinkedQueue<>();
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2, file3), new DuplicateContentFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				collided.add(duplicateFiles);
+			}
+		}, settings);
+		assertEquals("Ohne Bestätigung gilt die Prüfsumme", 3, collided.peek().size());
+
+		Queue<List<File>> verified = new ConcurrentLinkedQueue<>();
+		Queue<File> uniqueFiles = new ConcurrentLinkedQueue<>();
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2, file3), new DuplicateContentFinderCallback() {
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				uniqueFiles.add(uniqueFile);
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				verified.add(duplicateFiles);
+			}
+		}, settings.setVerifyContent(true));
+		assertEquals(1, verified.size());
+		assertEquals(2, verified.peek().size());
+		assertTrue(verified.peek().contains(file1));
+		assertTrue(verified.peek().contains(file2));
+		assertEquals(Collections.singletonList(file3), new ArrayList<>(uniqueFiles));
+	}
+	@Test
+	public void reportUnresolvedGroupAfterMaxBytes() throws IOException {
+		final Queue<List<File>> unresolvedList = new ConcurrentLinkedQueue<>();
+		final byte[] content = createContent(64 * 1024);
+		final File file1 = createFile("budget1.bin", content);
+		final File file2 = createFile("budget2.bin", content);
+		final ScanBudget budget = new ScanBudget().setMaxBytes(0);
+		DuplicateContentFinderCallback callback = new FailingDuplicateContentFinderCallback() {
+
+			@Override
+			public void unresolvedGroup(List<File> unresolvedFiles) {
+				unresolvedList.add(unresolvedFiles);
+			}
+		};
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2), callback,
+				new ScanSettings().setBlockSize(4096).setBudget(budget));
+
+		assertEquals(ScanBudget.Reason.BYTES, budget.getReason());
+		assertEquals("Nach der ersten Runde darf nicht weiter gelesen werden", 2 * 4096, budget.getReadBytes());
+		assertEquals(1, unresolvedList.size());
+		assertTrue(unresolvedList.peek().contains(file1));
+		assertTrue(unresolvedList.peek().contains(file2));
+	}
+
+	@Test
+	public void reportUnresolvedGroupByDigestAfterCancel() throws IOException {
+		final Queue<List<File>> unresolvedList = new ConcurrentLinkedQueue<>();
+		final byte[] content = createContent(100);
+		final File file1 = createFile("cancelled1.bin", content);
+		final File file2 = createFile("cancelled2.bin", content);
+		content[99]++;
+		final File file3 = createFile("cancelled3.bin", content);
+		final ScanBudget budget = new ScanBudget();
+		budget.cancel();
+		DuplicateContentFinderCallback callback = new FailingDuplicateContentFinderCallback() {
+
+			@Override
+			public void unresolvedGroup(List<File> unresolvedFiles) {
+				unresolvedList.add(unresolvedFiles);
+			}
+		};
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2, file3), callback,
+				new ScanSettings().setContentDigest(new Murmur3ContentDigest()).setBudget(budget));
+
+		assertEquals(0, budget.getReadBytes());
+		assertEquals(1, unresolvedList.size());
+		assertEquals(3, unresolvedList.peek().size());
+	}
 }
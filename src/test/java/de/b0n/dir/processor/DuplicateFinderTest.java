@@ -0,0 +1,251 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.Test;
+
+public class DuplicateFinderTest extends de.b0n.dir.Test {
+
+	private static final String PATH_SAME_SIZE_FILES_IN_TREE_FOLDER = "src/test/resources/duplicateTree";
+	private static final String PATH_FILE = "src/test/resources/Test1.txt";
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noArgumentFolder() {
+		DuplicateFinder.getResult(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noArgumentCallback() {
+		DuplicateFinder.getResult(new File("."), null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void scanFile() {
+		DuplicateFinder.getResult(new File(PATH_FILE));
+	}
+
+	@Test
+	public void scanDuplicatesInTree() {
+		final Queue<List<File>> result = DuplicateFinder.getResult(new File(PATH_SAME_SIZE_FILES_IN_TREE_FOLDER));
+		assertNotNull(result);
+		assertEquals(1, result.size());
+		assertEquals(2, result.peek().size());
+	}
+
+	@Test
+	public void reportEveryFileOnce() throws IOException {
+		final File subfolder = temporaryFolder.newFolder("subfolder");
+		final byte[] content = new byte[100];
+		createFile(temporaryFolder.getRoot(), "duplicate1.bin", content);
+		createFile(subfolder, "duplicate2.bin", content);
+		content[0] = 1;
+		createFile(subfolder, "sampleUnique.bin", content);
+		content[0] = 0;
+		content[50] = 1;
+		createFile(temporaryFolder.getRoot(), "contentUnique.bin", content);
+		createFile(subfolder, "sizeUnique.bin", new byte[10]);
+		final Queue<File> uniqueFiles = new ConcurrentLinkedQueue<>();
+		final Queue<List<File>> duplicates = new ConcurrentLinkedQueue<>();
+
+		DuplicateFinder.getResult(temporaryFolder.getRoot(), new DuplicateFinderCallback() {
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				uniqueFiles.add(uniqueFile);
+			}
+
+			@Override
+			public void failedFile(File failedFile) {
+				throw new AssertionError(failedFile);
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicates.add(duplicateFiles);
+			}
+		}, new ScanSettings().setSampleSize(10));
+
+		assertEquals(1, duplicates.size());
+		assertEquals(2, duplicates.peek().size());
+		assertEquals(3, uniqueFiles.size());
+		for (File file : uniqueFiles) {
+			assertTrue(file.getName().endsWith("Unique.bin"));
+		}
+	}
+
+	@Test
+	public void reportHardLinksWithoutContentDuplicates() throws IOException {
+		final File original = createFile(temporaryFolder.getRoot(), "original.bin", new byte[100]);
+		try {
+			Files.createLink(new File(temporaryFolder.getRoot(), "link.bin").toPath(), original.toPath());
+		} catch (UnsupportedOperationException | IOException e) {
+			assumeTrue("Harte Verknüpfungen werden nicht unterstützt", false);
+		}
+		final Queue<File> uniqueFiles = new ConcurrentLinkedQueue<>();
+		final Queue<List<File>> linked = new ConcurrentLinkedQueue<>();
+
+		DuplicateFinder.getResult(temporaryFolder.getRoot(), new DuplicateFinderCallback() {
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				uniqueFiles.add(uniqueFile);
+			}
+
+			@Override
+			public void linkedGroup(List<File> linkedFiles) {
+				linked.add(linkedFiles);
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				throw new AssertionError(duplicateFiles);
+			}
+		});
+
+		assertEquals(1, linked.size());
+		assertEquals(2, linked.peek().size());
+		assertEquals("Die zuerst gefundene Verknüpfung bleibt ohne inhaltliche Dublette", 1, uniqueFiles.size());
+	}
+
+	@Test
+	public void reportHardLinksNotAsDuplicatesByDefault() throws IOException {
+		final File original = createFile(temporaryFolder.getRoot(), "original.bin", new byte[100]);
+		try {
+			Files.createLink(new File(temporaryFolder.getRoot(), "link.bin").toPath(), original.toPath());
+		} catch (UnsupportedOperationException | IOException e) {
+			assumeTrue("Harte Verknüpfungen werden nicht unterstützt", false);
+		}
+
+		final Queue<List<File>> result = DuplicateFinder.getResult(temporaryFolder.getRoot());
+		assertTrue("Verknüpfungen belegen keinen zusätzlichen Speicher", result.isEmpty());
+	}
+
+	@Test
+	public void reportHardLinksSeparatelyFromCopies() throws IOException {
+		final File original = createFile(temporaryFolder.getRoot(), "original.bin", new byte[100]);
+		final File copy = createFile(temporaryFolder.getRoot(), "copy.bin", new byte[100]);
+		try {
+			Files.createLink(new File(temporaryFolder.getRoot(), "link.bin").toPath(), original.toPath());
+		} catch (UnsupportedOperationException | IOException e) {
+			assumeTrue("Harte Verknüpfungen werden nicht unterstützt", false);
+		}
+		final Queue<List<File>> linked = new ConcurrentLinkedQueue<>();
+		final Queue<List<File>> duplicates = new ConcurrentLinkedQueue<>();
+
+		DuplicateFinder.getResult(temporaryFolder.getRoot(), new DuplicateFinderCallback() {
+
+			@Override
+			public void linkedGroup(List<File> linkedFiles) {
+				linked.add(linkedFiles);
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicates.add(duplicateFiles);
+			}
+		});
+
+		assertEquals(1, linked.size());
+		assertEquals(1, duplicates.size());
+		assertEquals(2, duplicates.peek().size());
+		assertTrue(duplicates.peek().contains(copy));
+		assertTrue("Die Gruppen sind über die zuerst gefundene Verknüpfung verbunden",
+				duplicates.peek().contains(linked.peek().get(0)));
+	}
+
+	@Test
+	public void findDuplicatesAcrossRoots() throws IOException {
+		final File data = temporaryFolder.newFolder("data");
+		final File backup = temporaryFolder.newFolder("backup");
+		final File nested = temporaryFolder.newFolder("backup", "nested");
+		createFile(data, "original.bin", new byte[100]);
+		createFile(nested, "copy.bin", new byte[100]);
+		final Queue<List<File>> result = new ConcurrentLinkedQueue<>();
+
+		DuplicateFinder.getResult(Arrays.asList(data, backup, nested), new DuplicateFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				result.add(duplicateFiles);
+			}
+		}, new ScanSettings());
+
+		assertEquals(1, result.size());
+		assertEquals("Verschachtelte Verzeichnisse dürfen nur einmal durchsucht werden", 2, result.peek().size());
+	}
+	@Test
+	public void skipFoldersOfCancelledScan() throws IOException {
+		final byte[] content = new byte[100];
+		createFile(temporaryFolder.getRoot(), "duplicate1.bin", content);
+		createFile(temporaryFolder.getRoot(), "duplicate2.bin", content);
+		final ScanBudget budget = new ScanBudget();
+		budget.cancel();
+		final Queue<File> skippedFolders = new ConcurrentLinkedQueue<>();
+		final Queue<List<File>> duplicates = new ConcurrentLinkedQueue<>();
+
+		DuplicateFinder.getResult(temporaryFolder.getRoot(), new DuplicateFinderCallback() {
+
+			@Override
+			public void skippedFolder(File folder) {
+				skippedFolders.add(folder);
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicates.add(duplicateFiles);
+			}
+		}, new ScanSettings().setBudget(budget));
+
+		assertEquals(1, skippedFolders.size());
+		assertTrue(duplicates.isEmpty());
+	}
+	@Test
+	public void reportUnresolvedGroupsOfCancelledSampling() throws IOException {
+		final byte[] content = new byte[100];
+		createFile(temporaryFolder.getRoot(), "duplicate1.bin", content);
+		createFile(temporaryFolder.getRoot(), "duplicate2.bin", content);
+		final ScanBudget budget = new ScanBudget();
+		final ScanProgress progress = new ScanProgress();
+		final Queue<List<File>> unresolved = new ConcurrentLinkedQueue<>();
+
+		DuplicateFinder.getResult(temporaryFolder.getRoot(), new DuplicateFinderCallback() {
+
+			@Override
+			public void enteredNewFolder(File folder) {
+				budget.cancel();
+			}
+
+			@Override
+			public void unresolvedGroup(List<File> unresolvedFiles) {
+				unresolved.add(unresolvedFiles);
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				fail();
+			}
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				fail();
+			}
+		}, new ScanSettings().setBudget(budget).setProgress(progress));
+
+		assertEquals(1, unresolved.size());
+		assertEquals(2, unresolved.peek().size());
+		assertEquals(2, progress.getResolvedFiles());
+		assertEquals(0, progress.getRemainingBytes());
+	}
+}
@@ -8,7 +8,10 @@ import static org.junit.Assume.assumeTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -16,7 +19,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.function.Predicate;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class DuplicateLengthFinderTest extends de.b0n.dir.Test {
 	
@@ -34,6 +39,9 @@ public class DuplicateLengthFinderTest extends de.b0n.dir.Test {
 	private static final String PATH_FOLDER_ONLY_FOLDER = "src/test/resources/folderOnlyFolder";
 	private static final DuplicateLengthFinderCallback FAILING_DLF_CALLBACK = new FailingDuplicateLengthFinderCallback();
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@Test(expected = IllegalArgumentException.class)
 	public void noArgumentFolder() {
 		DuplicateLengthFinder.getResult(null);
@@ -200,4 +208,131 @@ public class DuplicateLengthFinderTest extends de.b0n.dir.Test {
 		assertEquals("falsche Anzahl von 26 Byte-Datei Vorkommen bestimmt", 2, elementsIterator.next().size());
 		assertEquals("falsche Anzahl von 91 Byte-Datei Vorkommen bestimmt", 6, elementsIterator.next().size());
 	}
+
+	@Test
+	public void scanSkipsDanglingLinks() throws IOException {
+		final Path root = temporaryFolder.getRoot().toPath();
+		Files.write(root.resolve("file.bin"), new byte[] { 1, 2, 3 });
+		Files.createDirectory(root.resolve("subfolder"));
+		Files.write(root.resolve("subfolder").resolve("file.bin"), new byte[] { 4, 5, 6 });
+		try {
+			Files.createSymbolicLink(root.resolve("dangling"), root.resolve("missing"));
+		} catch (UnsupportedOperationException | IOException e) {
+			assumeTrue("Symbolische Verknüpfungen werden nicht unterstützt", false);
+		}
+
+		final Map<Long, List<File>> result = DuplicateLengthFinder.getResult(root.toFile());
+		assertEquals("Verwaiste Verknüpfungen dürfen nicht als Datei erscheinen", 1, result.size());
+		assertEquals(2, result.get(Long.valueOf(3)).size());
+		for (File file : result.get(Long.valueOf(3))) {
+			assertTrue("Dateien müssen mit absolutem Pfad gemeldet werden", file.isAbsolute());
+		}
+	}
+
+	@Test
+	public void scanStopsAtSymbolicLinkLoops() throws IOException {
+		final Path root = temporaryFolder.getRoot().toPath();
+		Files.createDirectory(root.resolve("subfolder"));
+		Files.write(root.resolve("subfolder").resolve("file.bin"), new byte[] { 1, 2, 3 });
+		try {
+			Files.createSymbolicLink(root.resolve("subfolder").resolve("loop"), root);
+			Files.createSymbolicLink(root.resolve("alias"), root.resolve("subfolder"));
+		} catch (UnsupportedOperationException | IOException e) {
+			assumeTrue("Symbolische Verknüpfungen werden nicht unterstützt", false);
+		}
+		final List<File> folders = new ArrayList<>();
+
+		DuplicateLengthFinder.getResult(root.toFile(), new DuplicateLengthFinderCallback() {
+
+			@Override
+			public synchronized void enteredNewFolder(File file) {
+				folders.add(file);
+			}
+
+			@Override
+			public void addGroupedElement(Long size, File file) {
+			}
+		});
+
+		assertEquals("Jedes Verzeichnis darf nur einmal durchsucht werden", 2, folders.size());
+	}
+
+	@Test
+	public void scanOverlappingRootsOnce() throws IOException {
+		final Path root = temporaryFolder.getRoot().toPath();
+		final Path data = Files.createDirectory(root.resolve("data"));
+		final Path nested = Files.createDirectory(data.resolve("nested"));
+		final Path backup = Files.createDirectory(root.resolve("backup"));
+		Files.write(data.resolve("file.bin"), new byte[] { 1, 2, 3 });
+		Files.write(nested.resolve("file.bin"), new byte[] { 1, 2, 3 });
+		Files.write(backup.resolve("file.bin"), new byte[] { 1, 2, 3 });
+		final Path alias = root.resolve("alias");
+		try {
+			Files.createSymbolicLink(alias, backup);
+		} catch (UnsupportedOperationException | IOException e) {
+			assumeTrue("Symbolische Verknüpfungen werden nicht unterstützt", false);
+		}
+		final List<File> files = new ArrayList<>();
+
+		DuplicateLengthFinder.getResult(Arrays.asList(nested.toFile(), data.toFile(), backup.toFile(),
+				alias.toFile(), data.toFile()), new DuplicateLengthFinderCallback() {
+
+					@Override
+					public synchronized void addGroupedElement(long size, File file) {
+						files.add(file);
+					}
+				}, new ScanSettings());
+
+		assertEquals("Jede Datei darf nur einmal gefunden werden", 3, files.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void scanNoRoots() {
+		DuplicateLengthFinder.getResult(new ArrayList<File>(), FAILING_DLF_CALLBACK, new ScanSettings());
+	}
+
+	@Test
+	public void scanReportsHardLinks() throws IOException {
+		final Path root = temporaryFolder.getRoot().toPath();
+		final Path original = Files.write(root.resolve("original.bin"), new byte[] { 1, 2, 3 });
+		Files.createDirectory(root.resolve("subfolder"));
+		try {
+			Files.createLink(root.resolve("subfolder").resolve("link.bin"), original);
+		} catch (UnsupportedOperationException | IOException e) {
+			assumeTrue("Harte Verknüpfungen werden nicht unterstützt", false);
+		}
+		final List<File> groupedFiles = new ArrayList<>();
+		final List<File> linkedFiles = new ArrayList<>();
+
+		DuplicateLengthFinder.getResult(root.toFile(), new DuplicateLengthFinderCallback() {
+
+			@Override
+			public synchronized void addGroupedElement(Long size, File file) {
+				groupedFiles.add(file);
+			}
+
+			@Override
+			public synchronized void linkedElement(long size, File file, File linkedFile) {
+				linkedFiles.add(linkedFile);
+			}
+		});
+
+		assertEquals("Nur die zuerst gefundene Verknüpfung darf abgelegt werden", 1, groupedFiles.size());
+		assertEquals(1, linkedFiles.size());
+		assertEquals(groupedFiles.get(0), linkedFiles.get(0));
+	}
+
+	@Test
+	public void scanGroupsHardLinksByDefault() throws IOException {
+		final Path root = temporaryFolder.getRoot().toPath();
+		final Path original = Files.write(root.resolve("original.bin"), new byte[] { 1, 2, 3 });
+		try {
+			Files.createLink(root.resolve("link.bin"), original);
+		} catch (UnsupportedOperationException | IOException e) {
+			assumeTrue("Harte Verknüpfungen werden nicht unterstützt", false);
+		}
+
+		final Map<Long, List<File>> result = DuplicateLengthFinder.getResult(root.toFile());
+		assertEquals(2, result.get(Long.valueOf(3)).size());
+	}
 }
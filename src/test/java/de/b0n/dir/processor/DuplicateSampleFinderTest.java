@@ -0,0 +1,134 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Test;
+
+public class DuplicateSampleFinderTest extends de.b0n.dir.Test {
+
+	private static final String PATH_FILE_1A = "src/test/resources/Test1.txt";
+	private static final String PATH_FILE_1B = "src/test/resources/noDuplicates/Test1.txt";
+	private static final String PATH_INVALID_FILE = "src/test/resources/Testxxx1.txt";
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noArgumentInput() {
+		DuplicateSampleFinder.getResult(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noArgumentCallback() {
+		DuplicateSampleFinder.getResult(new ArrayList<File>(), null);
+	}
+
+	@Test
+	public void smallFilesStayTogether() {
+		final Queue<List<File>> result = DuplicateSampleFinder
+				.getResult(Arrays.asList(new File(PATH_FILE_1A), new File(PATH_FILE_1B)));
+		assertNotNull(result);
+		assertEquals("Kleine Dateien dürfen nur nach Größe eingeordnet werden", 1, result.size());
+		assertEquals(2, result.peek().size());
+	}
+
+	@Test
+	public void eliminateDifferentHeadAndTail() throws IOException {
+		final List<File> uniqueFiles = new ArrayList<>();
+		final List<List<File>> candidates = new ArrayList<>();
+		final byte[] content = new byte[100];
+		final File file1 = createFile("sample1.bin", content);
+		final File file2 = createFile("sample2.bin", content);
+		content[0] = 1;
+		final File file3 = createFile("sample3.bin", content);
+		content[0] = 0;
+		content[99] = 1;
+		final File file4 = createFile("sample4.bin", content);
+		DuplicateSampleFinderCallback callback = new DuplicateSampleFinderCallback() {
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				uniqueFiles.add(uniqueFile);
+			}
+
+			@Override
+			public void candidateGroup(List<File> group) {
+				candidates.add(group);
+			}
+		};
+
+		DuplicateSampleFinder.getResult(Arrays.asList(file1, file2, file3, file4), callback,
+				new ScanSettings().setSampleSize(10));
+
+		assertEquals("Zwei Dateien müssen ausgeschlossen werden", 2, uniqueFiles.size());
+		assertTrue(uniqueFiles.contains(file3));
+		assertTrue(uniqueFiles.contains(file4));
+		assertEquals(1, candidates.size());
+		assertTrue(candidates.get(0).containsAll(Arrays.asList(file1, file2)));
+	}
+
+	@Test
+	public void splitByMiddleSample() throws IOException {
+		final byte[] content = new byte[100];
+		final File file1 = createFile("middle1.bin", content);
+		content[50] = 1;
+		final File file2 = createFile("middle2.bin", content);
+		final List<File> input = Arrays.asList(file1, file2);
+
+		assertEquals("Ohne Mitte dürfen die Dateien nicht getrennt werden", 1,
+				collectCandidates(input, new ScanSettings().setSampleSize(10)).size());
+		assertTrue("Mit Mitte müssen die Dateien getrennt werden",
+				collectCandidates(input, new ScanSettings().setSampleSize(10).setSampleMiddle(true)).isEmpty());
+	}
+
+	@Test
+	public void reportFailingFile() {
+		final List<File> failedFiles = new ArrayList<>();
+		final File file = new File(PATH_INVALID_FILE);
+		DuplicateSampleFinder.getResult(Collections.singletonList(file), new DuplicateSampleFinderCallback() {
+
+			@Override
+			public void failedFile(File failedFile) {
+				failedFiles.add(failedFile);
+			}
+		});
+		assertEquals(Collections.singletonList(file), failedFiles);
+	}
+
+	@Test
+	public void sampleWithSingleOpenFile() throws IOException {
+		final byte[] content = new byte[100];
+		final File file1 = createFile("limit1.bin", content);
+		final File file2 = createFile("limit2.bin", content);
+		content[0] = 1;
+		final File file3 = createFile("limit3.bin", content);
+		ScanMetrics metrics = new ScanMetrics();
+
+		List<List<File>> candidates = collectCandidates(Arrays.asList(file1, file2, file3),
+				new ScanSettings().setSampleSize(10).setMaxOpenFiles(1).setMetrics(metrics));
+
+		assertEquals(1, candidates.size());
+		assertEquals("Stichproben müssen die Obergrenze geöffneter Dateien einhalten", 1,
+				metrics.getMaxOpenReaders());
+		assertEquals(0, metrics.getOpenReaders());
+	}
+
+	private List<List<File>> collectCandidates(List<File> input, ScanSettings settings) {
+		final List<List<File>> candidates = new ArrayList<>();
+		DuplicateSampleFinder.getResult(input, new DuplicateSampleFinderCallback() {
+
+			@Override
+			public void candidateGroup(List<File> group) {
+				candidates.add(group);
+			}
+		}, settings);
+		return candidates;
+	}
+}
@@ -0,0 +1,124 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExecutorTest {
+
+	private final ExecutorService threadPool = new ForkJoinPool(2);
+
+	@After
+	public void tearDown() {
+		threadPool.shutdownNow();
+	}
+
+	@Test
+	public void consolidateWithoutTasks() {
+		new Executor(threadPool).consolidate();
+	}
+
+	@Test
+	public void consolidateNestedTasks() {
+		final Executor executor = new Executor(threadPool);
+		final AtomicInteger counter = new AtomicInteger();
+		for (int i = 0; i < 100; i++) {
+			executor.submit(() -> {
+				for (int j = 0; j < 1000; j++) {
+					executor.submit(counter::incrementAndGet);
+				}
+			});
+		}
+		executor.consolidate();
+		assertEquals(100_000, counter.get());
+	}
+
+	@Test
+	public void propagateFailure() {
+		final Executor executor = new Executor(threadPool);
+		final RuntimeException failure = new RuntimeException("expected");
+		executor.submit(() -> executor.submit(() -> {
+			throw failure;
+		}));
+		try {
+			executor.consolidate();
+			fail("Der Fehler des Runnables muss weitergereicht werden");
+		} catch (IllegalStateException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void consolidateInsidePool() {
+		final Executor outer = new Executor(threadPool);
+		final AtomicInteger counter = new AtomicInteger();
+		for (int i = 0; i < 4; i++) {
+			outer.submit(() -> {
+				Executor inner = new Executor(threadPool);
+				for (int j = 0; j < 10; j++) {
+					inner.submit(counter::incrementAndGet);
+				}
+				inner.consolidate();
+			});
+		}
+		outer.consolidate();
+		assertEquals(40, counter.get());
+	}
+
+	@Test
+	public void forEachNestedOnSingleThread() {
+		ExecutorService singleThread = Executors.newFixedThreadPool(1);
+		try {
+			final Executor executor = new Executor(singleThread, null, null, null, 4);
+			final List<Integer> items = Collections.nCopies(10, 1);
+			final AtomicInteger counter = new AtomicInteger();
+			executor.submit(() -> executor.forEach(items, 4,
+					item -> executor.forEach(items, 4, inner -> counter.addAndGet(item * inner))));
+			executor.consolidate();
+			assertEquals(100, counter.get());
+		} finally {
+			singleThread.shutdownNow();
+		}
+	}
+
+	@Test
+	public void forEachWithinWidth() {
+		final Executor executor = new Executor(threadPool, null, null, null, 8);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		executor.forEach(Collections.nCopies(50, 1), 1, item -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			Thread.yield();
+			running.decrementAndGet();
+		});
+		assertEquals(1, maxRunning.get());
+	}
+
+	@Test
+	public void cancelBudgetOnInterrupt() {
+		final ScanBudget budget = new ScanBudget();
+		final Executor executor = new Executor(threadPool, null, null, budget);
+		executor.submit(() -> {
+			while (!budget.isExhausted()) {
+				Thread.yield();
+			}
+		});
+		Thread.currentThread().interrupt();
+
+		executor.consolidate();
+
+		assertTrue("Der Unterbrechungsstatus muss erhalten bleiben", Thread.interrupted());
+		assertEquals(ScanBudget.Reason.CANCELLED, budget.getReason());
+	}
+}
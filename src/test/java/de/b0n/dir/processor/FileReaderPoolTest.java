@@ -0,0 +1,81 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FileReaderPoolTest {
+
+	private static final String PATH_FILE_1A = "src/test/resources/Test1.txt";
+	private static final String PATH_FILE_1B = "src/test/resources/noDuplicates/Test1.txt";
+	private static final String PATH_FILE_2A = "src/test/resources/Test2.txt";
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noOpenFilesAllowed() {
+		new FileReaderPool(0);
+	}
+
+	@Test
+	public void evictLeastRecentlyUsedReader() {
+		final FileReaderPool pool = new FileReaderPool(1);
+		final FileReader reader1 = new FileReader(new File(PATH_FILE_1A), pool);
+		final FileReader reader2 = new FileReader(new File(PATH_FILE_1B), pool);
+
+		assertEquals(10, reader1.readBlock(10));
+		assertTrue(reader1.isOpen());
+		assertEquals(10, reader2.readBlock(10));
+		assertFalse("Der zuerst genutzte Reader muss geschlossen worden sein", reader1.isOpen());
+		assertTrue(reader2.isOpen());
+
+		assertEquals(81, reader1.readBlock(100));
+		assertEquals(81, reader2.readBlock(100));
+		assertEquals("Beide Reader müssen an ihrer Position fortsetzen", reader1.getBlock(), reader2.getBlock());
+		assertEquals(FileReader.FINISHED, reader1.readBlock(100));
+
+		reader1.clear();
+		reader2.clear();
+		assertFalse(reader2.isOpen());
+	}
+
+	@Test
+	public void scanWithSingleOpenFile() {
+		final List<File> failedFiles = new ArrayList<>();
+		final List<List<File>> duplicateList = new ArrayList<>();
+		final List<File> uniqueFiles = new ArrayList<>();
+		DuplicateContentFinderCallback callback = new FailingDuplicateContentFinderCallback() {
+
+			@Override
+			public void failedFile(File failedFile) {
+				failedFiles.add(failedFile);
+			}
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				synchronized (uniqueFiles) {
+					uniqueFiles.add(uniqueFile);
+				}
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicateList.add(duplicateFiles);
+			}
+		};
+
+		DuplicateContentFinder.getResult(
+				Arrays.asList(new File(PATH_FILE_1A), new File(PATH_FILE_1B), new File(PATH_FILE_2A)), callback,
+				new ScanSettings().setBlockSize(8).setMaxOpenFiles(1));
+
+		assertTrue("Die Obergrenze darf nicht zu Fehlern führen", failedFiles.isEmpty());
+		assertEquals(1, duplicateList.size());
+		assertEquals(2, duplicateList.get(0).size());
+		assertEquals(1, uniqueFiles.size());
+	}
+}
@@ -8,16 +8,17 @@ import static org.mockito.Mockito.*;
 import org.mockito.*;
 import org.mockito.junit.MockitoJUnitRunner;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 
 @RunWith(MockitoJUnitRunner.class)
 public class FileStreamErrorTest {
 	private final File file = new File("");
 
 	@Mock
-	private BufferedInputStream stream;
+	private SeekableByteChannel channel;
 
 	@InjectMocks
 	private FileReader fileStream = new FileReader(file);
@@ -25,17 +26,20 @@ public class FileStreamErrorTest {
 	@Test
 	public void validRead() throws IOException {
 		assertNotNull(fileStream);
-		when(stream.read()).thenReturn(66);
+		when(channel.read(any(ByteBuffer.class))).thenAnswer(invocation -> {
+			((ByteBuffer) invocation.getArguments()[0]).put((byte) 66);
+			return 1;
+		});
 		
 		assertEquals(66, fileStream.read());
 		
-		verify(stream).read();
-		verifyNoMoreInteractions(stream);
+		verify(channel).read(any(ByteBuffer.class));
+		verifyNoMoreInteractions(channel);
 	}
 
 	@Test
 	public void failedRead() throws IOException {
-		when(stream.read()).thenThrow(new IOException("No Message"));
+		when(channel.read(any(ByteBuffer.class))).thenThrow(new IOException("No Message"));
 		
 		try {
 			fileStream.read();
@@ -43,9 +47,9 @@ public class FileStreamErrorTest {
 			assertEquals("Stream of " + file.getAbsolutePath() + " could not be read: No Message", e.getMessage());
 		}
 
-		verify(stream).read();
-		verify(stream).close();
-		verifyNoMoreInteractions(stream);
+		verify(channel).read(any(ByteBuffer.class));
+		verify(channel).close();
+		verifyNoMoreInteractions(channel);
 	}
 	
 	@Test
@@ -54,13 +58,13 @@ public class FileStreamErrorTest {
 		
 		fileStream.clear();
 		
-		verify(stream).close();
-		verifyNoMoreInteractions(stream);
+		verify(channel).close();
+		verifyNoMoreInteractions(channel);
 	}
 
 	@Test
 	public void failedClose() throws IOException {
-		doThrow(new IOException("No Message")).when(stream).close();
+		doThrow(new IOException("No Message")).when(channel).close();
 		
 		try {
 			fileStream.clear();
@@ -68,7 +72,7 @@ public class FileStreamErrorTest {
 			assertEquals("Could not close Stream. Nothing to do about that, resetting FileStream.", e.getMessage());
 		}
 
-		verify(stream).close();
-		verifyNoMoreInteractions(stream);
+		verify(channel).close();
+		verifyNoMoreInteractions(channel);
 	}
 }
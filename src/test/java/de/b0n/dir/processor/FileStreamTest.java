@@ -6,6 +6,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import static org.junit.Assert.*;
 
 /**
@@ -88,4 +89,72 @@ public class FileStreamTest {
 		fileStream.clear();
 		fileStream.clear();
 	}
+
+	@Test
+	public void readBlocksWithValidFile() {
+		final FileReader fileStream = new FileReader(textFile);
+
+		assertEquals(64, fileStream.readBlock(64));
+		assertEquals(64, fileStream.getBlock().remaining());
+		assertEquals('U', fileStream.getBlock().get(0));
+		assertEquals(27, fileStream.readBlock(64));
+		assertEquals(FileReader.FINISHED, fileStream.readBlock(64));
+		assertFalse(fileStream.getBlock().hasRemaining());
+		fileStream.clear();
+	}
+
+	@Test
+	public void readBlockFromInvalidFile() {
+		final FileReader fileStream = new FileReader(new File(PATH_INVALID_FILE));
+		assertEquals(FileReader.FAILING, fileStream.readBlock(64));
+		assertNull(fileStream.getBlock());
+	}
+
+	@Test
+	public void readMappedBlocksAcrossWindows() {
+		final ScanSettings settings = new ScanSettings().setMappedThreshold(0).setMappedWindowSize(10);
+		final FileReader mappedReader = FileReader.pack(Collections.singletonList(textFile), settings, new FileReaderPool(1)).get(0);
+		final FileReader streamReader = new FileReader(textFile);
+
+		for (int i = 0; i < 5; i++) {
+			assertEquals(16, mappedReader.readBlock(16));
+			assertEquals(16, streamReader.readBlock(16));
+			assertTrue("Der Block muss aus dem abgebildeten Fenster stammen", mappedReader.getBlock().isDirect());
+			assertEquals("Der abgebildete Block muss dem gelesenen gleichen", streamReader.getBlock(),
+					mappedReader.getBlock());
+		}
+		assertEquals(11, mappedReader.readBlock(16));
+		assertEquals(11, streamReader.readBlock(16));
+		assertEquals(streamReader.getBlock(), mappedReader.getBlock());
+		assertEquals(FileReader.FINISHED, mappedReader.readBlock(16));
+		mappedReader.clear();
+		streamReader.clear();
+	}
+
+	@Test
+	public void limitMappedWindowsToPoolSize() {
+		final ScanSettings settings = new ScanSettings().setMappedThreshold(0).setMappedWindowSize(10);
+		final FileReaderPool pool = new FileReaderPool(1);
+		final FileReader firstReader = new FileReader(textFile, pool);
+		final FileReader secondReader = new FileReader(textFile, pool);
+		final FileReader mappedReader = FileReader.pack(Collections.singletonList(textFile), settings, pool).get(0);
+		final FileReader waitingReader = FileReader.pack(Collections.singletonList(textFile), settings, pool).get(0);
+		firstReader.readBlock(16);
+		secondReader.readBlock(16);
+		secondReader.readBlock(16);
+
+		assertEquals(16, mappedReader.readBlock(16));
+		assertEquals(16, waitingReader.readBlock(16));
+		assertEquals("Ohne freien Platz muss über den Puffer gelesen werden", firstReader.getBlock(),
+				waitingReader.getBlock());
+
+		mappedReader.clear();
+		assertEquals(16, waitingReader.readBlock(16));
+		assertEquals(secondReader.getBlock(), waitingReader.getBlock());
+		assertFalse("Nach Freigabe muss das Fenster abgebildet sein", pool.reserveWindow());
+		waitingReader.clear();
+		assertTrue(pool.reserveWindow());
+		firstReader.clear();
+		secondReader.clear();
+	}
 }
@@ -0,0 +1,150 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HashIndexTest extends de.b0n.dir.Test {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noArgumentIndexFile() throws IOException {
+		HashIndex.load(null);
+	}
+
+	@Test
+	public void missingIndexFileIsEmpty() throws IOException {
+		HashIndex index = HashIndex.load(temporaryFolder.getRoot().toPath().resolve("missing.idx"));
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void saveAndLoad() throws IOException {
+		Path indexFile = temporaryFolder.getRoot().toPath().resolve("index.idx");
+		File file = createFile("content.bin", new byte[] { 1, 2, 3 });
+		byte[] digest = new byte[] { 4, 5, 6 };
+
+		HashIndex index = HashIndex.load(indexFile);
+		index.putDigest(file, HashIndex.readAttributes(file.toPath()), digest);
+		index.save();
+
+		HashIndex loaded = HashIndex.load(indexFile);
+		assertEquals(1, loaded.size());
+		assertArrayEquals(digest, loaded.getDigest(file, HashIndex.readAttributes(file.toPath())));
+	}
+
+	@Test
+	public void discardCorruptIndexFile() throws IOException {
+		Path indexFile = temporaryFolder.getRoot().toPath().resolve("index.idx");
+		File file = createFile("content.bin", new byte[] { 1, 2, 3 });
+
+		HashIndex index = HashIndex.load(indexFile);
+		index.putDigest(file, HashIndex.readAttributes(file.toPath()), new byte[] { 4, 5, 6 });
+		index.save();
+		byte[] stored = Files.readAllBytes(indexFile);
+		stored[stored.length / 2] ^= 0x55;
+		Files.write(indexFile, stored);
+
+		assertEquals("Ein beschädigter Index muss verworfen werden", 0, HashIndex.load(indexFile).size());
+	}
+
+	@Test
+	public void compactRemovesStaleEntries() throws IOException {
+		File unchanged = createFile("unchanged.bin", new byte[] { 1 });
+		File changed = createFile("changed.bin", new byte[] { 2 });
+		File deleted = createFile("deleted.bin", new byte[] { 3 });
+
+		HashIndex index = HashIndex.load(temporaryFolder.getRoot().toPath().resolve("index.idx"));
+		for (File file : Arrays.asList(unchanged, changed, deleted)) {
+			index.putDigest(file, HashIndex.readAttributes(file.toPath()), new byte[] { 0 });
+		}
+		Files.write(changed.toPath(), new byte[] { 2, 2 });
+		assertTrue(deleted.delete());
+
+		assertEquals(2, index.compact());
+		assertEquals(1, index.size());
+		assertNull(index.getDigest(changed, HashIndex.readAttributes(changed.toPath())));
+	}
+
+	@Test
+	public void scanWithIndex() throws IOException {
+		final byte[] content = new byte[1000];
+		final File file1 = createFile("duplicate1.bin", content);
+		final File file2 = createFile("duplicate2.bin", content);
+		content[999] = 1;
+		final File file3 = createFile("unique.bin", content);
+		HashIndex index = HashIndex.load(temporaryFolder.getRoot().toPath().resolve("index.idx"));
+		final List<List<File>> duplicates = new ArrayList<>();
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2, file3), new DuplicateContentFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicates.add(duplicateFiles);
+			}
+		}, new ScanSettings().setHashIndex(index));
+
+		assertEquals(1, duplicates.size());
+		assertEquals(2, duplicates.get(0).size());
+		assertEquals("Alle gelesenen Prüfsummen müssen im Index landen", 3, index.size());
+	}
+
+	@Test
+	public void reuseIndexedDigests() throws IOException {
+		final File file1 = createFile("content1.bin", new byte[] { 1 });
+		final File file2 = createFile("content2.bin", new byte[] { 2 });
+		HashIndex index = HashIndex.load(temporaryFolder.getRoot().toPath().resolve("index.idx"));
+		index.putDigest(file1, HashIndex.readAttributes(file1.toPath()), new byte[] { 7 });
+		index.putDigest(file2, HashIndex.readAttributes(file2.toPath()), new byte[] { 7 });
+		final List<List<File>> duplicates = new ArrayList<>();
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2), new DuplicateContentFinderCallback() {
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				duplicates.add(duplicateFiles);
+			}
+		}, new ScanSettings().setHashIndex(index));
+
+		assertEquals("Unveränderte Dateien dürfen nicht erneut gelesen werden", 1, duplicates.size());
+	}
+	@Test
+	public void keepEntriesOfFilteredFiles() throws IOException {
+		final File small = createFile("small.bin", new byte[] { 1 });
+		createFile("large.bin", new byte[100]);
+		HashIndex index = HashIndex.load(temporaryFolder.getRoot().toPath().resolve("index.idx"));
+		index.putDigest(small, HashIndex.readAttributes(small.toPath()), new byte[] { 7 });
+
+		DuplicateLengthFinder.getResult(temporaryFolder.getRoot(), new DuplicateLengthFinderCallback() {
+		}, new ScanSettings().setHashIndex(index).setFilter(new ScanFilter().setMinSize(10)));
+
+		assertEquals("Ausgefilterte Dateien dürfen nicht aus dem Index fallen", 1, index.size());
+	}
+
+	@Test
+	public void compareUnindexedFilesBlockwise() throws IOException {
+		final byte[] content = new byte[100_000];
+		final File file1 = createFile("unindexed1.bin", content);
+		content[0] = 1;
+		final File file2 = createFile("unindexed2.bin", content);
+		HashIndex index = HashIndex.load(temporaryFolder.getRoot().toPath().resolve("index.idx"));
+		ScanMetrics metrics = new ScanMetrics();
+
+		DuplicateContentFinder.getResult(Arrays.asList(file1, file2), new DuplicateContentFinderCallback() {
+		}, new ScanSettings().setHashIndex(index).setBlockSize(4096).setMetrics(metrics));
+
+		assertTrue("Nicht indizierte Dateien müssen blockweise verglichen werden",
+				metrics.getBytesRead(ScanMetrics.Phase.CONTENT) < 2 * content.length);
+		assertEquals("Nicht vollständig gelesene Dateien dürfen nicht im Index landen", 0, index.size());
+	}
+}
@@ -0,0 +1,66 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ScanBudgetTest {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeTimeLimit() {
+		new ScanBudget().setTimeLimit(-1, TimeUnit.SECONDS);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noTimeUnit() {
+		new ScanBudget().setTimeLimit(1, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeMaxBytes() {
+		new ScanBudget().setMaxBytes(-1);
+	}
+
+	@Test
+	public void unlimitedBudget() {
+		ScanBudget budget = new ScanBudget().setTimeLimit(1, TimeUnit.HOURS);
+		budget.read(Long.MAX_VALUE);
+
+		assertFalse(budget.isExhausted());
+		assertNull(budget.getReason());
+	}
+
+	@Test
+	public void exhaustAfterMaxBytes() {
+		ScanBudget budget = new ScanBudget().setMaxBytes(100);
+		budget.read(100);
+		assertFalse(budget.isExhausted());
+
+		budget.read(1);
+		assertTrue(budget.isExhausted());
+		assertEquals(ScanBudget.Reason.BYTES, budget.getReason());
+		assertEquals(101, budget.getReadBytes());
+	}
+
+	@Test
+	public void exhaustAfterTimeLimit() {
+		ScanBudget budget = new ScanBudget().setTimeLimit(0, TimeUnit.SECONDS);
+
+		assertTrue(budget.isExhausted());
+		assertEquals(ScanBudget.Reason.TIME, budget.getReason());
+	}
+
+	@Test
+	public void keepFirstReason() {
+		ScanBudget budget = new ScanBudget().setMaxBytes(0);
+		budget.cancel();
+		budget.read(1);
+
+		assertEquals(ScanBudget.Reason.CANCELLED, budget.getReason());
+	}
+}
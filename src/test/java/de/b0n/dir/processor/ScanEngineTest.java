@@ -0,0 +1,218 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.junit.Test;
+
+import de.b0n.dir.processor.ScanSettings.ThreadType;
+
+public class ScanEngineTest extends de.b0n.dir.Test {
+
+	private static final String PATH_SAME_SIZE_FILES_IN_TREE_FOLDER = "src/test/resources/duplicateTree";
+	private static final String PATH_PLENTY_SAME_SIZE_FOLDER = "src/test/resources/";
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noArgumentSettings() {
+		new ScanEngine(null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noArgumentCallback() {
+		try (ScanEngine engine = new ScanEngine()) {
+			engine.findDuplicates(new File(PATH_SAME_SIZE_FILES_IN_TREE_FOLDER), null);
+		}
+	}
+
+	@Test
+	public void reuseEngine() {
+		try (ScanEngine engine = new ScanEngine(new ScanSettings().setParallelism(2))) {
+			Queue<List<File>> first = engine.findDuplicates(new File(PATH_SAME_SIZE_FILES_IN_TREE_FOLDER));
+			Queue<List<File>> second = engine.findDuplicates(new File(PATH_PLENTY_SAME_SIZE_FOLDER));
+			assertEquals(1, first.size());
+			assertEquals(2, first.peek().size());
+			assertEquals(2, second.size());
+		}
+	}
+
+	@Test
+	public void closePlatformThreads() {
+		try (ScanEngine engine = new ScanEngine(new ScanSettings().setThreadType(ThreadType.PLATFORM).setParallelism(3))) {
+			Queue<List<File>> result = engine.findDuplicates(new File(PATH_PLENTY_SAME_SIZE_FOLDER));
+			assertEquals(2, result.size());
+		}
+
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			assertFalse("Nach dem Schließen dürfen keine Threads der Engine mehr laufen: " + thread.getName(),
+					thread.getName().startsWith("dupfinder-") && thread.isAlive());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void useClosedEngine() {
+		ScanEngine engine = new ScanEngine();
+		engine.close();
+		engine.findDuplicates(new File(PATH_SAME_SIZE_FILES_IN_TREE_FOLDER));
+	}
+
+	@Test
+	public void virtualThreads() {
+		assumeTrue(ScanEngine.isVirtualThreadSupported());
+		try (ScanEngine engine = new ScanEngine(
+				new ScanSettings().setThreadType(ThreadType.VIRTUAL).setMaxTasksPerRoot(2))) {
+			Queue<List<File>> result = engine.findDuplicates(new File(PATH_PLENTY_SAME_SIZE_FOLDER));
+			assertEquals(2, result.size());
+		}
+	}
+
+	@Test
+	public void runOnEngineThreads() throws IOException {
+		byte[] content = new byte[100_000];
+		createFile("duplicate1.bin", content);
+		createFile("duplicate2.bin", content);
+		content[50_000] = 1;
+		createFile("lateDifference.bin", content);
+		content[0] = 1;
+		createFile("earlyDifference.bin", content);
+		createFile("uniqueSize.bin", new byte[10]);
+		try {
+			Files.createLink(temporaryFolder.getRoot().toPath().resolve("link.bin"),
+					temporaryFolder.getRoot().toPath().resolve("duplicate1.bin"));
+		} catch (UnsupportedOperationException e) {
+			// Ohne harte Verknüpfungen entfällt nur deren Callback
+		}
+
+		for (ThreadType threadType : ThreadType.values()) {
+			if (threadType == ThreadType.VIRTUAL && !ScanEngine.isVirtualThreadSupported()) {
+				continue;
+			}
+			assertEngineThreads(threadType, new ScanSettings().setSampleSize(1024), false);
+			assertEngineThreads(threadType, new ScanSettings().setVerifyContent(true), true);
+			assertEngineThreads(threadType,
+					new ScanSettings().setRangeThreshold(0).setRangeSize(4096).setMaxReadsPerDevice(4)
+							.setMaxReadsPerRotationalDevice(4),
+					true);
+		}
+	}
+
+	/**
+	 * Sucht mit der angegebenen Thread-Art und prüft, dass alle Callbacks und alle
+	 * über Prüfsummen gelesenen Blöcke auf Threads der Engine bearbeitet werden.
+	 */
+	private void assertEngineThreads(ThreadType threadType, ScanSettings settings, boolean digest) {
+		final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		final Set<Thread> readThreads = ConcurrentHashMap.newKeySet();
+		if (digest) {
+			settings.setContentDigest(new ContentDigest() {
+
+				@Override
+				public String getName() {
+					return "recording";
+				}
+
+				@Override
+				public Hasher newHasher() {
+					Hasher hasher = new Sha256ContentDigest().newHasher();
+					return new Hasher() {
+
+						@Override
+						public void update(ByteBuffer block) {
+							readThreads.add(Thread.currentThread());
+							hasher.update(block);
+						}
+
+						@Override
+						public byte[] digest() {
+							return hasher.digest();
+						}
+					};
+				}
+			});
+		}
+		DuplicateFinderCallback callback = new DuplicateFinderCallback() {
+
+			@Override
+			public void enteredNewFolder(File folder) {
+				threads.add(Thread.currentThread());
+			}
+
+			@Override
+			public void addGroupedElement(long size, File file) {
+				threads.add(Thread.currentThread());
+			}
+
+			@Override
+			public void uniqueFile(File uniqueFile) {
+				threads.add(Thread.currentThread());
+			}
+
+			@Override
+			public void failedFile(File failedFile) {
+				threads.add(Thread.currentThread());
+			}
+
+			@Override
+			public void duplicateGroup(List<File> duplicateFiles) {
+				threads.add(Thread.currentThread());
+			}
+
+			@Override
+			public void linkedGroup(List<File> linkedFiles) {
+				threads.add(Thread.currentThread());
+			}
+
+			@Override
+			public void unresolvedGroup(List<File> unresolvedFiles) {
+				threads.add(Thread.currentThread());
+			}
+		};
+
+		try (ScanEngine engine = new ScanEngine(settings.setThreadType(threadType).setParallelism(3))) {
+			engine.findDuplicates(temporaryFolder.getRoot(), callback);
+		}
+
+		assertFalse(threads.isEmpty());
+		assertTrue("Es muss über Prüfsummen gelesen werden", !digest || !readThreads.isEmpty());
+		threads.addAll(readThreads);
+		for (Thread thread : threads) {
+			assertTrue(threadType + " darf nur Threads der Engine nutzen, nicht " + thread.getName(),
+					isEngineThread(threadType, thread));
+		}
+	}
+
+	private static boolean isEngineThread(ThreadType threadType, Thread thread) {
+		switch (threadType) {
+		case PLATFORM:
+			return thread.getName().startsWith("dupfinder-");
+		case VIRTUAL:
+			try {
+				return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+			} catch (ReflectiveOperationException e) {
+				return false;
+			}
+		default:
+			return thread instanceof ForkJoinWorkerThread
+					&& ((ForkJoinWorkerThread) thread).getPool() != ForkJoinPool.commonPool();
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void virtualThreadsUnsupported() {
+		assumeFalse(ScanEngine.isVirtualThreadSupported());
+		new ScanEngine(new ScanSettings().setThreadType(ThreadType.VIRTUAL)).close();
+	}
+}
@@ -0,0 +1,76 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class ScanEventsTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private List<RecordedEvent> eventsNamed(List<RecordedEvent> events, String name) {
+		return events.stream().filter(event -> event.getEventType().getName().equals(name))
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void recordScanEvents() throws IOException {
+		assumeTrue(ScanEvents.ENABLED && FlightRecorder.isAvailable());
+		final File folder = temporaryFolder.newFolder("tree");
+		final File subfolder = new File(folder, "subfolder");
+		assertTrue(subfolder.mkdir());
+		final byte[] content = new byte[100];
+		Files.write(new File(folder, "duplicate1.bin").toPath(), content);
+		Files.write(new File(subfolder, "duplicate2.bin").toPath(), content);
+		content[50] = 1;
+		Files.write(new File(subfolder, "unique.bin").toPath(), content);
+		final Path recordingFile = temporaryFolder.newFile("scan.jfr").toPath();
+
+		try (Recording recording = new Recording()) {
+			recording.enable("de.b0n.dupfinder.FolderListing").withThreshold(Duration.ZERO);
+			recording.enable("de.b0n.dupfinder.ComparisonRound").withThreshold(Duration.ZERO);
+			recording.enable("de.b0n.dupfinder.FileSession").withThreshold(Duration.ZERO);
+			recording.start();
+			DuplicateFinder.getResult(folder, new DuplicateFinderCallback() {
+			}, new ScanSettings().setSampleSize(10));
+			recording.stop();
+			recording.dump(recordingFile);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+		List<RecordedEvent> listings = eventsNamed(events, "de.b0n.dupfinder.FolderListing");
+		assertEquals(2, listings.size());
+		assertEquals(3, listings.stream().mapToInt(event -> event.getInt("files")).sum());
+		assertEquals(300, listings.stream().mapToLong(event -> event.getLong("bytes")).sum());
+
+		List<RecordedEvent> rounds = eventsNamed(events, "de.b0n.dupfinder.ComparisonRound");
+		assertEquals("Eine Runde liest die Blöcke, eine weitere erreicht das Dateiende", 2, rounds.size());
+		assertEquals(3, rounds.get(0).getInt("candidates"));
+		assertEquals(300, rounds.get(0).getLong("bytesRead"));
+		assertEquals(1, rounds.get(0).getInt("uniqueFiles"));
+		assertEquals(1, rounds.get(0).getInt("subgroups"));
+		assertEquals(2, rounds.get(1).getInt("duplicateFiles"));
+
+		List<RecordedEvent> sessions = eventsNamed(events, "de.b0n.dupfinder.FileSession");
+		assertEquals(3, sessions.size());
+		assertEquals(300, sessions.stream().mapToLong(event -> event.getLong("bytesRead")).sum());
+	}
+}
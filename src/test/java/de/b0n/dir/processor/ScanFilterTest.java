@@ -0,0 +1,100 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ScanFilterTest extends de.b0n.dir.Test {
+
+	private final List<String> folders = new ArrayList<>();
+	private final List<String> files = new ArrayList<>();
+
+	private void scan(ScanFilter filter) {
+		DuplicateLengthFinder.getResult(temporaryFolder.getRoot(), new DuplicateLengthFinderCallback() {
+
+			@Override
+			public synchronized void enteredNewFolder(File folder) {
+				folders.add(folder.getName());
+			}
+
+			@Override
+			public synchronized void addGroupedElement(long size, File file) {
+				files.add(file.getName());
+			}
+		}, new ScanSettings().setFilter(filter));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeMinSize() {
+		new ScanFilter().setMinSize(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyGlob() {
+		new ScanFilter().exclude("");
+	}
+
+	@Test
+	public void filterBySize() throws IOException {
+		final Path root = temporaryFolder.getRoot().toPath();
+		createFile(root.toFile(), "empty.bin", new byte[0]);
+		createFile(root.toFile(), "small.bin", new byte[10]);
+		createFile(root.toFile(), "large.bin", new byte[100]);
+
+		scan(new ScanFilter().setMinSize(1).setMaxSize(99));
+
+		assertEquals(1, files.size());
+		assertEquals("small.bin", files.get(0));
+	}
+
+	@Test
+	public void pruneFoldersBeforeListing() throws IOException {
+		final Path root = temporaryFolder.getRoot().toPath();
+		createFile(root.resolve(".git").resolve("objects").toFile(), "pack.bin", new byte[10]);
+		createFile(root.resolve("project").resolve("node_modules").toFile(), "module.js", new byte[10]);
+		createFile(root.resolve("project").toFile(), "main.js", new byte[10]);
+
+		scan(new ScanFilter().prune(".git").prune("node_modules"));
+
+		assertEquals(2, folders.size());
+		assertTrue("Ausgeschlossene Verzeichnisse dürfen nicht aufgelistet werden", folders.contains("project"));
+		assertEquals(1, files.size());
+		assertEquals("main.js", files.get(0));
+	}
+
+	@Test
+	public void filterByGlobs() throws IOException {
+		final Path root = temporaryFolder.getRoot().toPath();
+		createFile(root.toFile(), "photo.jpg", new byte[10]);
+		createFile(root.toFile(), "photo.jpg.tmp", new byte[10]);
+		createFile(root.resolve("cache").toFile(), "thumbnail.jpg", new byte[10]);
+		createFile(root.toFile(), "notes.txt", new byte[10]);
+
+		scan(new ScanFilter().include("*.jpg").include("*.tmp").exclude("*.tmp")
+				.exclude(root.resolve("cache").toString() + File.separator + "*"));
+
+		assertEquals(1, files.size());
+		assertEquals("photo.jpg", files.get(0));
+	}
+
+	@Test
+	public void skipHidden() throws IOException {
+		final Path root = temporaryFolder.getRoot().toPath();
+		createFile(root.toFile(), ".hidden.bin", new byte[10]);
+		createFile(root.resolve(".config").toFile(), "settings.bin", new byte[10]);
+		createFile(root.toFile(), "visible.bin", new byte[10]);
+
+		scan(new ScanFilter().setSkipHidden(true));
+
+		assertEquals(1, folders.size());
+		assertEquals(1, files.size());
+		assertEquals("visible.bin", files.get(0));
+	}
+}
@@ -0,0 +1,83 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.b0n.dir.processor.ScanMetrics.Histogram;
+import de.b0n.dir.processor.ScanMetrics.Phase;
+import de.b0n.dir.processor.ScanMetrics.Stage;
+
+public class ScanMetricsTest extends de.b0n.dir.Test {
+
+	@Test
+	public void histogramQuantiles() {
+		Histogram histogram = new ScanMetrics().getTaskWait();
+		for (int value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+		histogram.record(-5);
+
+		assertEquals(101, histogram.getCount());
+		assertEquals(5050, histogram.getSum());
+		assertEquals(100, histogram.getMax());
+		assertEquals("Median liegt in der Klasse 32 bis 63", 63, histogram.getQuantile(0.5));
+		assertEquals("Quantile überschreiten nie den größten Wert", 100, histogram.getQuantile(1));
+		assertEquals(1, histogram.getQuantile(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void histogramInvalidQuantile() {
+		new ScanMetrics().getTaskRun().getQuantile(1.5);
+	}
+
+	@Test
+	public void recordScanPhases() throws IOException {
+		final File subfolder = temporaryFolder.newFolder("subfolder");
+		final byte[] content = new byte[100];
+		createFile(temporaryFolder.getRoot(), "duplicate1.bin", content);
+		createFile(subfolder, "duplicate2.bin", content);
+		content[0] = 1;
+		createFile(subfolder, "sampleUnique.bin", content);
+		content[0] = 0;
+		content[50] = 1;
+		createFile(temporaryFolder.getRoot(), "contentUnique.bin", content);
+		createFile(subfolder, "sizeUnique.bin", new byte[10]);
+		final ScanMetrics metrics = new ScanMetrics();
+
+		DuplicateFinder.getResult(temporaryFolder.getRoot(), new DuplicateFinderCallback() {
+		}, new ScanSettings().setSampleSize(10).setMetrics(metrics));
+
+		assertEquals(2, metrics.getDirectories());
+		assertEquals(5, metrics.getFiles());
+		assertEquals(6, metrics.getStatCalls());
+		assertEquals(1, metrics.getSizeGroups().getCount());
+		assertEquals(4, metrics.getSizeGroups().getMax());
+		assertEquals(1, metrics.getEliminated(Stage.SIZE));
+		assertEquals(1, metrics.getEliminated(Stage.SAMPLE));
+		assertEquals(1, metrics.getEliminated(Stage.CONTENT));
+		assertEquals(0, metrics.getEliminated(Stage.LINK));
+		assertEquals("Je Datei der Gruppe zwei Stichproben", 4 * 2 * 10, metrics.getBytesRead(Phase.SAMPLE));
+		assertEquals(3 * 100, metrics.getBytesRead(Phase.CONTENT));
+		assertEquals(1, metrics.getDuplicateGroups());
+		assertEquals(2, metrics.getDuplicateFiles());
+		assertEquals(0, metrics.getQueueDepth());
+		assertEquals(0, metrics.getOpenReaders());
+		assertTrue(metrics.getMaxOpenReaders() > 0);
+		assertTrue(metrics.getTaskRun().getCount() >= metrics.getDirectories());
+	}
+
+	@Test
+	public void snapshotHasStableNames() {
+		Map<String, Long> snapshot = new ScanMetrics().snapshot();
+		assertEquals("elapsedMillis", snapshot.keySet().iterator().next());
+		assertEquals(Long.valueOf(0), snapshot.get("bytesRead.content"));
+		assertEquals(Long.valueOf(0), snapshot.get("eliminated.link"));
+		assertEquals(Long.valueOf(0), snapshot.get("taskWaitMicros.p99"));
+	}
+}
@@ -0,0 +1,60 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ScanProgressTest extends de.b0n.dir.Test {
+
+	@Test
+	public void unknownBeforeComparison() {
+		ScanProgress progress = new ScanProgress();
+
+		assertEquals(-1, progress.getEtaMillis());
+		assertEquals(0, progress.getFraction(), 0);
+		assertEquals("searching for candidates", progress.summary());
+	}
+
+	@Test
+	public void accountAllBytesOfGroup() throws IOException {
+		final byte[] content = new byte[100];
+		final File duplicate1 = createFile("duplicate1.bin", content);
+		final File duplicate2 = createFile("duplicate2.bin", content);
+		content[20] = 1;
+		final File unique = createFile("unique.bin", content);
+		final ScanProgress progress = new ScanProgress();
+
+		DuplicateContentFinder.getResult(Arrays.asList(duplicate1, duplicate2, unique),
+				new DuplicateContentFinderCallback() {
+				}, new ScanSettings().setBlockSize(16).setProgress(progress));
+
+		assertEquals(300, progress.getTotalBytes());
+		assertEquals(3, progress.getTotalFiles());
+		assertEquals(3, progress.getResolvedFiles());
+		assertEquals(0, progress.getRemainingBytes());
+		assertEquals("Einzigartige Datei scheidet nach zwei Blöcken aus", 100 - 32, progress.getSkippedBytes());
+		assertEquals(300 - 68, progress.getComparedBytes());
+		assertEquals(1, progress.getFraction(), 0);
+	}
+	@Test
+	public void accountFailedFilesByDigest() throws IOException {
+		final byte[] content = new byte[100];
+		final File duplicate1 = createFile("duplicate1.bin", content);
+		final File duplicate2 = createFile("duplicate2.bin", content);
+		final File unreadable = temporaryFolder.newFolder("unreadable.bin");
+		final ScanProgress progress = new ScanProgress();
+
+		DuplicateContentFinder.getResult(Arrays.asList(duplicate1, duplicate2, unreadable),
+				new DuplicateContentFinderCallback() {
+				}, new ScanSettings().setContentDigest(new Murmur3ContentDigest()).setProgress(progress));
+
+		assertEquals(3, progress.getResolvedFiles());
+		assertEquals(0, progress.getRemainingBytes());
+		assertEquals("Nicht lesbare Dateien zählen als übersprungen", 100, progress.getSkippedBytes());
+		assertEquals(1, progress.getFraction(), 0);
+	}
+}
@@ -0,0 +1,83 @@
+package de.b0n.dir.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class SizeIndexTest {
+
+	@Test
+	public void emptyIndex() {
+		SizeIndex index = new SizeIndex();
+		assertEquals(0, index.groups());
+		assertEquals(0, index.files());
+		assertNull(index.first(0));
+		index.forEachGroup(1, (size, files) -> {
+			throw new AssertionError(size);
+		});
+	}
+
+	@Test
+	public void groupBySize() {
+		SizeIndex index = new SizeIndex();
+		File a = new File("a");
+		File b = new File("b");
+		File c = new File("c");
+		assertEquals(1, index.add(0, a));
+		assertEquals(1, index.add(Long.MAX_VALUE, b));
+		assertEquals(2, index.add(0, c));
+
+		assertEquals(2, index.groups());
+		assertEquals(3, index.files());
+		assertEquals(a, index.first(0));
+		assertEquals(b, index.first(Long.MAX_VALUE));
+
+		Map<Long, List<File>> groups = new HashMap<>();
+		index.forEachGroup(1, (size, files) -> groups.put(size, files));
+		assertEquals(Arrays.asList(a, c), groups.get(0L));
+		assertEquals(Arrays.asList(b), groups.get(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void skipSmallGroups() {
+		SizeIndex index = new SizeIndex();
+		index.add(1, new File("a"));
+		index.add(2, new File("b"));
+		index.add(2, new File("c"));
+
+		Map<Long, List<File>> groups = new HashMap<>();
+		index.forEachGroup(2, (size, files) -> groups.put(size, files));
+		assertEquals(1, groups.size());
+		assertEquals(2, groups.get(2L).size());
+	}
+
+	@Test
+	public void growBeyondInitialCapacity() {
+		SizeIndex index = new SizeIndex();
+		final int sizes = 100_000;
+		for (int i = 0; i < sizes; i++) {
+			index.add(i * 4096L, new File("first" + i));
+		}
+		for (int i = 0; i < sizes; i += 2) {
+			assertEquals(2, index.add(i * 4096L, new File("second" + i)));
+		}
+
+		assertEquals(sizes, index.groups());
+		assertEquals(sizes + sizes / 2, index.files());
+		assertEquals(new File("first4242"), index.first(4242 * 4096L));
+		int[] pairs = new int[1];
+		index.forEachGroup(2, (size, files) -> {
+			assertEquals(new File("first" + size / 4096), files.get(0));
+			assertEquals(new File("second" + size / 4096), files.get(1));
+			pairs[0]++;
+		});
+		assertEquals(sizes / 2, pairs[0]);
+	}
+}